@@ -0,0 +1,47 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/*
+  Runs the benchmark suite once per thread count (1, 2, 4, ... up to the number of cores) with the GC profiler,
+  writing one JSON result file per thread count so that any future change can be compared against it.
+  Usage: java -cp benchmarks.jar ro.apptozee.taskmanager.benchmarks.BenchmarkRunner [any JMH option]
+  (a regexp selects the benchmarks, by default the whole suite except the reader/writer group benchmarks)
+ */
+public class BenchmarkRunner {
+
+    private static final String SUITE = "(Operations|BulkKill|List|ReadWriteMix)Benchmark";
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        var commandLine = new CommandLineOptions(args);
+        for (int threads : threadCounts(Runtime.getRuntime().availableProcessors())) {
+            var options = new OptionsBuilder()
+                    .parent(commandLine)
+                    .include(commandLine.getIncludes().isEmpty() ? SUITE : String.join("|", commandLine.getIncludes()))
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result("jmh-result-threads-" + threads + ".json")
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    static List<Integer> threadCounts(int cores) {
+        var counts = new ArrayList<Integer>();
+        for (int threads = 1; threads < cores; threads *= 2) {
+            counts.add(threads);
+        }
+        counts.add(cores);
+        return counts;
+    }
+}
@@ -0,0 +1,49 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.StorageMode;
+import ro.apptozee.taskmanager.vo.Strategy;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+  killAll and killByPriority on a full task manager. Every invocation needs a freshly filled manager,
+  so these are single shot measurements with the filling excluded from the timing.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 10)
+@Measurement(iterations = 30)
+@Fork(1)
+public class BulkKillBenchmark {
+
+    @Param({"BLOCK", "FIFO", "PRIORITY"})
+    private Strategy strategy;
+
+    @Param({"LOCKING"})
+    private StorageMode storageMode;
+
+    @Param({"1000", "10000", "100000"})
+    private int capacity;
+
+    private TaskManager taskManager;
+
+    @Setup(Level.Invocation)
+    public void setUp() {
+        taskManager = Fixtures.filled(strategy, storageMode, capacity, capacity);
+    }
+
+    @Benchmark
+    public void killAll() {
+        taskManager.killAll();
+    }
+
+    @Benchmark
+    public void killByPriority() {
+        // a third of the tasks
+        taskManager.killByPriority(Priority.MEDIUM);
+    }
+}
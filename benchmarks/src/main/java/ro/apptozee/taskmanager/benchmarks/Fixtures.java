@@ -0,0 +1,37 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.StorageMode;
+import ro.apptozee.taskmanager.vo.Strategy;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+
+final class Fixtures {
+
+    private static final Priority[] PRIORITIES = Priority.values();
+
+    private Fixtures() {
+    }
+
+    static TaskManager filled(Strategy strategy, StorageMode storageMode, int capacity, int tasks) {
+        var taskManager = TaskManager.withStrategy(strategy, capacity, storageMode);
+        fill(taskManager, tasks);
+        return taskManager;
+    }
+
+    // the priorities are spread evenly in insertion order
+    static List<Task> fill(TaskManager taskManager, int tasks) {
+        var added = new ArrayList<Task>(tasks);
+        for (int i = 0; i < tasks; i++) {
+            taskManager.add(priority(i)).ifPresent(added::add);
+        }
+        return added;
+    }
+
+    static Priority priority(int i) {
+        return PRIORITIES[i % PRIORITIES.length];
+    }
+}
@@ -0,0 +1,53 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.StorageMode;
+import ro.apptozee.taskmanager.vo.Strategy;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.lang.management.ManagementFactory;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/*
+  Heap cost of a task and GC pressure of a very large, full task manager.
+  The retained bytes per task are printed once the manager is filled, the steady state churn (FIFO strategy, so every add
+  evicts the oldest task) shows the GC time that the live set causes (run it with -prof gc).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class FootprintBenchmark {
+
+    @Param({"LOCKING", "COMPACT"})
+    private StorageMode storageMode;
+
+    @Param({"1000000", "4000000"})
+    private int capacity;
+
+    private TaskManager taskManager;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        long before = usedHeap();
+        taskManager = Fixtures.filled(Strategy.FIFO, storageMode, capacity, capacity);
+        long after = usedHeap();
+        System.out.printf("%n%s retains %.1f bytes per task%n", storageMode, (after - before) / (double) capacity);
+    }
+
+    @Benchmark
+    public Optional<Task> churn() {
+        return taskManager.add(Fixtures.priority(next++));
+    }
+
+    private static long usedHeap() {
+        System.gc();
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
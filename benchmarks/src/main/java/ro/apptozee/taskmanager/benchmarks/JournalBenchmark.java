@@ -0,0 +1,74 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.journal.FsyncPolicy;
+import ro.apptozee.taskmanager.journal.MappedTaskJournal;
+import ro.apptozee.taskmanager.journal.TaskJournal;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.StorageMode;
+import ro.apptozee.taskmanager.vo.Strategy;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/*
+  Cost of the write-ahead journal: two records per invocation on a half full task manager, against the same task manager
+  without a journal (DISABLED). With NONE the records are only stores in the mapped file, with GROUP_COMMIT every operation
+  waits for a force (see JournalReplayBenchmark for the startup)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class JournalBenchmark {
+
+    @Param({"DISABLED", "NONE", "GROUP_COMMIT"})
+    private String fsyncPolicy;
+
+    private Path directory;
+    private MappedTaskJournal journal;
+    private TaskManager halfFull;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        // a new journal per iteration, so the journal does not grow over the whole trial
+        directory = Files.createTempDirectory("journal");
+        TaskJournal taskJournal = TaskJournal.DISABLED;
+        if (!fsyncPolicy.equals("DISABLED")){
+            journal = new MappedTaskJournal(directory.resolve("tasks.journal"), FsyncPolicy.valueOf(fsyncPolicy));
+            taskJournal = journal;
+        }
+        halfFull = TaskManager.withStrategy(Strategy.BLOCK, 1000, StorageMode.LOCKING, TaskManagerMetrics.DISABLED, taskJournal);
+        Fixtures.fill(halfFull, 500);
+    }
+
+    @TearDown(Level.Iteration)
+    public void tearDown() throws IOException {
+        if (journal != null){
+            journal.close();
+            journal = null;
+        }
+        // the segments of the journal
+        try (var files = Files.list(directory)){
+            for (var file : (Iterable<Path>) files::iterator){
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public Optional<Task> addAndKill() {
+        var task = halfFull.add(Priority.MEDIUM);
+        task.ifPresent(halfFull::kill);
+        return task;
+    }
+}
@@ -0,0 +1,90 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.BaseTaskManager;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.journal.CheckpointedTaskJournal;
+import ro.apptozee.taskmanager.journal.FsyncPolicy;
+import ro.apptozee.taskmanager.journal.MappedTaskJournal;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.vo.StorageMode;
+import ro.apptozee.taskmanager.vo.Strategy;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/*
+  The startup of a FIFO task manager from a journal of a million records
+  - JOURNAL: every record is replayed
+  - CHECKPOINT: a checkpoint of the live tasks was written at the end, so only the checkpoint is loaded
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class JournalReplayBenchmark {
+
+    private static final int RECORDS = 1_000_000;
+
+    public enum Source {
+        JOURNAL,
+        CHECKPOINT
+    }
+
+    @Param({"JOURNAL", "CHECKPOINT"})
+    private Source source;
+
+    @Param({"1000", "100000"})
+    private int capacity;
+
+    private Path directory;
+    private Path path;
+    private Path checkpoints;
+    private CheckpointedTaskJournal journal;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("journal");
+        path = directory.resolve("history.journal");
+        checkpoints = directory.resolve("checkpoints");
+        try (var writing = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints)){
+            var taskManager = TaskManager.withStrategy(Strategy.FIFO, capacity, StorageMode.LOCKING,
+                    TaskManagerMetrics.DISABLED, writing);
+            // mostly adds at capacity, each one journals the eviction and the add
+            while (writing.position() < RECORDS){
+                taskManager.add(Fixtures.priority((int) writing.position()));
+            }
+            if (source == Source.CHECKPOINT){
+                ((BaseTaskManager) taskManager).checkpoint();
+            }
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void close() {
+        journal.close();
+    }
+
+    @TearDown(Level.Trial)
+    public void delete() throws IOException {
+        // the checkpoints, then the segments of the journal
+        for (var folder : new Path[]{checkpoints, directory}){
+            try (var files = Files.list(folder)){
+                for (var file : (Iterable<Path>) files::iterator){
+                    Files.delete(file);
+                }
+            }
+            Files.delete(folder);
+        }
+    }
+
+    @Benchmark
+    public TaskManager replay() {
+        journal = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints);
+        return TaskManager.withStrategy(Strategy.FIFO, capacity, StorageMode.LOCKING, TaskManagerMetrics.DISABLED, journal);
+    }
+}
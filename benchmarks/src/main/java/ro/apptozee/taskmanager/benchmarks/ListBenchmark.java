@@ -0,0 +1,45 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+  Full traversal of a full task manager for every view. The strategy does not matter for listing,
+  only the storage does, so it is fixed to BLOCK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ListBenchmark {
+
+    @Param({"FIFO", "PID", "PRIORITY"})
+    private SortCriteria sortCriteria;
+
+    @Param({"ASCENDING", "DESCENDING"})
+    private SortOrder sortOrder;
+
+    @Param({"LOCKING"})
+    private StorageMode storageMode;
+
+    @Param({"1000", "10000", "100000"})
+    private int capacity;
+
+    private TaskManager taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        taskManager = Fixtures.filled(Strategy.BLOCK, storageMode, capacity, capacity);
+    }
+
+    @Benchmark
+    public void list(Blackhole blackhole) {
+        taskManager.list(blackhole::consume, sortCriteria, sortOrder);
+    }
+}
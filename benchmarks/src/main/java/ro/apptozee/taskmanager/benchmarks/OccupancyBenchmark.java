@@ -0,0 +1,41 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+  The number of tasks by priority of a full task manager: the maintained counters against counting a listing
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OccupancyBenchmark {
+
+    @Param({"10000"})
+    private int capacity;
+
+    private TaskManager taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        taskManager = Fixtures.filled(Strategy.BLOCK, StorageMode.LOCKING, capacity, capacity);
+    }
+
+    @Benchmark
+    public Occupancy occupancy() {
+        return taskManager.occupancy();
+    }
+
+    @Benchmark
+    public int[] countedListing() {
+        var counts = new int[Priority.LEVELS];
+        taskManager.list(task -> counts[task.priority().rank()]++);
+        return counts;
+    }
+}
@@ -0,0 +1,64 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.StorageMode;
+import ro.apptozee.taskmanager.vo.Strategy;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/*
+  Single write operations on a shared task manager (the contention comes from the number of threads, see BenchmarkRunner).
+  - addAndKill keeps the manager half full, so it measures the admission path without eviction plus a kill
+  - addAtCapacity keeps the manager full, so it measures the strategy: rejection (BLOCK) or eviction (FIFO, PRIORITY)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OperationsBenchmark {
+
+    @Param({"BLOCK", "FIFO", "PRIORITY"})
+    private Strategy strategy;
+
+    @Param({"LOCKING"})
+    private StorageMode storageMode;
+
+    @Param({"1000", "10000", "100000"})
+    private int capacity;
+
+    private TaskManager halfFull;
+
+    private TaskManager full;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        halfFull = Fixtures.filled(strategy, storageMode, capacity, capacity / 2);
+        full = Fixtures.filled(strategy, storageMode, capacity, capacity);
+    }
+
+    @State(Scope.Thread)
+    public static class Sequence {
+        private int next;
+
+        int next() {
+            return next++;
+        }
+    }
+
+    @Benchmark
+    public Optional<Task> addAndKill(Sequence sequence) {
+        var task = halfFull.add(Fixtures.priority(sequence.next()));
+        task.ifPresent(halfFull::kill);
+        return task;
+    }
+
+    @Benchmark
+    public Optional<Task> addAtCapacity(Sequence sequence) {
+        return full.add(Fixtures.priority(sequence.next()));
+    }
+}
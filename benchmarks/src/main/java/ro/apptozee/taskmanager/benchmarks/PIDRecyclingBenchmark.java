@@ -0,0 +1,67 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.storage.CompactTaskStore;
+import ro.apptozee.taskmanager.storage.LinkedTaskStore;
+import ro.apptozee.taskmanager.storage.TaskStore;
+import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/*
+  A kill and an add on a full store whose PIDs are recycled in random order, like with the LOWEST_FREE policy or when old
+  tasks are killed: the new task takes the PID just released, which lands anywhere in the PID chain. The stores are used
+  directly, without the task manager and its lock, so only the cost of the indexes is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PIDRecyclingBenchmark {
+
+    public enum Store {
+        LINKED, COMPACT
+    }
+
+    @Param({"LINKED", "COMPACT"})
+    private Store store;
+
+    @Param({"1000", "10000", "100000"})
+    private int capacity;
+
+    private TaskStore taskStore;
+    // the task holding every PID
+    private Task[] tasks;
+    // the PIDs in the order they are recycled
+    private int[] recycled;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        taskStore = store == Store.LINKED ? new LinkedTaskStore() : new CompactTaskStore(capacity, null);
+        tasks = new Task[capacity];
+        for (int pid = 0; pid < capacity; pid++) {
+            tasks[pid] = new Task(new PID(pid), Fixtures.priority(pid), null);
+            taskStore.add(tasks[pid]);
+        }
+        var random = new Random(42);
+        recycled = new int[capacity];
+        for (int i = 0; i < capacity; i++) {
+            recycled[i] = random.nextInt(capacity);
+        }
+    }
+
+    @Benchmark
+    public void killAndAddWithARecycledPID() {
+        int pid = recycled[next];
+        next = next + 1 == recycled.length ? 0 : next + 1;
+        taskStore.remove(tasks[pid]);
+        var task = new Task(tasks[pid].pid(), tasks[pid].priority(), null, tasks[pid].generation() + 1);
+        taskStore.add(task);
+        tasks[pid] = task;
+    }
+}
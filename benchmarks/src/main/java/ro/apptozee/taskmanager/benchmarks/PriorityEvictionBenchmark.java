@@ -0,0 +1,52 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.StorageMode;
+import ro.apptozee.taskmanager.vo.Strategy;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/*
+  Eviction of the PRIORITY strategy at 100% occupancy, the steady state of a full cache.
+  - evict adds a HIGH task that evicts the oldest task of the lowest priority, then puts the manager back in the same
+    state (kill the new task, add a LOW one) so that every invocation finds a victim
+  - reject adds a LOW task, there is no lower priority so the manager only has to find out there is no victim
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PriorityEvictionBenchmark {
+
+    @Param({"LOCKING", "COMPACT", "SNAPSHOT"})
+    private StorageMode storageMode;
+
+    @Param({"1000", "100000"})
+    private int capacity;
+
+    private TaskManager full;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        full = Fixtures.filled(Strategy.PRIORITY, storageMode, capacity, capacity);
+    }
+
+    @Benchmark
+    public Optional<Task> evict() {
+        var task = full.add(Priority.HIGH);
+        task.ifPresent(full::kill);
+        full.add(Priority.LOW);
+        return task;
+    }
+
+    @Benchmark
+    public Optional<Task> reject() {
+        return full.add(Priority.LOW);
+    }
+}
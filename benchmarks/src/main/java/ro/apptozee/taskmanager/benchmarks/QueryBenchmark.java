@@ -0,0 +1,43 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+  The 50 newest HIGH tasks of a full task manager: the query walks the end of the HIGH chain, the filtered list walks the
+  whole (cached) FIFO view
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class QueryBenchmark {
+
+    @Param({"10000", "1000000"})
+    private int capacity;
+
+    private TaskManager taskManager;
+    private TaskQuery newestHigh;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        taskManager = Fixtures.filled(Strategy.BLOCK, StorageMode.LOCKING, capacity, capacity);
+        newestHigh = TaskQuery.of(SortCriteria.FIFO, SortOrder.DESCENDING).priority(Priority.HIGH).limit(50);
+    }
+
+    @Benchmark
+    public void query(Blackhole blackhole) {
+        taskManager.query(blackhole::consume, newestHigh);
+    }
+
+    @Benchmark
+    public void filteredList(Blackhole blackhole) {
+        taskManager.list(newestHigh.filter(blackhole::consume), newestHigh.sortCriteria(), newestHigh.sortOrder());
+    }
+}
@@ -0,0 +1,74 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayDeque;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/*
+  Every thread picks a read (a full FIFO listing) with probability readPercent, otherwise a write.
+  A thread writes by adding tasks until it owns its share of half the capacity and then by killing its oldest task,
+  so the manager stays around half full for every strategy.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ReadWriteMixBenchmark {
+
+    @Param({"1", "10", "50", "90", "99"})
+    private int readPercent;
+
+    @Param({"BLOCK", "FIFO", "PRIORITY"})
+    private Strategy strategy;
+
+    @Param({"LOCKING"})
+    private StorageMode storageMode;
+
+    @Param({"1000", "100000"})
+    private int capacity;
+
+    private TaskManager taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        taskManager = TaskManager.withStrategy(strategy, capacity, storageMode);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private final ArrayDeque<Task> owned = new ArrayDeque<>();
+        private final SplittableRandom random = new SplittableRandom();
+        private int share;
+        private int next;
+
+        @Setup(Level.Trial)
+        public void setUp(ReadWriteMixBenchmark benchmark, org.openjdk.jmh.infra.BenchmarkParams params) {
+            share = Math.max(1, benchmark.capacity / 2 / params.getThreads());
+        }
+
+        void write(TaskManager taskManager) {
+            if (owned.size() < share) {
+                taskManager.add(Fixtures.priority(next++)).ifPresent(owned::add);
+            } else {
+                // might have been evicted already, in which case it is a no-op kill
+                taskManager.kill(owned.poll());
+            }
+        }
+    }
+
+    @Benchmark
+    public void mixed(Writer writer, Blackhole blackhole) {
+        if (writer.random.nextInt(100) < readPercent) {
+            taskManager.list(blackhole::consume, SortCriteria.FIFO, SortOrder.ASCENDING);
+        } else {
+            writer.write(taskManager);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ro.apptozee.taskmanager.ShardedTaskManager;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.Strategy;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/*
+  Write throughput of a half full sharded task manager as the number of shards grows, with 4 writer threads adding and
+  killing their own tasks. One shard is the single lock of the LOCKING mode plus the routing, so the throughput should
+  grow with the shards up to the number of cores (the writers of different threads start on different shards).
+  The merged list is measured as well, since it is what the shards cost to the readers.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class ShardedBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    private int shards;
+
+    @Param({"BLOCK", "PRIORITY"})
+    private Strategy strategy;
+
+    @Param({"1000", "100000"})
+    private int capacity;
+
+    private ShardedTaskManager halfFull;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        halfFull = new ShardedTaskManager(strategy, capacity, shards);
+        Fixtures.fill(halfFull, capacity / 2);
+    }
+
+    @Benchmark
+    public Optional<Task> addAndKill() {
+        var task = halfFull.add(Priority.MEDIUM);
+        task.ifPresent(halfFull::kill);
+        return task;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void list(Blackhole blackhole) {
+        halfFull.list(blackhole::consume, SortCriteria.FIFO);
+    }
+}
@@ -0,0 +1,52 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.concurrent.TimeUnit;
+
+/*
+  Readers listing the whole table while a writer keeps the manager at full capacity (FIFO strategy, so every add evicts).
+  With LOCKING the writer waits for every traversal to finish and the readers queue behind the writer,
+  with SNAPSHOT neither side waits for the other and with LOCK_FREE not even the writers wait for each other.
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotVsLockingBenchmark {
+
+    @Param({"LOCKING", "SNAPSHOT", "LOCK_FREE"})
+    private StorageMode storageMode;
+
+    @Param({"1000", "100000"})
+    private int capacity;
+
+    private TaskManager taskManager;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        taskManager = TaskManager.withStrategy(Strategy.FIFO, capacity, storageMode);
+        for (int i = 0; i < capacity; i++) {
+            taskManager.add(Priority.values()[i % Priority.values().length]);
+        }
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public void reader(Blackhole blackhole) {
+        taskManager.list(blackhole::consume, SortCriteria.FIFO, SortOrder.ASCENDING);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public Object writer() {
+        return taskManager.add(Priority.MEDIUM);
+    }
+}
@@ -0,0 +1,77 @@
+package ro.apptozee.taskmanager.benchmarks;
+
+import org.openjdk.jmh.annotations.*;
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.StorageMode;
+import ro.apptozee.taskmanager.vo.Strategy;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+  Single lock against one lock per priority, with 4 writer threads adding and killing their own tasks on a half full
+  priority task manager.
+  - SKEWED: every thread uses the same priority, so the stripes degrade to a single lock
+  - SPREAD: every thread has its own priority (as far as there are priorities), so the stripes are mostly uncontended
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(4)
+@Fork(1)
+public class StripedBenchmark {
+
+    public enum Workload {
+        SKEWED,
+        SPREAD
+    }
+
+    @Param({"LOCKING", "STRIPED"})
+    private StorageMode storageMode;
+
+    @Param({"SKEWED", "SPREAD"})
+    private Workload workload;
+
+    @Param({"1000", "100000"})
+    private int capacity;
+
+    private TaskManager halfFull;
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        halfFull = Fixtures.filled(Strategy.PRIORITY, storageMode, capacity, capacity / 2);
+    }
+
+    @State(Scope.Thread)
+    public static class Writer {
+        private Priority priority;
+
+        @Setup(Level.Trial)
+        public void setUp(StripedBenchmark benchmark) {
+            priority = benchmark.workload == Workload.SKEWED
+                    ? Priority.MEDIUM
+                    : Fixtures.priority(benchmark.threads.getAndIncrement());
+        }
+    }
+
+    @Benchmark
+    public Optional<Task> addAndKill(Writer writer) {
+        var task = halfFull.add(writer.priority);
+        task.ifPresent(halfFull::kill);
+        return task;
+    }
+
+    @Benchmark
+    public void killByPriority(Writer writer) {
+        // keeps the bucket of the writer at a few tasks, so the kill is cheap and the contention dominates
+        halfFull.add(writer.priority);
+        halfFull.killByPriority(writer.priority);
+    }
+}
@@ -0,0 +1,284 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/*
+  Asynchronous front end of a BaseTaskManager: producers never wait for the write lock.
+  The commands are published in a preallocated multi producer ring buffer (a producer claims a sequence with a single atomic
+  increment, fills the preallocated command of the slot and marks it as published) and a single writer thread drains
+  them in batches. A batch is applied under a single acquisition of the write lock (the calls to the task manager only
+  reenter it), so the strategy of the task manager decides the admission exactly as for a synchronous add.
+
+  The futures are completed by the writer thread after it released the lock, heavy continuations should use the async
+  variants of CompletableFuture to not slow down the pipeline. Reads do not go through the pipeline.
+
+  Closing races with the producers: a producer that sees the manager closed after claiming its sequence still publishes
+  it as a no-op (the writer drains every claimed sequence before it stops) and fails its own future, and once the writer
+  has stopped the producers waiting for a slot and close fail the sequences it did not reach.
+ */
+public class AsyncTaskManager implements AutoCloseable {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1024;
+
+    // upper bound of the time readers wait for the write lock because of the pipeline
+    private static final int MAX_BATCH = 256;
+
+    private final BaseTaskManager taskManager;
+
+    private final Command[] commands;
+    private final int mask;
+
+    // next sequence to claim by the producers
+    private final AtomicLong claimed = new AtomicLong();
+    // the sequence published in every slot, a slot is readable when it holds the sequence the writer is waiting for
+    private final AtomicLongArray published;
+    // every sequence below was applied and its slot can be reused
+    private volatile long consumed;
+
+    private volatile boolean running = true;
+    // set by the writer once it stopped, nothing is consumed anymore
+    private volatile boolean drained;
+    private volatile boolean writerParked;
+    private final Thread writer;
+
+    public AsyncTaskManager(BaseTaskManager taskManager) {
+        this(taskManager, DEFAULT_BUFFER_SIZE);
+    }
+
+    public AsyncTaskManager(BaseTaskManager taskManager, int bufferSize) {
+        if (bufferSize < 1 || Integer.bitCount(bufferSize) != 1){
+            throw new IllegalArgumentException("Buffer size must be a power of 2");
+        }
+        this.taskManager = taskManager;
+        commands = new Command[bufferSize];
+        published = new AtomicLongArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++){
+            commands[i] = new Command();
+            // nothing published yet: sequence i is expected in slot i
+            published.set(i, i - (long) bufferSize);
+        }
+        mask = bufferSize - 1;
+        writer = new Thread(this::drain, "task-manager-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public CompletableFuture<Optional<Task>> add(Priority priority) {
+        var result = new CompletableFuture<Optional<Task>>();
+        publish(CommandType.ADD, priority, null, result);
+        return result;
+    }
+
+    public CompletableFuture<Void> kill(Task task) {
+        var result = new CompletableFuture<Void>();
+        publish(CommandType.KILL, null, task, result);
+        return result;
+    }
+
+    public CompletableFuture<Void> killAll() {
+        var result = new CompletableFuture<Void>();
+        publish(CommandType.KILL_ALL, null, null, result);
+        return result;
+    }
+
+    public CompletableFuture<Void> killByPriority(Priority priority) {
+        var result = new CompletableFuture<Void>();
+        publish(CommandType.KILL_BY_PRIORITY, priority, null, result);
+        return result;
+    }
+
+    public void list(Consumer<Task> consumer, SortCriteria sortCriteria, SortOrder sortOrder) {
+        taskManager.list(consumer, sortCriteria, sortOrder);
+    }
+
+    // the synchronous task manager behind the pipeline
+    public TaskManager taskManager() {
+        return taskManager;
+    }
+
+    // applies the commands already published, stops the writer and fails the commands it did not reach
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        // claimed after the last check of the writer, their producers fail them too (completing twice is harmless)
+        long last = claimed.get();
+        for (long sequence = consumed; sequence < last && sequence - consumed < commands.length; sequence++){
+            int slot = (int) (sequence & mask);
+            if (published.get(slot) == sequence){
+                commands[slot].fail();
+            }
+        }
+    }
+
+    private void publish(CommandType type, Priority priority, Task task, CompletableFuture<?> result) {
+        if (!running){
+            result.completeExceptionally(closed());
+            return;
+        }
+        long sequence = claimed.getAndIncrement();
+        // closed while claiming: the writer may still wait for this sequence, so it is published as a no-op
+        boolean closed = !running;
+        if (closed){
+            result.completeExceptionally(closed());
+        }
+        // back pressure: wait until the writer has applied the command that used this slot one lap before
+        for (int spins = 0; sequence - commands.length >= consumed; spins++){
+            if (drained){
+                // the writer stopped, the slot will never be released
+                result.completeExceptionally(closed());
+                return;
+            }
+            backOff(spins);
+        }
+        int slot = (int) (sequence & mask);
+        commands[slot].set(closed ? null : type, priority, task, result);
+        published.set(slot, sequence);
+        if (writerParked){
+            LockSupport.unpark(writer);
+        }
+    }
+
+    private void drain() {
+        long next = 0;
+        while (running || next < claimed.get()){
+            long end = next;
+            while (end - next < MAX_BATCH && published.get((int) (end & mask)) == end){
+                end++;
+            }
+            if (end == next){
+                idle(next);
+                continue;
+            }
+            apply(next, end);
+            complete(next, end);
+            next = end;
+            consumed = next;
+        }
+        drained = true;
+    }
+
+    private void apply(long from, long to) {
+        long acquired = taskManager.lockWrite();
+        try {
+            for (long sequence = from; sequence < to; sequence++){
+                commands[(int) (sequence & mask)].apply(taskManager);
+            }
+        } finally {
+            taskManager.unlockWrite(acquired);
+        }
+        // a single commit of the journal for the whole batch
+        taskManager.commitJournal();
+    }
+
+    private void complete(long from, long to) {
+        for (long sequence = from; sequence < to; sequence++){
+            commands[(int) (sequence & mask)].complete();
+        }
+    }
+
+    private void idle(long next) {
+        writerParked = true;
+        // a producer could have published before seeing the flag
+        if (running && published.get((int) (next & mask)) != next){
+            LockSupport.parkNanos(this, 1_000_000);
+        }
+        writerParked = false;
+    }
+
+    private static IllegalStateException closed() {
+        return new IllegalStateException("The task manager is closed");
+    }
+
+    private static void backOff(int spins) {
+        if (spins < 100){
+            Thread.onSpinWait();
+        } else if (spins < 200){
+            Thread.yield();
+        } else {
+            LockSupport.parkNanos(1_000);
+        }
+    }
+
+    private enum CommandType {
+        ADD,
+        KILL,
+        KILL_ALL,
+        KILL_BY_PRIORITY
+    }
+
+    // preallocated and reused, only the writer reads it between the publication and the release of its slot
+    private static final class Command {
+        // null for a command published after the close
+        private CommandType type;
+        private Priority priority;
+        private Task task;
+        private CompletableFuture<?> result;
+
+        private Optional<Task> added;
+        private RuntimeException failure;
+
+        void set(CommandType type, Priority priority, Task task, CompletableFuture<?> result) {
+            this.type = type;
+            this.priority = priority;
+            this.task = task;
+            this.result = result;
+        }
+
+        void apply(BaseTaskManager taskManager) {
+            if (type == null){
+                failure = closed();
+                return;
+            }
+            try {
+                switch (type){
+                    case ADD -> added = taskManager.add(priority);
+                    case KILL -> taskManager.kill(task);
+                    case KILL_ALL -> taskManager.killAll();
+                    case KILL_BY_PRIORITY -> taskManager.killByPriority(priority);
+                }
+            } catch (RuntimeException ex){
+                failure = ex;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void complete() {
+            var completed = result;
+            var value = added;
+            var error = failure;
+            // release the references before the slot is reused
+            task = null;
+            priority = null;
+            result = null;
+            added = null;
+            failure = null;
+            if (error != null){
+                completed.completeExceptionally(error);
+            } else {
+                ((CompletableFuture<Object>) completed).complete(value);
+            }
+        }
+
+        // only after the writer stopped
+        void fail() {
+            var completed = result;
+            if (completed != null){
+                completed.completeExceptionally(closed());
+            }
+        }
+    }
+}
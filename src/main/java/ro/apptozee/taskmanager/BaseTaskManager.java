@@ -1,78 +1,393 @@
 package ro.apptozee.taskmanager;
 
+import ro.apptozee.taskmanager.events.Subscription;
+import ro.apptozee.taskmanager.events.TaskEvent;
+import ro.apptozee.taskmanager.events.TaskSubscriber;
+import ro.apptozee.taskmanager.journal.TaskJournal;
+import ro.apptozee.taskmanager.metrics.Operation;
+import ro.apptozee.taskmanager.metrics.RejectionCause;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.LinkedTaskStore;
+import ro.apptozee.taskmanager.storage.TaskStore;
+import ro.apptozee.taskmanager.views.ArrayTasksView;
 import ro.apptozee.taskmanager.vo.*;
 
 import java.util.*;
-import java.util.concurrent.locks.ReadWriteLock;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.concurrent.locks.StampedLock;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 
 public class BaseTaskManager implements TaskManager {
 
     private final int capacity;
+
+    /*
+      Occupancy counters, only written under the write lock but read without any lock: size and a single count are plain
+      volatile reads, a consistent snapshot of all of them is an optimistic read of a stamped lock (a seqlock).
+      The first counter update of an operation takes the stamped lock and it is released with the write lock, so that
+      a snapshot never sees the middle of an operation (between the eviction and the addition of a full add)
+     */
     private volatile int size;
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(Priority.LEVELS);
+    private final StampedLock occupancyLock = new StampedLock();
+    // only accessed under the write lock, 0 when the stamped lock is not held
+    private long occupancyStamp;
 
     protected final PIDPool pidPool;
 
-    protected final LinkedHashMap<PID, Task> queue = new LinkedHashMap<>();
+    // keeps the FIFO, PID and priority orders, only accessed under the read-write lock
+    protected final TaskStore store;
 
-    // The added benefit of these data structure is debatable since sorting the queue based on priority using
-    // a bucket sorting algorithm is still O(n) runtime when creating the view, but with 2 traversals and
-    // would require O(n) space for each individual request
+    // producers waiting in addAwait, in arrival order, only accessed under the write lock
+    private final ArrayDeque<Waiter> waiters = new ArrayDeque<>();
 
-    // Likewise, when used by killByPriority the worst case running time is still O(n) which is no different from
-    // traversal of the queue and checking the priority of each individual task
-    protected final TreeMap<Priority, Map<PID,Task>> byPriority = new TreeMap<>(Priority.BY_PRIORITY);
+    /*
+      The deadlines of the tasks added with a time to live, in ticks of EXPIRY_TICK since expiryOrigin. The reaper thread
+      only runs while there are deadlines: it sleeps until the next tick that has work and expires the due tasks in a single
+      acquisition of the write lock. The wheel and the reaper are only accessed under the write lock.
+     */
+    static final Duration EXPIRY_TICK = Duration.ofMillis(10);
+    // about 70 years, so that a deadline can not overflow
+    private static final long MAX_TIME_TO_LIVE_NANOS = Long.MAX_VALUE / 4;
+    private final long expiryOrigin = System.nanoTime();
+    private final TimingWheel expiries = new TimingWheel(0);
+    private Thread reaper;
+    // the tick the reaper sleeps until, a closer deadline wakes it up
+    private long reaperWakeUp;
 
-    // Since we are in control of creating the tasks we know that the insertion order of PID is not very different
-    // from the insertion order of FIFO (the FIFO order is almost PID sorted)
-    // In this case we could implement a version of sorting based on insertion sort that looks on average only k cells apart with
-    // a runtime of O(kn) where n is the list length (k<<n)
-    // For the scope of this exercise we will use this extra data structure,
-    // although it is not needed since FIFO and PID order are exactly the same, but we left it to show how to handle another sortCriteria
-    protected final TreeSet<Task> byPID = new TreeSet<>(Task.BY_PID_COMP);
+    // KillExecutor.INLINE unless asked for, runs the kill commands of the removed tasks after the write lock was released
+    private final KillExecutor killExecutor;
+    // the tasks removed during the current write lock hold, handed to the kill executor after the outermost unlock
+    private ArrayList<Iterable<Task>> unreclaimed = new ArrayList<>();
+    // the task whose kill command runs on this thread during a reclamation, its reentrant kill is known to be a no op
+    private final ThreadLocal<Task> reclaiming = new ThreadLocal<>();
 
     // we could make it stamped lock if we can guarantee increased performance, but let's not optimize early
-    ReadWriteLock rl = new ReentrantReadWriteLock(true);
+    ReentrantReadWriteLock rl = new ReentrantReadWriteLock(true);
+
+    // TaskManagerMetrics.DISABLED unless asked for
+    protected final TaskManagerMetrics metrics;
+
+    // TaskJournal.DISABLED unless asked for, appended under the write lock and committed after it was released
+    protected final TaskJournal journal;
+
+    // copy on write, published to by the writers under the write lock
+    private volatile BufferedSubscription[] subscriptions = new BufferedSubscription[0];
+    private final Object subscriptionsLock = new Object();
+
+    // the task manager the tasks are created for, another one when this is a part of it (see ShardedTaskManager)
+    private TaskManager owner = this;
+
+    // incremented by every modification, only written under the write lock
+    private volatile long version;
+
+    // one materialized view per (SortCriteria, SortOrder), valid as long as the version did not change
+    private final AtomicReferenceArray<CachedView> cachedViews =
+            new AtomicReferenceArray<>(SortCriteria.values().length * SortOrder.values().length);
+
+    // readers of the same view share a single build, readers of other views do not wait for it
+    private final ReentrantLock[] viewBuilders = new ReentrantLock[cachedViews.length()];
 
     public BaseTaskManager(int capacity, PIDPool pidPool) {
+        this(capacity, pidPool, (c, owner) -> new LinkedTaskStore());
+    }
+
+    public BaseTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory) {
+        this(capacity, pidPool, storeFactory, TaskManagerMetrics.DISABLED);
+    }
+
+    public BaseTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics) {
+        this(capacity, pidPool, storeFactory, metrics, TaskJournal.DISABLED);
+    }
+
+    public BaseTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics,
+                           TaskJournal journal) {
+        this(capacity, pidPool, storeFactory, metrics, journal, KillExecutor.INLINE);
+    }
+
+    public BaseTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics,
+                           TaskJournal journal, KillExecutor killExecutor) {
         if (capacity < 1){
             throw new IllegalArgumentException("Capacity must be greater than 0");
         }
         this.capacity = capacity;
         this.pidPool = pidPool;
+        this.store = storeFactory.create(capacity, this);
+        this.metrics = metrics;
+        this.journal = journal;
+        this.killExecutor = killExecutor;
+        for (int i = 0; i < viewBuilders.length; i++){
+            viewBuilders[i] = new ReentrantLock();
+        }
+        journal.replay(new Recovery());
+        releaseOccupancy();
     }
 
 
     @Override
     public Optional<Task> add(Priority priority) {
-        rl.writeLock().lock();
+        return add(priority, 0);
+    }
+
+    /*
+      The task is expired once the time to live has passed: removed like a kill, but published as EXPIRED and counted apart
+      from the kills and the evictions. It expires at most one EXPIRY_TICK late (later while the write lock is contended),
+      never early. The time to live is not journaled, a recovered task does not expire.
+     */
+    @Override
+    public Optional<Task> add(Priority priority, Duration timeToLive) {
+        return add(priority, timeToLiveNanos(timeToLive));
+    }
+
+    // also used by ShardedTaskManager
+    static long timeToLiveNanos(Duration timeToLive){
+        if (timeToLive.isNegative() || timeToLive.isZero()){
+            throw new IllegalArgumentException("The time to live must be positive: " + timeToLive);
+        }
+        return timeToLive.compareTo(Duration.ofNanos(MAX_TIME_TO_LIVE_NANOS)) > 0
+                ? MAX_TIME_TO_LIVE_NANOS : timeToLive.toNanos();
+    }
+
+    // 0 for no time to live
+    Optional<Task> add(Priority priority, long timeToLiveNanos) {
+        long start = startOperation();
+        long acquired = lockWrite();
         try {
-            if (isFull()){
+            // atomic modification of all structures guaranteed by the read-write lock
+            var task = isFull() ? addWhenFull(priority) : addInternally(priority);
+            if (timeToLiveNanos > 0 && task.isPresent()){
+                expireAfter(task.get(), timeToLiveNanos);
+            }
+            return task;
+        } finally {
+            unlockWrite(acquired);
+            commitJournal();
+            metrics.operation(Operation.ADD, start);
+        }
+    }
+
+    @Override
+    public Optional<Task> addAwait(Priority priority) throws InterruptedException {
+        return addAwait(priority, Long.MAX_VALUE);
+    }
+
+    // a timeout beyond MAX_TIME_TO_LIVE_NANOS (more than 70 years) waits forever, so the deadline can not overflow
+    @Override
+    public Optional<Task> addAwait(Priority priority, Duration timeout) throws InterruptedException {
+        long nanos;
+        if (timeout.isNegative()){
+            nanos = 0;
+        } else if (timeout.compareTo(Duration.ofNanos(MAX_TIME_TO_LIVE_NANOS)) > 0){
+            nanos = Long.MAX_VALUE;
+        } else {
+            nanos = timeout.toNanos();
+        }
+        return addAwait(priority, nanos);
+    }
+
+    /*
+      A waiter never competes for a freed slot: the thread that frees it adds the task on behalf of the oldest waiter
+      (under the write lock it already holds) and unparks it with the result. So the waiters are served in FIFO order,
+      a bulk kill serves as many waiters as it freed slots and the other waiters do not even wake up.
+      Waiting is LockSupport.park outside of any lock, which does not pin the carrier of a virtual thread.
+      Measured like an add (the latency includes the wait), a timeout is rejected for CAPACITY.
+     */
+    private Optional<Task> addAwait(Priority priority, long timeoutNanos) throws InterruptedException {
+        long start = startOperation();
+        try {
+            return awaitSlot(priority, timeoutNanos);
+        } finally {
+            metrics.operation(Operation.ADD, start);
+        }
+    }
+
+    // Long.MAX_VALUE to wait forever, any other timeout is at most MAX_TIME_TO_LIVE_NANOS
+    private Optional<Task> awaitSlot(Priority priority, long timeoutNanos) throws InterruptedException {
+        long deadline = timeoutNanos == Long.MAX_VALUE ? Long.MAX_VALUE : System.nanoTime() + timeoutNanos;
+        var waiter = new Waiter(priority);
+        long acquired = lockWrite();
+        try {
+            // when somebody is waiting we are full, so a new producer can not jump the queue, it only gets in by eviction
+            if (!isFull() || evictFor(priority)){
+                return addInternally(priority);
+            }
+            if (timeoutNanos <= 0){
+                metrics.rejected(RejectionCause.CAPACITY);
                 return Optional.empty();
             }
+            waiters.addLast(waiter);
+        } finally {
+            unlockWrite(acquired);
+            commitJournal();
+        }
 
-            // atomic modification of all structures guaranteed by the read-write lock
-            return addInternally(priority);
+        while (waiter.result == null){
+            if (Thread.interrupted()){
+                if (cancel(waiter)){
+                    throw new InterruptedException();
+                }
+                // served in the meantime, the task is ours
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (timeoutNanos == Long.MAX_VALUE){
+                LockSupport.park(this);
+            } else {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0){
+                    if (cancel(waiter)){
+                        metrics.rejected(RejectionCause.CAPACITY);
+                        return Optional.empty();
+                    }
+                    break;
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+        // the thread that served us could still be committing
+        commitJournal();
+        return waiter.result;
+    }
+
+    // false if the waiter was served before it could leave the queue
+    private boolean cancel(Waiter waiter){
+        long acquired = lockWrite();
+        try {
+            return waiter.result == null && waiters.remove(waiter);
         } finally {
-            rl.writeLock().unlock();
+            unlockWrite(acquired);
+        }
+    }
+
+    // called under the write lock after slots were freed
+    private void handOffFreeSlots(){
+        boolean served = false;
+        while (!waiters.isEmpty() && !isFull()){
+            serve(waiters.pollFirst());
+            served = true;
+        }
+        // the tasks just added can be evicted for the waiters that outrank them, until none is left to evict
+        while (served){
+            served = false;
+            for (var iterator = waiters.iterator(); iterator.hasNext(); ){
+                var waiter = iterator.next();
+                if (evictFor(waiter.priority)){
+                    iterator.remove();
+                    serve(waiter);
+                    served = true;
+                }
+            }
+        }
+    }
+
+    private void serve(Waiter waiter){
+        waiter.result = addInternally(waiter.priority);
+        LockSupport.unpark(waiter.thread);
+    }
+
+    // called under the write lock
+    private void expireAfter(Task task, long timeToLiveNanos) {
+        long elapsed = System.nanoTime() - expiryOrigin + timeToLiveNanos;
+        long tickNanos = EXPIRY_TICK.toNanos();
+        // rounded up, the reaper only expires the ticks that have fully passed
+        long deadline = (elapsed + tickNanos - 1) / tickNanos;
+        expiries.schedule(task, deadline);
+        if (reaper == null){
+            reaper = new Thread(this::reap, "task-manager-reaper");
+            reaper.setDaemon(true);
+            reaperWakeUp = deadline;
+            reaper.start();
+        } else if (deadline < reaperWakeUp){
+            reaperWakeUp = deadline;
+            LockSupport.unpark(reaper);
         }
     }
 
+    private void reap(){
+        while (true){
+            long wakeUp;
+            long start = startOperation();
+            long acquired = lockWrite();
+            try {
+                long now = (System.nanoTime() - expiryOrigin) / EXPIRY_TICK.toNanos();
+                expiries.advance(now, task -> {
+                    // a task always leaves its timer when it is removed, so it is still in the store
+                    store.remove(task);
+                    removed(task, TaskEvent.Type.EXPIRED);
+                    metrics.expired();
+                });
+                handOffFreeSlots();
+                if (expiries.isEmpty()){
+                    // started again by the next time to live
+                    reaper = null;
+                    return;
+                }
+                reaperWakeUp = expiries.nextTick();
+                wakeUp = reaperWakeUp;
+            } finally {
+                unlockWrite(acquired);
+                commitJournal();
+                metrics.operation(Operation.EXPIRE, start);
+            }
+            // a closer deadline scheduled after the unlock unparks us, the permit makes this park return at once
+            LockSupport.parkNanos(this, expiryOrigin + wakeUp * EXPIRY_TICK.toNanos() - System.nanoTime());
+        }
+    }
+
+    // never applies the strategy, used by ShardedTaskManager to look for a free slot before evicting from a shard
+    Optional<Task> addIfNotFull(Priority priority, long timeToLiveNanos){
+        long start = startOperation();
+        long acquired = lockWrite();
+        try {
+            if (isFull()){
+                return Optional.empty();
+            }
+            var task = addInternally(priority);
+            if (timeToLiveNanos > 0 && task.isPresent()){
+                expireAfter(task.get(), timeToLiveNanos);
+            }
+            return task;
+        } finally {
+            unlockWrite(acquired);
+            metrics.operation(Operation.ADD, start);
+        }
+    }
+
+    // the eviction strategy, called under the write lock
+    protected Optional<Task> addWhenFull(Priority priority){
+        metrics.rejected(RejectionCause.CAPACITY);
+        return Optional.empty();
+    }
+
+    // evicts a task to make room for a new one of this priority, false when there is none to evict (a waiter then waits)
+    protected boolean evictFor(Priority priority){
+        return false;
+    }
+
     protected Optional<Task> addInternally(Priority priority){
         Task task = null;
         try {
-            task = new Task(pidPool.getPID(), priority, this);
+            var pid = pidPool.getPID();
+            task = new Task(pid, priority, owner, pidPool.generation(pid));
         } catch (PIDPool.PIDPoolFullException ex){
             // log here
+            metrics.rejected(RejectionCause.PID_POOL_EXHAUSTED);
             return Optional.empty();
         }
-        queue.put(task.pid(),task);
-        byPriority.computeIfAbsent(task.priority(),(p) -> new LinkedHashMap<>());
-        byPriority.get(task.priority()).put(task.pid(),task);
-        byPID.add(task);
-        size++;
+        store.add(task);
+        journal.added(task);
+        publish(TaskEvent.Type.ADDED, task);
+        counted(priority, 1);
+        version++;
+        metrics.admitted(priority);
         return Optional.of(task);
     }
 
@@ -80,87 +395,474 @@ public class BaseTaskManager implements TaskManager {
         return size == capacity;
     }
 
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public int count(Priority priority) {
+        return counts.get(priority.rank());
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size;
+    }
+
+    @Override
+    public Occupancy occupancy() {
+        var snapshot = new int[counts.length()];
+        for (int attempt = 0; attempt < 3; attempt++){
+            long stamp = occupancyLock.tryOptimisticRead();
+            readCounts(snapshot);
+            if (occupancyLock.validate(stamp)){
+                return new Occupancy(capacity, snapshot);
+            }
+        }
+        // a reader that keeps racing the writers waits for them once instead of spinning
+        long stamp = occupancyLock.readLock();
+        try {
+            readCounts(snapshot);
+            return new Occupancy(capacity, snapshot);
+        } finally {
+            occupancyLock.unlockRead(stamp);
+        }
+    }
+
+    private void readCounts(int[] snapshot) {
+        for (int rank = 0; rank < snapshot.length; rank++){
+            snapshot[rank] = counts.get(rank);
+        }
+    }
+
+    // the only writers of the counters, under the write lock
+    private void counted(Priority priority, int delta) {
+        acquireOccupancy();
+        size += delta;
+        counts.addAndGet(priority.rank(), delta);
+    }
+
+    private void countedNone() {
+        acquireOccupancy();
+        size = 0;
+        for (int rank = 0; rank < counts.length(); rank++){
+            counts.set(rank, 0);
+        }
+    }
+
+    private void acquireOccupancy() {
+        if (occupancyStamp == 0){
+            occupancyStamp = occupancyLock.writeLock();
+        }
+    }
+
+    private void releaseOccupancy() {
+        if (occupancyStamp != 0){
+            occupancyLock.unlockWrite(occupancyStamp);
+            occupancyStamp = 0;
+        }
+    }
+
     @Override
     public void kill(Task task) {
-        rl.writeLock().lock();
+        if (reclaiming.get() == task){
+            return;
+        }
+        long start = startOperation();
+        long acquired = lockWrite();
         try {
-            if (queue.containsKey(task.pid())){
-                // order is important to avoid loops
-                queue.remove(task.pid());
-                task.kill();
-                pidPool.releasePID(task.pid());
-                // we are guaranteed entry exists
-                byPriority.get(task.priority()).remove(task.pid());
-                byPID.remove(task);
-                size--;
+            // order is important to avoid loops
+            if (store.remove(task)){
+                removed(task, TaskEvent.Type.KILLED);
+                handOffFreeSlots();
             }
         }
         finally {
-            rl.writeLock().unlock();
+            unlockWrite(acquired);
+            commitJournal();
+            metrics.operation(Operation.KILL, start);
         }
     }
 
+    // called by the strategies, the task was already removed from the store
+    protected void evicted(Task task) {
+        removed(task, TaskEvent.Type.EVICTED);
+    }
+
+    // the task was already removed from the store, its kill command and the release of its PID wait for the unlock
+    private void removed(Task task, TaskEvent.Type type) {
+        expiries.cancel(task);
+        journal.killed(task);
+        counted(task.priority(), -1);
+        version++;
+        metrics.removed(task.priority());
+        publish(type, task);
+        unreclaimed.add(List.of(task));
+    }
+
+    /*
+      The bulk kills only detach the tasks under the write lock and keep the counters exact from the counts by priority,
+      the kill commands and the release of the PIDs run after the unlock like for a single kill (see reclaim). The tasks are only walked under
+      the lock to publish them when there are subscribers, the change feed must not miss them.
+     */
     @Override
     public void killAll() {
-        rl.writeLock().lock();
+        long start = startOperation();
+        long acquired = lockWrite();
         try {
-            // avoid concurrent modification exception
-            var tasksToRemove = new ArrayList<>(queue.values());
-            for(var task: tasksToRemove){
-                // a bulk remove is o(n) while calling the kill method repeatedly is o(n lg(n)) because of the TreeSet
-                // kill(task);
-                queue.remove(task.pid());
-                task.kill();
-                pidPool.releasePID(task.pid());
+            var tasksToRemove = store.removeAll();
+            expiries.clear();
+            journal.killedAll();
+            if (metrics.isEnabled()){
+                for (int rank = 0; rank < counts.length(); rank++){
+                    metrics.removed(Priority.of(rank), counts.get(rank));
+                }
             }
-            byPID.clear();
-            byPriority.forEach((p,t)->t.clear());
+            countedNone();
+            version++;
+            published(tasksToRemove);
+            unreclaimed.add(tasksToRemove);
+            handOffFreeSlots();
         }
         finally {
-            rl.writeLock().unlock();
+            unlockWrite(acquired);
+            commitJournal();
+            metrics.operation(Operation.KILL_ALL, start);
         }
     }
 
     @Override
     public void killByPriority(Priority priority) {
-        rl.writeLock().lock();
+        long start = startOperation();
+        long acquired = lockWrite();
         try {
-            // avoid concurrent modification exception
-            var tasksToRemove = new ArrayList<>(byPriority.getOrDefault(priority,Collections.emptyMap()).values());
-            // we have reentrant locks so it is okay
-            for(var task: tasksToRemove){
-                // we can not use bulk remove here and we will have O(lg(n)) cost per iteration
-                kill(task);
+            int removed = count(priority);
+            var tasksToRemove = store.removeAll(priority);
+            journal.killedByPriority(priority);
+            counted(priority, -removed);
+            metrics.removed(priority, removed);
+            version++;
+            if (!expiries.isEmpty()){
+                tasksToRemove.forEach(expiries::cancel);
             }
+            published(tasksToRemove);
+            unreclaimed.add(tasksToRemove);
+            handOffFreeSlots();
         }
         finally {
-            rl.writeLock().unlock();
+            unlockWrite(acquired);
+            commitJournal();
+            metrics.operation(Operation.KILL_BY_PRIORITY, start);
+        }
+    }
+
+    private void published(Iterable<Task> killed) {
+        if (subscriptions.length != 0){
+            for (var task : killed){
+                publish(TaskEvent.Type.KILLED, task);
+            }
+        }
+    }
+
+    /*
+      The side effects of the removals, run by the kill executor after the write lock was released: the kill command of
+      every task, then the release of its PID (not before, a new task with the same PID and priority would be equal to the
+      killed one). The tasks left the store under the lock, so their reentrant kill is skipped instead of taking the lock.
+     */
+    private void reclaim(List<Iterable<Task>> batches) {
+        for (var batch : batches){
+            for (var task : batch){
+                reclaiming.set(task);
+                try {
+                    task.kill();
+                } finally {
+                    reclaiming.remove();
+                }
+                pidPool.releasePID(task.pid());
+            }
+        }
+    }
+
+    /*
+      The snapshot is taken under the read lock and the subscription registered before it is released, so no modification
+      can happen between the snapshot and the first event. The events are then buffered by the writers (never waiting
+      for the subscriber) and delivered in batches by a thread of the subscription.
+     */
+    @Override
+    public Subscription subscribe(TaskSubscriber subscriber, int bufferSize) {
+        rl.readLock().lock();
+        try {
+            var snapshot = new ArrayList<Task>(size);
+            store.view(SortCriteria.FIFO, SortOrder.ASCENDING).list(snapshot::add);
+            var subscription = new BufferedSubscription(subscriber, bufferSize, snapshot, this::unsubscribe);
+            synchronized (subscriptionsLock){
+                var grown = Arrays.copyOf(subscriptions, subscriptions.length + 1);
+                grown[subscriptions.length] = subscription;
+                subscriptions = grown;
+            }
+            subscription.start();
+            return subscription;
+        } finally {
+            rl.readLock().unlock();
+        }
+    }
+
+    private void unsubscribe(BufferedSubscription subscription) {
+        synchronized (subscriptionsLock){
+            var remaining = new ArrayList<>(Arrays.asList(subscriptions));
+            remaining.remove(subscription);
+            subscriptions = remaining.toArray(new BufferedSubscription[0]);
+        }
+    }
+
+    // called under the write lock
+    private void publish(TaskEvent.Type type, Task task) {
+        for (var subscription : subscriptions){
+            subscription.publish(type, task);
+        }
+    }
+
+    /*
+      Writes a checkpoint of the live tasks through the journal (see CheckpointedTaskJournal). Only the copy of the FIFO order
+      and the position of the journal are taken under the read lock, so writers wait for a copy of the tasks, not for the
+      encoding and the writing of the file.
+     */
+    public void checkpoint(){
+        Task[] tasks;
+        long position;
+        rl.readLock().lock();
+        try {
+            var fifo = new ArrayList<Task>(size);
+            store.view(SortCriteria.FIFO, SortOrder.ASCENDING).list(fifo::add);
+            tasks = fifo.toArray(new Task[0]);
+            position = journal.position();
+        } finally {
+            rl.readLock().unlock();
+        }
+        journal.checkpoint(tasks, position);
+    }
+
+    // a reentrant call leaves it to the outermost one, so the journal is never forced under the write lock
+    void commitJournal(){
+        if (!rl.isWriteLockedByCurrentThread()){
+            journal.commit();
+        }
+    }
+
+    // the reentrant calls (a task killing itself under our lock) are not measured, they would only count twice
+    private long startOperation(){
+        return metrics.isEnabled() && !rl.isWriteLockedByCurrentThread() ? metrics.start() : TaskManagerMetrics.NOT_MEASURED;
+    }
+
+    // returns the time the write lock was acquired, or NOT_MEASURED
+    // package private for the task managers that hold the write lock over several operations (AsyncTaskManager, ShardedTaskManager)
+    long lockWrite(){
+        if (!metrics.isEnabled() || rl.isWriteLockedByCurrentThread()){
+            rl.writeLock().lock();
+            return TaskManagerMetrics.NOT_MEASURED;
+        }
+        long start = System.nanoTime();
+        rl.writeLock().lock();
+        long acquired = System.nanoTime();
+        metrics.writeLockWaited(acquired - start);
+        return acquired;
+    }
+
+    void unlockWrite(long acquired){
+        List<Iterable<Task>> reclaimable = null;
+        // the outermost operation is over
+        if (rl.getWriteHoldCount() == 1){
+            releaseOccupancy();
+            if (!unreclaimed.isEmpty()){
+                reclaimable = unreclaimed;
+                unreclaimed = new ArrayList<>();
+            }
+        }
+        if (acquired != TaskManagerMetrics.NOT_MEASURED){
+            metrics.writeLockHeld(System.nanoTime() - acquired);
+        }
+        rl.writeLock().unlock();
+        if (reclaimable != null){
+            var batch = reclaimable;
+            killExecutor.execute(() -> reclaim(batch));
         }
     }
 
     @Override
     public void list(Consumer<Task> consumer, SortCriteria sortCriteria, SortOrder sortOrder) {
+        long start = metrics.start();
+        // the consumer runs outside of any lock on an immutable array, so it can even kill the tasks it is given
+        new ArrayTasksView(cachedView(sortCriteria, sortOrder)).list(consumer);
+        metrics.operation(Operation.LIST, start);
+    }
+
+    @Override
+    public void query(Consumer<Task> consumer, TaskQuery query) {
+        long start = metrics.start();
+        var tasks = new ArrayList<Task>();
         rl.readLock().lock();
+        long acquired = metrics.start();
         try {
-            // moved out responsibility of views from task manager (the classes are still tightly coupled however)
-            TasksView.fromTaskManager(this,sortCriteria,sortOrder).list(consumer);
+            // the store only walks the part of its indexes that can match, the cached views would be walked whole
+            store.query(query).list(tasks::add);
         }
         finally {
+            if (acquired != TaskManagerMetrics.NOT_MEASURED){
+                metrics.readLockHeld(query.sortCriteria(), System.nanoTime() - acquired);
+            }
             rl.readLock().unlock();
         }
+        // like for list, the consumer runs outside of the lock
+        tasks.forEach(consumer);
+        metrics.operation(Operation.QUERY, start);
+    }
+
+    /*
+      A current cached view is walked without any lock. Otherwise building it would walk every task under the read lock,
+      so the store is walked directly instead and only for as long as the visitor goes on
+     */
+    @Override
+    public void visit(Predicate<Task> visitor, SortCriteria sortCriteria, SortOrder sortOrder) {
+        long start = metrics.start();
+        var cached = cachedViews.get(viewIndex(sortCriteria, sortOrder));
+        if (cached != null && cached.version() == version){
+            new ArrayTasksView(cached.tasks()).visit(visitor);
+        } else {
+            rl.readLock().lock();
+            long acquired = metrics.start();
+            try {
+                TasksView.fromTaskManager(this, sortCriteria, sortOrder).visit(visitor);
+            }
+            finally {
+                if (acquired != TaskManagerMetrics.NOT_MEASURED){
+                    metrics.readLockHeld(sortCriteria, System.nanoTime() - acquired);
+                }
+                rl.readLock().unlock();
+            }
+        }
+        metrics.operation(Operation.LIST, start);
+    }
+
+    // the cached view is immutable and shared, so the stream needs neither a copy nor a lock
+    @Override
+    public Stream<Task> stream(SortCriteria sortCriteria, SortOrder sortOrder) {
+        return Arrays.stream(cachedView(sortCriteria, sortOrder));
+    }
+
+    private Task[] cachedView(SortCriteria sortCriteria, SortOrder sortOrder) {
+        int index = viewIndex(sortCriteria, sortOrder);
+        var cached = cachedViews.get(index);
+        if (cached != null && cached.version() == version){
+            return cached.tasks();
+        }
+        var builder = viewBuilders[index];
+        builder.lock();
+        try {
+            // somebody else could have built it while we were waiting
+            cached = cachedViews.get(index);
+            if (cached != null && cached.version() == version){
+                return cached.tasks();
+            }
+            rl.readLock().lock();
+            long acquired = metrics.start();
+            try {
+                // the version can not change while we hold the read lock
+                var tasks = new ArrayList<Task>(size);
+                // moved out responsibility of views from task manager (the classes are still tightly coupled however)
+                TasksView.fromTaskManager(this,sortCriteria,sortOrder).list(tasks::add);
+                cached = new CachedView(version, tasks.toArray(new Task[0]));
+            }
+            finally {
+                if (acquired != TaskManagerMetrics.NOT_MEASURED){
+                    metrics.readLockHeld(sortCriteria, System.nanoTime() - acquired);
+                }
+                rl.readLock().unlock();
+            }
+            cachedViews.set(index, cached);
+            return cached.tasks();
+        }
+        finally {
+            builder.unlock();
+        }
+    }
 
+    private static int viewIndex(SortCriteria sortCriteria, SortOrder sortOrder) {
+        return sortCriteria.ordinal() * SortOrder.values().length + sortOrder.ordinal();
     }
 
      // package private methods to be accessible only TasksView
-     LinkedHashMap<PID, Task> orderedFIFOView() {
-        return queue;
+    TaskStore store() {
+        return store;
+    }
+
+    public TaskManagerMetrics metrics() {
+        return metrics;
+    }
+
+    // set before the first task is created, the kill of the tasks then goes through the owner
+    void ownedBy(TaskManager owner) {
+        this.owner = owner;
     }
 
-    TreeSet<Task> orderedPIDView() {
-        return byPID;
+    long version() {
+        return version;
     }
 
-    TreeMap<Priority, Map<PID, Task>> orderedPriorityView() {
-        return byPriority;
+    // rebuilds the state from the journal, without any side effect: the tasks are not killed again and nothing is journaled
+    private final class Recovery implements TaskJournal.Replay {
+        @Override
+        public void added(PID pid, Priority priority) {
+            if (isFull()){
+                throw new IllegalStateException("The journal holds more tasks than the capacity " + capacity);
+            }
+            pidPool.reserve(pid);
+            store.add(new Task(pid, priority, owner));
+            counted(priority, 1);
+            metrics.admitted(priority);
+        }
+
+        @Override
+        public void killed(PID pid, Priority priority) {
+            if (store.remove(new Task(pid, priority, owner))){
+                counted(priority, -1);
+                metrics.removed(priority);
+                pidPool.releasePID(pid);
+            }
+        }
+
+        @Override
+        public void killedAll() {
+            released(store.removeAll());
+            countedNone();
+        }
+
+        @Override
+        public void killedByPriority(Priority priority) {
+            int removed = count(priority);
+            released(store.removeAll(priority));
+            counted(priority, -removed);
+        }
+
+        private void released(Iterable<Task> tasks) {
+            for (var task : tasks){
+                metrics.removed(task.priority());
+                pidPool.releasePID(task.pid());
+            }
+        }
+    }
+
+    private record CachedView(long version, Task[] tasks) {
+    }
+
+    private static final class Waiter {
+        final Priority priority;
+        final Thread thread = Thread.currentThread();
+        // set once by the thread that served the waiter
+        volatile Optional<Task> result;
+
+        Waiter(Priority priority) {
+            this.priority = priority;
+        }
     }
 }
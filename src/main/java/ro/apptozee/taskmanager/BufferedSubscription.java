@@ -0,0 +1,141 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.events.Subscription;
+import ro.apptozee.taskmanager.events.TaskEvent;
+import ro.apptozee.taskmanager.events.TaskSubscriber;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/*
+  Bounded buffer of events between the writers of a task manager (a single producer at a time, since they publish under
+  the write lock) and the thread of the subscription, which delivers everything buffered so far as a single batch.
+
+  Publishing never waits: when the buffer is full the event is only counted as lost and so are the following ones until the
+  subscriber is told about the gap, after the events that precede it. So the subscriber always knows where the gap is.
+ */
+final class BufferedSubscription implements Subscription {
+
+    private final TaskSubscriber subscriber;
+    private final TaskEvent[] buffer;
+
+    // next event to deliver, only written by the dispatcher
+    private volatile long head;
+    // next event to publish, only written under the write lock of the task manager
+    private volatile long tail;
+
+    // while positive nothing is buffered, so the events after the gap wait for the gap to be reported
+    private final AtomicLong lost = new AtomicLong();
+
+    private final List<Task> snapshot;
+    private final Consumer<BufferedSubscription> onClose;
+
+    private final Thread dispatcher;
+    private volatile boolean dispatcherParked;
+    private volatile boolean open = true;
+
+    BufferedSubscription(TaskSubscriber subscriber, int bufferSize, List<Task> snapshot, Consumer<BufferedSubscription> onClose) {
+        if (bufferSize < 1){
+            throw new IllegalArgumentException("The buffer must hold at least one event");
+        }
+        this.subscriber = subscriber;
+        this.buffer = new TaskEvent[bufferSize];
+        this.snapshot = snapshot;
+        this.onClose = onClose;
+        this.dispatcher = new Thread(this::dispatch, "task-events-dispatcher");
+        dispatcher.setDaemon(true);
+    }
+
+    void start() {
+        dispatcher.start();
+    }
+
+    // called under the write lock of the task manager
+    void publish(TaskEvent.Type type, Task task) {
+        if (!open){
+            return;
+        }
+        long next = tail;
+        if (lost.get() > 0 || next - head == buffer.length){
+            lost.incrementAndGet();
+        } else {
+            buffer[(int) (next % buffer.length)] = new TaskEvent(type, task);
+            tail = next + 1;
+        }
+        if (dispatcherParked){
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (open){
+            open = false;
+            onClose.accept(this);
+            LockSupport.unpark(dispatcher);
+        }
+    }
+
+    private void dispatch() {
+        try {
+            subscriber.onSnapshot(snapshot);
+            while (open){
+                long from = head;
+                long to = tail;
+                if (from == to){
+                    reportGap();
+                    idle();
+                    continue;
+                }
+                var batch = new ArrayList<TaskEvent>((int) (to - from));
+                for (long sequence = from; sequence < to; sequence++){
+                    int slot = (int) (sequence % buffer.length);
+                    batch.add(buffer[slot]);
+                    buffer[slot] = null;
+                }
+                head = to;
+                subscriber.onEvents(batch);
+            }
+        } catch (RuntimeException ex){
+            // a failing subscriber is unsubscribed and told why
+            close();
+            reportFailure(ex);
+        }
+    }
+
+    private void reportFailure(RuntimeException failure) {
+        try {
+            subscriber.onError(failure);
+        } catch (RuntimeException ex){
+            // nobody else to tell
+            failure.addSuppressed(ex);
+            dispatcher.getUncaughtExceptionHandler().uncaughtException(dispatcher, failure);
+        }
+    }
+
+    private void reportGap() {
+        long gap;
+        do {
+            gap = lost.get();
+            // nothing is buffered after the first lost event, so an empty buffer means the events before the gap
+            // were all delivered (otherwise they are delivered first)
+            if (gap == 0 || head != tail){
+                return;
+            }
+        } while (!lost.compareAndSet(gap, 0));
+        subscriber.onOverflow(gap);
+    }
+
+    private void idle() {
+        dispatcherParked = true;
+        // a writer could have published before seeing the flag
+        if (open && head == tail && lost.get() == 0){
+            LockSupport.park(this);
+        }
+        dispatcherParked = false;
+    }
+}
@@ -0,0 +1,35 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.time.Duration;
+import java.util.Optional;
+
+public class FavorNewLockFreeTaskManager extends LockFreeTaskManager {
+
+    public FavorNewLockFreeTaskManager(int capacity, PIDPool pidPool) {
+        super(capacity, pidPool);
+    }
+
+    @Override
+    public Optional<Task> add(Priority priority) {
+        // either we get a free slot or we take over the slot of the oldest task
+        while (!tryReserve() && !evictOldest()){
+            // the manager is full but the reserved slots are not visible in the queue yet
+            Thread.onSpinWait();
+        }
+        return addReserved(priority);
+    }
+
+    // the oldest task is evicted instead, there is never anything to wait for
+    @Override
+    public Optional<Task> addAwait(Priority priority) {
+        return add(priority);
+    }
+
+    @Override
+    public Optional<Task> addAwait(Priority priority, Duration timeout) {
+        return add(priority);
+    }
+}
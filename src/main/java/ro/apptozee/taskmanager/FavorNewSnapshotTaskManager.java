@@ -0,0 +1,42 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.time.Duration;
+import java.util.Optional;
+
+public class FavorNewSnapshotTaskManager extends SnapshotTaskManager {
+
+    public FavorNewSnapshotTaskManager(int capacity, PIDPool pidPool) {
+        super(capacity, pidPool);
+    }
+
+    @Override
+    public Optional<Task> add(Priority priority) {
+        writeLock.lock();
+        try {
+            if (isFull()) {
+                // we are guaranteed we can find an element since the capacity is at least 1
+                return replace(storage.oldest().orElseThrow(), priority);
+            } else {
+                //we have room we, so we can simply add it without worrying about eviction
+                return replace(null, priority);
+            }
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    // the oldest task is evicted instead, there is never anything to wait for
+    @Override
+    public Optional<Task> addAwait(Priority priority) {
+        return add(priority);
+    }
+
+    @Override
+    public Optional<Task> addAwait(Priority priority, Duration timeout) {
+        return add(priority);
+    }
+}
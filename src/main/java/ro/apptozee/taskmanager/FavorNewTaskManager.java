@@ -1,36 +1,58 @@
 package ro.apptozee.taskmanager;
 
+import ro.apptozee.taskmanager.journal.TaskJournal;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.RingTaskStore;
+import ro.apptozee.taskmanager.storage.TaskStore;
+import ro.apptozee.taskmanager.vo.Strategy;
 import ro.apptozee.taskmanager.vo.Task;
 import ro.apptozee.taskmanager.vo.Priority;
 
+import java.time.Duration;
 import java.util.Optional;
 
 public class FavorNewTaskManager extends BaseTaskManager{
 
     public FavorNewTaskManager(int capacity, PIDPool pidPool) {
-        super(capacity, pidPool);
+        // every add at capacity evicts the oldest task, the ring does it without any allocation
+        this(capacity, pidPool, RingTaskStore::new);
+    }
+
+    public FavorNewTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory) {
+        super(capacity, pidPool, storeFactory);
+    }
+
+    public FavorNewTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics) {
+        super(capacity, pidPool, storeFactory, metrics);
+    }
+
+    public FavorNewTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics,
+                               TaskJournal journal) {
+        super(capacity, pidPool, storeFactory, metrics, journal);
+    }
+
+    public FavorNewTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics,
+                               TaskJournal journal, KillExecutor killExecutor) {
+        super(capacity, pidPool, storeFactory, metrics, journal, killExecutor);
+    }
+
+    // the oldest task is evicted instead, there is never anything to wait for
+    @Override
+    public Optional<Task> addAwait(Priority priority) {
+        return add(priority);
+    }
+
+    @Override
+    public Optional<Task> addAwait(Priority priority, Duration timeout) {
+        return add(priority);
     }
 
     @Override
-    public Optional<Task> add(Priority priority) {
-        rl.writeLock().lock();
-        try {
-            if (isFull()) {
-                // we are guaranteed we can find an element if we have a capacity of more than 1
-                var taskToRemove = queue.entrySet().iterator().next().getValue();
-                // we are using reentrant locks so it is safe
-                kill(taskToRemove);
-
-                return addInternally(priority);
-            } else {
-                //we have room we, so we can simply add it without worrying about eviction
-                return  addInternally(priority);
-            }
-        }
-        finally {
-            rl.writeLock().unlock();
-        }
-        // if we are operating in full capacity
+    protected Optional<Task> addWhenFull(Priority priority) {
+        // we are guaranteed we can find an element since the capacity is at least 1
+        evicted(store.pollOldest());
+        metrics.evicted(Strategy.FIFO);
 
+        return addInternally(priority);
     }
 }
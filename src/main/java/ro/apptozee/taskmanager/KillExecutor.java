@@ -0,0 +1,23 @@
+package ro.apptozee.taskmanager;
+
+import java.util.concurrent.Executor;
+
+/*
+  Runs the kill commands (Task.kill) of the tasks a BaseTaskManager removed, once its write lock was released.
+  A batch holds every task removed during one hold of the write lock: a kill, an add that evicted, a bulk kill, a tick of the
+  reaper. The tasks already left the task manager, so a batch can run at any time without ever seeing a live task, and
+  the PID of a task is only released after its kill command ran (a new task can not be mistaken for a killed one).
+ */
+@FunctionalInterface
+public interface KillExecutor {
+
+    // on the thread that released the lock, before the operation returns
+    KillExecutor INLINE = Runnable::run;
+
+    void execute(Runnable batch);
+
+    // e.g. a single thread executor, so that a slow kill command delays neither the writers nor the thread that killed
+    static KillExecutor of(Executor executor) {
+        return executor::execute;
+    }
+}
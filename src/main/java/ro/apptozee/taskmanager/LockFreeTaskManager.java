@@ -0,0 +1,241 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.events.Subscription;
+import ro.apptozee.taskmanager.events.TaskSubscriber;
+import ro.apptozee.taskmanager.storage.MarkedTask;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.Consumer;
+
+/*
+  Task manager without any lock, meant for FIFO ordered workloads.
+  The FIFO order is kept in a ConcurrentLinkedDeque of tasks wrapped with a lazy deletion mark and the tasks are indexed
+  by PID in a ConcurrentSkipListMap. The skip list is the source of truth: whoever removes the task from it owns the kill,
+  the deque entry is only marked and unlinked later (during a traversal or when the deque has doubled because of the marked entries).
+
+  The guarantees are weaker than the ones of BaseTaskManager:
+  - the capacity is enforced exactly by an atomic counter of reserved slots
+  - listing is weakly consistent: tasks added or killed during the traversal may or may not be seen
+  - killAll and killByPriority are not atomic, they kill the tasks they find while traversing (see the README)
+  - size counts the reserved slots (including the adds in progress), occupancy sums counters updated one by one after
+    the index, so it is not a snapshot of a single point in time
+ */
+public class LockFreeTaskManager implements TaskManager {
+
+    private final int capacity;
+
+    protected final PIDPool pidPool;
+
+    // reserved slots, incremented before the task is visible and decremented after it is no longer visible
+    private final AtomicInteger size = new AtomicInteger();
+
+    // the tasks in the index by priority, updated by whoever indexes or removes a task
+    private final AtomicIntegerArray counts = new AtomicIntegerArray(Priority.LEVELS);
+
+    protected final ConcurrentLinkedDeque<MarkedTask> queue = new ConcurrentLinkedDeque<>();
+
+    protected final ConcurrentSkipListMap<PID, MarkedTask> byPID = new ConcurrentSkipListMap<>();
+
+    // approximate number of marked entries still linked in the queue, only used to decide when to compact
+    protected final AtomicInteger marked = new AtomicInteger();
+
+    // a single thread physically unlinks marked entries at a time
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    public LockFreeTaskManager(int capacity, PIDPool pidPool) {
+        if (capacity < 1){
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.pidPool = pidPool;
+    }
+
+    @Override
+    public Optional<Task> add(Priority priority) {
+        if (!tryReserve()){
+            return Optional.empty();
+        }
+        return addReserved(priority);
+    }
+
+    // expiring would need a timer shared by the threads that add, only the locking modes have one
+    @Override
+    public Optional<Task> add(Priority priority, Duration timeToLive) {
+        throw new UnsupportedOperationException("add with a time to live not implemented for " + StorageMode.LOCK_FREE);
+    }
+
+    // waiting would need a queue of the waiters next to the counter of reserved slots, only the locking modes have one
+    @Override
+    public Optional<Task> addAwait(Priority priority) {
+        throw new UnsupportedOperationException("addAwait not implemented for " + StorageMode.LOCK_FREE);
+    }
+
+    @Override
+    public Optional<Task> addAwait(Priority priority, Duration timeout) {
+        throw new UnsupportedOperationException("addAwait not implemented for " + StorageMode.LOCK_FREE);
+    }
+
+    protected boolean tryReserve(){
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity){
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // the caller owns a slot
+    protected Optional<Task> addReserved(Priority priority){
+        Task task = null;
+        try {
+            var pid = pidPool.getPID();
+            task = new Task(pid, priority, this, pidPool.generation(pid));
+        } catch (PIDPool.PIDPoolFullException ex){
+            // log here
+            size.decrementAndGet();
+            return Optional.empty();
+        }
+        var markedTask = new MarkedTask(task);
+        // indexed first so that a concurrent kill of the task can already find it
+        byPID.put(task.pid(), markedTask);
+        counts.incrementAndGet(priority.rank());
+        queue.offerLast(markedTask);
+        compactIfNeeded();
+        return Optional.of(task);
+    }
+
+    @Override
+    public void kill(Task task) {
+        var markedTask = byPID.get(task.pid());
+        // only one thread can win the removal, that thread owns the kill (a recycled PID could belong to a newer task)
+        if (markedTask != null && markedTask.task().equals(task) && byPID.remove(task.pid(), markedTask)){
+            markedTask.markDeleted();
+            marked.incrementAndGet();
+            counts.decrementAndGet(task.priority().rank());
+            size.decrementAndGet();
+            // order is important to avoid loops
+            task.kill();
+            pidPool.releasePID(task.pid());
+        }
+    }
+
+    // removes the oldest task without releasing its slot, which is handed over to the caller
+    protected boolean evictOldest(){
+        MarkedTask markedTask;
+        while ((markedTask = queue.pollFirst()) != null){
+            if (markedTask.isDeleted()){
+                marked.decrementAndGet();
+                continue;
+            }
+            var task = markedTask.task();
+            if (byPID.remove(task.pid(), markedTask)){
+                markedTask.markDeleted();
+                counts.decrementAndGet(task.priority().rank());
+                // order is important to avoid loops
+                task.kill();
+                pidPool.releasePID(task.pid());
+                return true;
+            }
+            // a concurrent kill won the task and will count it as marked, but we have already unlinked it
+            marked.decrementAndGet();
+        }
+        return false;
+    }
+
+    @Override
+    public void killAll() {
+        for (var markedTask : byPID.values()){
+            kill(markedTask.task());
+        }
+        compact();
+    }
+
+    @Override
+    public void killByPriority(Priority priority) {
+        for (var markedTask : byPID.values()){
+            if (markedTask.task().priority() == priority){
+                kill(markedTask.task());
+            }
+        }
+    }
+
+    private void compactIfNeeded(){
+        // amortized: the queue has at least doubled in size because of the marked entries
+        if (marked.get() > size.get()){
+            compact();
+        }
+    }
+
+    protected void compact(){
+        if (!compacting.compareAndSet(false, true)){
+            // somebody else is already doing it
+            return;
+        }
+        try {
+            var it = queue.iterator();
+            while (it.hasNext()){
+                if (it.next().isDeleted()){
+                    it.remove();
+                    marked.decrementAndGet();
+                }
+            }
+        } finally {
+            compacting.set(false);
+        }
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer, SortCriteria sortCriteria, SortOrder sortOrder) {
+        TasksView.fromTaskManager(this, sortCriteria, sortOrder).list(consumer);
+        // the traversal is the right moment to do the physical deletion, but readers never wait for it
+        compactIfNeeded();
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int count(Priority priority) {
+        return counts.get(priority.rank());
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size.get();
+    }
+
+    @Override
+    public Occupancy occupancy() {
+        var snapshot = new int[counts.length()];
+        for (int rank = 0; rank < snapshot.length; rank++){
+            snapshot[rank] = counts.get(rank);
+        }
+        return new Occupancy(capacity, snapshot);
+    }
+
+    // a subscription takes the events of one writer at a time, in order, while the writers of this mode do not take turns
+    @Override
+    public Subscription subscribe(TaskSubscriber subscriber, int bufferSize) {
+        throw new UnsupportedOperationException("subscribe not implemented for " + StorageMode.LOCK_FREE);
+    }
+
+    // package private methods to be accessible only TasksView
+    ConcurrentLinkedDeque<MarkedTask> orderedFIFOView() {
+        return queue;
+    }
+
+    ConcurrentSkipListMap<PID, MarkedTask> orderedPIDView() {
+        return byPID;
+    }
+}
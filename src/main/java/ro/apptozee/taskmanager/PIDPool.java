@@ -2,24 +2,252 @@ package ro.apptozee.taskmanager;
 
 import ro.apptozee.taskmanager.vo.PID;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
 /*
   if using the module system this class can be marked public and not exported by the module (package private for now)
   Should be an interface implementation, but to keep this exercise short it is a concrete class
+
+  Bounded pool of reusable PIDs backed by a hierarchical bitset.
+  Level 0 has one bit per PID (set = in use). Every upper level has one bit per word of the level below, set when that word
+  is full, so finding a free PID skips 64, 4096, 262144... used PIDs at a time: allocate and release are O(log64(n)).
+
+  Every PID also has a generation, incremented by each of its releases before the PID is freed, so a PID handed out again
+  never has the generation it had before (until the counter wraps around after 2^32 releases). The generations of the 64
+  PIDs of a word are only allocated the first time one of them is released, the others are still at generation 0.
+
+  The pool is lock free (CAS on the words) so it can be used outside the critical section of a task manager.
+  The bits of the upper levels are only hints: they are set after the word below was observed full (and re-checked afterwards)
+  and cleared after a release, so a free PID is never hidden once the concurrent operations complete.
  */
 class PIDPool {
-    // we are only using it with mutual exclusion -> no need for AtomicInteger
-    private int nextPID = 0;
+
+    // same as the upper limit of pid_max on 64 bit Linux
+    public static final int DEFAULT_MAX_PIDS = 1 << 22;
+
+    public enum AllocationPolicy {
+        // continue after the last allocated PID and wrap around (like Linux), PIDs are not reused right away
+        NEXT_FIT,
+        // always hand out the lowest free PID, so that the space stays dense
+        LOWEST_FREE
+    }
+
+    private static final int WORD_SHIFT = 6;
+    private static final int WORD_MASK = (1 << WORD_SHIFT) - 1;
+    private static final long FULL = -1L;
+
+    private final int maxPIDs;
+
+    private final AllocationPolicy allocationPolicy;
+
+    // levels[0] are the PIDs, the last level always fits in a single word
+    private final AtomicLongArray[] levels;
+
+    // one chunk of 64 generations per word of levels[0], null until a PID of the word is released
+    private final AtomicReferenceArray<AtomicIntegerArray> generations;
+
+    // only a hint where to start the search for the next fit policy
+    private final AtomicInteger cursor = new AtomicInteger();
+
+    public PIDPool() {
+        this(DEFAULT_MAX_PIDS, AllocationPolicy.NEXT_FIT);
+    }
+
+    public PIDPool(int maxPIDs, AllocationPolicy allocationPolicy) {
+        if (maxPIDs < 1){
+            throw new IllegalArgumentException("The pool must contain at least one PID");
+        }
+        this.maxPIDs = maxPIDs;
+        this.allocationPolicy = allocationPolicy;
+
+        int depth = 1;
+        for (long bits = maxPIDs; bits > Long.SIZE; bits = wordsFor(bits)){
+            depth++;
+        }
+        levels = new AtomicLongArray[depth];
+        long bits = maxPIDs;
+        for (int level = 0; level < depth; level++){
+            int words = wordsFor(bits);
+            levels[level] = new AtomicLongArray(words);
+            // the bits past the end are marked as used so they are never handed out
+            int used = (int) (bits & WORD_MASK);
+            if (used != 0){
+                levels[level].set(words - 1, FULL << used);
+            }
+            bits = words;
+        }
+        generations = new AtomicReferenceArray<>(levels[0].length());
+    }
+
+    public int getMaxPIDs() {
+        return maxPIDs;
+    }
 
     public PID getPID() {
-        if(nextPID == Integer.MAX_VALUE){
-            throw new PIDPoolFullException();
+        int start = allocationPolicy == AllocationPolicy.NEXT_FIT ? cursor.get() : 0;
+        while (true){
+            int pid = findFree(start);
+            if (pid < 0 && start > 0){
+                // wrap around
+                start = 0;
+                pid = findFree(start);
+            }
+            if (pid < 0){
+                throw new PIDPoolFullException();
+            }
+            if (tryAcquire(pid)){
+                if (allocationPolicy == AllocationPolicy.NEXT_FIT){
+                    cursor.set(pid + 1 == maxPIDs ? 0 : pid + 1);
+                }
+                return new PID(pid);
+            }
+            // lost the race for this PID, keep searching from it
+            start = pid;
         }
-        return new PID(nextPID++);
     }
 
     public void releasePID(PID pid){
-        // as this was not required by the exercise I have not implemented this method
-        // in a real scenario the PID would be a limited resource and would need to be reused
+        int value = pid.pid();
+        if (value < 0 || value >= maxPIDs){
+            throw new IllegalArgumentException(pid + " does not belong to this pool");
+        }
+        generationsOf(value).incrementAndGet(value & WORD_MASK);
+        clearBit(levels[0], value);
+        // the words above are not full anymore
+        clearHints(1, value >>> WORD_SHIFT);
+    }
+
+    // read after the PID was handed out and before it is released, the generation of the task that holds it
+    int generation(PID pid){
+        var chunk = generations.get(pid.pid() >>> WORD_SHIFT);
+        return chunk == null ? 0 : chunk.get(pid.pid() & WORD_MASK);
+    }
+
+    private AtomicIntegerArray generationsOf(int pid){
+        int word = pid >>> WORD_SHIFT;
+        var chunk = generations.get(word);
+        if (chunk == null){
+            generations.compareAndSet(word, null, new AtomicIntegerArray(Long.SIZE));
+            chunk = generations.get(word);
+        }
+        return chunk;
+    }
+
+    // marks a given PID as used, to rebuild the pool from a journal
+    void reserve(PID pid){
+        int value = pid.pid();
+        if (value < 0 || value >= maxPIDs){
+            throw new IllegalArgumentException(pid + " does not belong to this pool");
+        }
+        if (!tryAcquire(value)){
+            throw new IllegalStateException(pid + " is already in use");
+        }
+        // the allocations continue after the last PID handed out, as if the pool was never rebuilt
+        if (allocationPolicy == AllocationPolicy.NEXT_FIT){
+            cursor.set(value + 1 == maxPIDs ? 0 : value + 1);
+        }
+    }
+
+    // lowest free PID greater or equal to from, or -1
+    private int findFree(int from){
+        int level = 0;
+        int index = from;
+        // climb until a word with a free bit at or after index is found
+        while (true){
+            var words = levels[level];
+            int word = index >>> WORD_SHIFT;
+            if (word < words.length()){
+                long free = ~words.get(word) & (FULL << (index & WORD_MASK));
+                if (free != 0){
+                    index = (word << WORD_SHIFT) + Long.numberOfTrailingZeros(free);
+                    break;
+                }
+            }
+            if (level == levels.length - 1){
+                return -1;
+            }
+            // continue with the next word, one level up
+            index = word + 1;
+            level++;
+        }
+        // descend following the first non-full word
+        while (level > 0){
+            level--;
+            long free = ~levels[level].get(index);
+            if (free == 0){
+                // stale hint, a concurrent allocation filled it, look after it
+                long next = (long) (index + 1) << (WORD_SHIFT * (level + 1));
+                return next >= maxPIDs ? -1 : findFree((int) next);
+            }
+            index = (index << WORD_SHIFT) + Long.numberOfTrailingZeros(free);
+        }
+        return index;
+    }
+
+    private boolean tryAcquire(int pid){
+        var words = levels[0];
+        int word = pid >>> WORD_SHIFT;
+        long mask = 1L << (pid & WORD_MASK);
+        long current;
+        do {
+            current = words.get(word);
+            if ((current & mask) != 0){
+                return false;
+            }
+        } while (!words.compareAndSet(word, current, current | mask));
+        if ((current | mask) == FULL){
+            markFull(1, word);
+        }
+        return true;
+    }
+
+    // the word at index of the level below was observed full
+    private void markFull(int level, int index){
+        if (level == levels.length){
+            return;
+        }
+        long updated = setBit(levels[level], index);
+        if (levels[level - 1].get(index) != FULL){
+            // a release happened in the meantime, the hint is already wrong
+            clearHints(level, index);
+            return;
+        }
+        if (updated == FULL){
+            markFull(level + 1, index >>> WORD_SHIFT);
+        }
+    }
+
+    private void clearHints(int level, int index){
+        for (; level < levels.length; level++){
+            clearBit(levels[level], index);
+            index >>>= WORD_SHIFT;
+        }
+    }
+
+    private static long setBit(AtomicLongArray words, int bit){
+        int word = bit >>> WORD_SHIFT;
+        long mask = 1L << (bit & WORD_MASK);
+        long current;
+        do {
+            current = words.get(word);
+        } while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask));
+        return current | mask;
+    }
+
+    private static void clearBit(AtomicLongArray words, int bit){
+        int word = bit >>> WORD_SHIFT;
+        long mask = 1L << (bit & WORD_MASK);
+        long current;
+        do {
+            current = words.get(word);
+        } while ((current & mask) != 0 && !words.compareAndSet(word, current, current & ~mask));
+    }
+
+    private static int wordsFor(long bits){
+        return (int) ((bits + WORD_MASK) >>> WORD_SHIFT);
     }
 
     public static class PIDPoolFullException extends RuntimeException{
@@ -0,0 +1,33 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Optional;
+
+public class PrioritySnapshotTaskManager extends SnapshotTaskManager {
+
+    public PrioritySnapshotTaskManager(int capacity, PIDPool pidPool) {
+        super(capacity, pidPool);
+    }
+
+    @Override
+    public Optional<Task> add(Priority priority) {
+        writeLock.lock();
+        try {
+            if (isFull()) {
+                var toRemoveOpt = storage.oldestBelow(priority);
+                if (toRemoveOpt.isEmpty()){
+                    return Optional.empty();
+                }
+                return replace(toRemoveOpt.get(), priority);
+            } else {
+                //we have room we, so we can simply add it without worrying about eviction
+                return replace(null, priority);
+            }
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.List;
+import java.util.Optional;
+
+public class PriorityStripedTaskManager extends StripedTaskManager {
+
+    public PriorityStripedTaskManager(int capacity, PIDPool pidPool) {
+        super(capacity, pidPool);
+    }
+
+    public PriorityStripedTaskManager(int capacity, PIDPool pidPool, KillExecutor killExecutor) {
+        super(capacity, pidPool, killExecutor);
+    }
+
+    @Override
+    public Optional<Task> add(Priority priority) {
+        var stripe = stripe(priority);
+        if (tryReserve()){
+            var lock = stripe.lock().writeLock();
+            lock.lock();
+            try {
+                return addReserved(priority);
+            } finally {
+                lock.unlock();
+            }
+        }
+        // the victim can be in any stripe below, so we lock all of them (only the levels in use) and our own one
+        Task victim = null;
+        var locked = lockStripes(priority.rank(), true);
+        try {
+            // a slot could have been released while we were waiting for the stripes
+            if (tryReserve()){
+                return addReserved(priority);
+            }
+            // the stripes are locked by ascending level, every stripe before ours is a lower priority
+            for (int lower = 0; lower < locked.length - 1 && victim == null; lower++){
+                victim = locked[lower].pollOldest();
+            }
+            // the slot of the victim is handed over to the new task
+            return victim == null ? Optional.empty() : addReserved(priority);
+        } finally {
+            unlockStripes(locked, true);
+            if (victim != null){
+                reclaim(List.of(List.of(victim)));
+            }
+        }
+    }
+}
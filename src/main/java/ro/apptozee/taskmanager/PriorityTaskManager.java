@@ -1,5 +1,10 @@
 package ro.apptozee.taskmanager;
 
+import ro.apptozee.taskmanager.journal.TaskJournal;
+import ro.apptozee.taskmanager.metrics.RejectionCause;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.TaskStore;
+import ro.apptozee.taskmanager.vo.Strategy;
 import ro.apptozee.taskmanager.vo.Task;
 import ro.apptozee.taskmanager.vo.Priority;
 
@@ -11,34 +16,44 @@ public class PriorityTaskManager extends BaseTaskManager{
         super(capacity, pidPool);
     }
 
+    public PriorityTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory) {
+        super(capacity, pidPool, storeFactory);
+    }
+
+    public PriorityTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics) {
+        super(capacity, pidPool, storeFactory, metrics);
+    }
+
+    public PriorityTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics,
+                               TaskJournal journal) {
+        super(capacity, pidPool, storeFactory, metrics, journal);
+    }
+
+    public PriorityTaskManager(int capacity, PIDPool pidPool, TaskStore.Factory storeFactory, TaskManagerMetrics metrics,
+                               TaskJournal journal, KillExecutor killExecutor) {
+        super(capacity, pidPool, storeFactory, metrics, journal, killExecutor);
+    }
+
+    // a full manager makes room with the same eviction as add, so addAwait only waits when nothing of a lower priority is left
     @Override
-    public Optional<Task> add(Priority priority) {
-        rl.writeLock().lock();
-        try {
-            if (isFull()) {
-                Optional<Task> toRemoveOpt = byPriority.entrySet().stream()
-                        .filter(kv-> kv.getKey().getNumericalPriority() < priority.getNumericalPriority())
-                        .filter(kv-> kv.getValue().size()>0)
-                        .map(kv-> kv.getValue().entrySet().iterator().next().getValue())
-                        .findFirst();
-
-                if (toRemoveOpt.isEmpty()){
-                    return Optional.empty();
-                } else {
-                    // we are using reentrant locks so it is safe
-                    kill(toRemoveOpt.get());
-                    // can add
-                    return  addInternally(priority);
-                }
-            } else {
-                //we have room we, so we can simply add it without worrying about eviction
-                return  addInternally(priority);
-            }
-        }
-        finally {
-            rl.writeLock().unlock();
+    protected Optional<Task> addWhenFull(Priority priority) {
+        if (!evictFor(priority)){
+            metrics.rejected(RejectionCause.NO_LOWER_PRIORITY);
+            return Optional.empty();
         }
-        // if we are operating in full capacity
+        // can add
+        return addInternally(priority);
+    }
 
+    @Override
+    protected boolean evictFor(Priority priority) {
+        // O(1) and without allocation: the store picks the victim from its bitmask of non empty priorities
+        var victim = store.pollOldestBelow(priority);
+        if (victim == null){
+            return false;
+        }
+        evicted(victim);
+        metrics.evicted(Strategy.PRIORITY);
+        return true;
     }
 }
@@ -0,0 +1,331 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.events.Subscription;
+import ro.apptozee.taskmanager.events.TaskSubscriber;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.LinkedTaskStore;
+import ro.apptozee.taskmanager.storage.TaskNode;
+import ro.apptozee.taskmanager.storage.TaskStore;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/*
+  Task manager split in N independent shards, every shard being a locking task manager of the same strategy with its own
+  lock and its own part of the capacity (the capacity is striped: capacity / N per shard, the remainder going to the first ones).
+  Every shard hands out the PIDs congruent to its index modulo N, so a task is routed to its shard by its PID alone.
+
+  A thread always starts with the same (home) shard, so the writers on different threads mostly use different locks.
+  - add looks for a free slot starting with the home shard and only when every shard is full applies the strategy, again
+    starting with the home shard: BLOCK rejects, FIFO evicts the oldest task of the home shard, PRIORITY evicts the oldest
+    task of the lowest priority of the first shard that has a lower priority than the new task
+  - kill only locks the shard of the task
+  - killAll, killByPriority and the build of a view lock every shard (always in the same order, so they can not deadlock)
+  The tasks are created for the sharded task manager, so Task.kill goes through it to the shard of the task.
+
+  Consistency: every shard is linearizable and so are killAll, killByPriority and list, which see or modify all the shards at
+  once. Across shards the strategies only hold approximately: add can be rejected (or evict) while another shard frees a slot,
+  the FIFO strategy evicts the oldest task of a shard instead of the oldest task overall and the PRIORITY strategy a task of
+  a lower priority instead of the lowest one. The FIFO order of list is the order in which the tasks were added to their
+  shards, which for concurrent adds on different shards can differ by a few positions from the order the adds were called.
+
+  Every shard caches the nodes of each of its views until it changes, like the views of BaseTaskManager. list and visit
+  collect the cached views of all the shards while every shard is read locked (a shard that changed since its view was
+  last cached builds it again) and merge them lazily once the locks are released, so the consumer can even kill the tasks
+  it is given and the visitor stops the merge as soon as it returns false.
+ */
+public class ShardedTaskManager implements TaskManager {
+
+    private static final int VIEWS = SortCriteria.values().length * SortOrder.values().length;
+
+    private final BaseTaskManager[] shards;
+
+    // the FIFO order across the shards, every shard stamps its tasks under its write lock
+    private final AtomicLong sequence = new AtomicLong();
+
+    // the nodes of every (shard, SortCriteria, SortOrder), valid as long as the version of the shard did not change
+    private final AtomicReferenceArray<ShardView> shardViews;
+
+    public ShardedTaskManager(Strategy strategy, int capacity, int shards) {
+        if (capacity < 1){
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        if (shards < 1){
+            throw new IllegalArgumentException("There must be at least one shard");
+        }
+        // every shard needs at least one slot
+        int count = Math.min(shards, capacity);
+        this.shards = new BaseTaskManager[count];
+        this.shardViews = new AtomicReferenceArray<>(count * VIEWS);
+        TaskStore.Factory storeFactory = (c, owner) -> new LinkedTaskStore(sequence::getAndIncrement);
+        for (int index = 0; index < count; index++){
+            int shardCapacity = capacity / count + (index < capacity % count ? 1 : 0);
+            var pidPool = new ShardPIDPool(index, count);
+            this.shards[index] = switch (strategy){
+                case BLOCK -> new BaseTaskManager(shardCapacity, pidPool, storeFactory);
+                case FIFO -> new FavorNewTaskManager(shardCapacity, pidPool, storeFactory);
+                case PRIORITY -> new PriorityTaskManager(shardCapacity, pidPool, storeFactory);
+                default -> throw new UnsupportedOperationException(strategy+ " not implemented");
+            };
+            this.shards[index].ownedBy(this);
+        }
+    }
+
+    @Override
+    public Optional<Task> add(Priority priority) {
+        return add(priority, 0);
+    }
+
+    // the task expires in its shard, which starts its own reaper
+    @Override
+    public Optional<Task> add(Priority priority, Duration timeToLive) {
+        return add(priority, BaseTaskManager.timeToLiveNanos(timeToLive));
+    }
+
+    // 0 for no time to live
+    private Optional<Task> add(Priority priority, long timeToLiveNanos) {
+        int home = home();
+        for (int i = 0; i < shards.length; i++){
+            var shard = shards[(home + i) % shards.length];
+            // only a hint, the shard checks it again under its lock
+            if (!shard.isFull()){
+                var task = shard.addIfNotFull(priority, timeToLiveNanos);
+                if (task.isPresent()){
+                    return task;
+                }
+            }
+        }
+        for (int i = 0; i < shards.length; i++){
+            var task = shards[(home + i) % shards.length].add(priority, timeToLiveNanos);
+            if (task.isPresent()){
+                return task;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /*
+      Only waits when add found every shard full and nothing to evict, and then on the home shard alone: a slot freed in
+      another shard does not wake it up, like the other strategies it only holds approximately across the shards.
+     */
+    @Override
+    public Optional<Task> addAwait(Priority priority) throws InterruptedException {
+        var task = add(priority);
+        return task.isPresent() ? task : shards[home()].addAwait(priority);
+    }
+
+    @Override
+    public Optional<Task> addAwait(Priority priority, Duration timeout) throws InterruptedException {
+        var task = add(priority);
+        return task.isPresent() ? task : shards[home()].addAwait(priority, timeout);
+    }
+
+    @Override
+    public void kill(Task task) {
+        shards[task.pid().pid() % shards.length].kill(task);
+    }
+
+    @Override
+    public void killAll() {
+        lockShards(true);
+        try {
+            for (var shard : shards){
+                shard.killAll();
+            }
+        } finally {
+            unlockShards(true);
+        }
+    }
+
+    @Override
+    public void killByPriority(Priority priority) {
+        lockShards(true);
+        try {
+            for (var shard : shards){
+                shard.killByPriority(priority);
+            }
+        } finally {
+            unlockShards(true);
+        }
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer, SortCriteria sortCriteria, SortOrder sortOrder) {
+        TasksView.fromTaskManager(this, sortCriteria, sortOrder).list(consumer);
+    }
+
+    @Override
+    public void visit(Predicate<Task> visitor, SortCriteria sortCriteria, SortOrder sortOrder) {
+        // the merge pulls one node at a time from every shard view, so it stops as soon as the visitor does
+        TasksView.fromTaskManager(this, sortCriteria, sortOrder).visit(visitor);
+    }
+
+    // the sums of the counters of the shards, every one of them read at a different point in time
+    @Override
+    public int size() {
+        int size = 0;
+        for (var shard : shards){
+            size += shard.size();
+        }
+        return size;
+    }
+
+    @Override
+    public int count(Priority priority) {
+        int count = 0;
+        for (var shard : shards){
+            count += shard.count(priority);
+        }
+        return count;
+    }
+
+    @Override
+    public int remainingCapacity() {
+        int remaining = 0;
+        for (var shard : shards){
+            remaining += shard.remainingCapacity();
+        }
+        return remaining;
+    }
+
+    // the counters only change under the write lock of their shard, so they are all stable while every shard is read locked
+    @Override
+    public Occupancy occupancy() {
+        var counts = new int[Priority.LEVELS];
+        int capacity = 0;
+        lockShards(false);
+        try {
+            for (var shard : shards){
+                var occupancy = shard.occupancy();
+                capacity += occupancy.capacity();
+                for (var priority : Priority.ASCENDING){
+                    counts[priority.rank()] += occupancy.count(priority);
+                }
+            }
+        } finally {
+            unlockShards(false);
+        }
+        return new Occupancy(capacity, counts);
+    }
+
+    // a subscription takes the events of one writer at a time, in order, while the shards are written under different locks
+    @Override
+    public Subscription subscribe(TaskSubscriber subscriber, int bufferSize) {
+        throw new UnsupportedOperationException("subscribe not implemented for " + StorageMode.SHARDED);
+    }
+
+    public int shards() {
+        return shards.length;
+    }
+
+    private int home(){
+        return (int) (Thread.currentThread().getId() % shards.length);
+    }
+
+    // the shards have no metrics, so the write lock is never measured
+    private void lockShards(boolean exclusive){
+        for (var shard : shards){
+            if (exclusive){
+                shard.lockWrite();
+            } else {
+                shard.rl.readLock().lock();
+            }
+        }
+    }
+
+    private void unlockShards(boolean exclusive){
+        for (int index = shards.length - 1; index >= 0; index--){
+            if (exclusive){
+                shards[index].unlockWrite(TaskManagerMetrics.NOT_MEASURED);
+            } else {
+                shards[index].rl.readLock().unlock();
+            }
+        }
+    }
+
+    /*
+      package private methods to be accessible only TasksView: the views of all the shards at the same point in time.
+      The stale views are first built one shard at a time, so that every shard is usually current by the time all of
+      them are locked and only the views that changed in between are built under all the locks.
+     */
+    List<Iterator<TaskNode>> runs(SortCriteria sortCriteria, SortOrder sortOrder) {
+        int view = sortCriteria.ordinal() * SortOrder.values().length + sortOrder.ordinal();
+        for (int index = 0; index < shards.length; index++){
+            var lock = shards[index].rl.readLock();
+            lock.lock();
+            try {
+                shardView(index, view, sortCriteria, sortOrder);
+            } finally {
+                lock.unlock();
+            }
+        }
+        var runs = new ArrayList<Iterator<TaskNode>>(shards.length);
+        lockShards(false);
+        try {
+            for (int index = 0; index < shards.length; index++){
+                runs.add(Arrays.asList(shardView(index, view, sortCriteria, sortOrder)).iterator());
+            }
+        } finally {
+            unlockShards(false);
+        }
+        return runs;
+    }
+
+    // called with the shard read locked, so its version can not change; the nodes keep their task and sequence once unlinked
+    private TaskNode[] shardView(int index, int view, SortCriteria sortCriteria, SortOrder sortOrder) {
+        var shard = shards[index];
+        var cached = shardViews.get(index * VIEWS + view);
+        if (cached != null && cached.version() == shard.version()){
+            return cached.nodes();
+        }
+        var nodes = new ArrayList<TaskNode>(shard.size());
+        ((LinkedTaskStore) shard.store()).nodes(sortCriteria, sortOrder).forEachRemaining(nodes::add);
+        cached = new ShardView(shard.version(), nodes.toArray(new TaskNode[0]));
+        shardViews.set(index * VIEWS + view, cached);
+        return cached.nodes();
+    }
+
+    private record ShardView(long version, TaskNode[] nodes) {
+    }
+
+    // hands out the PIDs of a single shard: local PID * shards + index
+    private static final class ShardPIDPool extends PIDPool {
+        private final int index;
+        private final int shards;
+
+        ShardPIDPool(int index, int shards) {
+            super(DEFAULT_MAX_PIDS / shards, AllocationPolicy.NEXT_FIT);
+            this.index = index;
+            this.shards = shards;
+        }
+
+        @Override
+        public PID getPID() {
+            return new PID(super.getPID().pid() * shards + index);
+        }
+
+        @Override
+        int generation(PID pid) {
+            return super.generation(new PID(pid.pid() / shards));
+        }
+
+        @Override
+        public void releasePID(PID pid) {
+            super.releasePID(new PID(pid.pid() / shards));
+        }
+
+        @Override
+        void reserve(PID pid) {
+            super.reserve(new PID(pid.pid() / shards));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.events.Subscription;
+import ro.apptozee.taskmanager.events.TaskSubscriber;
+import ro.apptozee.taskmanager.storage.Storage;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/*
+  Task manager that never blocks readers.
+  The whole state is an immutable Storage published through a volatile reference. Writers are still mutually exclusive,
+  but they only pay O(lg(n)) to create a new version, while readers iterate whatever version they have read without any lock.
+ */
+public class SnapshotTaskManager implements TaskManager {
+
+    private final int capacity;
+
+    protected final PIDPool pidPool;
+
+    // it is seen by all threads after change
+    protected volatile Storage storage = Storage.empty();
+
+    // writers only, fair for the same reasons as the read-write lock of BaseTaskManager
+    protected final ReentrantLock writeLock = new ReentrantLock(true);
+
+    public SnapshotTaskManager(int capacity, PIDPool pidPool) {
+        if (capacity < 1){
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.pidPool = pidPool;
+    }
+
+    @Override
+    public Optional<Task> add(Priority priority) {
+        writeLock.lock();
+        try {
+            if (isFull()){
+                return Optional.empty();
+            }
+            return replace(null, priority);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    // expiring would need a timer and a reaper publishing versions next to the writers, only the locking modes have them
+    @Override
+    public Optional<Task> add(Priority priority, Duration timeToLive) {
+        throw new UnsupportedOperationException("add with a time to live not implemented for " + StorageMode.SNAPSHOT);
+    }
+
+    // waiting would need the kills to wake up the writers, only the locking modes queue the waiters
+    @Override
+    public Optional<Task> addAwait(Priority priority) {
+        throw new UnsupportedOperationException("addAwait not implemented for " + StorageMode.SNAPSHOT);
+    }
+
+    @Override
+    public Optional<Task> addAwait(Priority priority, Duration timeout) {
+        throw new UnsupportedOperationException("addAwait not implemented for " + StorageMode.SNAPSHOT);
+    }
+
+    // removes the victim (if any) and adds the new task publishing a single new version,
+    // so that readers never observe the intermediate state of an eviction
+    protected Optional<Task> replace(Task victim, Priority priority){
+        Task task = null;
+        try {
+            var pid = pidPool.getPID();
+            task = new Task(pid, priority, this, pidPool.generation(pid));
+        } catch (PIDPool.PIDPoolFullException ex){
+            // log here
+            return Optional.empty();
+        }
+        var current = storage;
+        if (victim != null){
+            current = current.remove(victim);
+        }
+        storage = current.add(task);
+        if (victim != null){
+            // order is important to avoid loops, the victim is no longer tracked
+            victim.kill();
+            pidPool.releasePID(victim.pid());
+        }
+        return Optional.of(task);
+    }
+
+    protected boolean isFull(){
+        return storage.size() == capacity;
+    }
+
+    @Override
+    public void kill(Task task) {
+        writeLock.lock();
+        try {
+            var current = storage;
+            if (current.contains(task)){
+                // order is important to avoid loops
+                storage = current.remove(task);
+                task.kill();
+                pidPool.releasePID(task.pid());
+            }
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void killAll() {
+        writeLock.lock();
+        try {
+            var current = storage;
+            storage = current.clear();
+            // we iterate the old version, no need to copy it
+            current.orderedFIFOView().forEachValue(false, task -> {
+                task.kill();
+                pidPool.releasePID(task.pid());
+            });
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void killByPriority(Priority priority) {
+        writeLock.lock();
+        try {
+            var current = storage;
+            var bucket = current.orderedPriorityView().get(priority);
+            if (bucket == null){
+                return;
+            }
+            storage = current.removeByPriority(priority);
+            bucket.forEachValue(false, task -> {
+                task.kill();
+                pidPool.releasePID(task.pid());
+            });
+        }
+        finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer, SortCriteria sortCriteria, SortOrder sortOrder) {
+        // non-blocking, a slow consumer only holds on to an old version
+        TasksView.fromStorage(storage, sortCriteria, sortOrder).list(consumer);
+    }
+
+    @Override
+    public int size() {
+        return storage.size();
+    }
+
+    @Override
+    public int count(Priority priority) {
+        return storage.count(priority);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - storage.size();
+    }
+
+    @Override
+    public Occupancy occupancy() {
+        // a single version is consistent by itself
+        return new Occupancy(capacity, storage.counts());
+    }
+
+    // the change feed is only published by the locking modes, a reader of this mode lists a consistent version instead
+    @Override
+    public Subscription subscribe(TaskSubscriber subscriber, int bufferSize) {
+        throw new UnsupportedOperationException("subscribe not implemented for " + StorageMode.SNAPSHOT);
+    }
+}
@@ -0,0 +1,309 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.events.Subscription;
+import ro.apptozee.taskmanager.events.TaskSubscriber;
+import ro.apptozee.taskmanager.storage.PriorityStripe;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/*
+  Task manager with one read-write lock per priority (a stripe) instead of the single lock of BaseTaskManager.
+  Operations on a single priority (add without eviction, kill, killByPriority) only lock the stripe of that priority
+  and the capacity is enforced by an atomic counter of reserved slots.
+  Operations that need several stripes (eviction, killAll, list) lock them in ascending level order, so they can not deadlock.
+  A stripe is only created the first time its level is used, so those operations lock the levels in use, not every level.
+  The creation of a stripe waits for the operations that lock several stripes (they read lock stripesLock), which can
+  not miss a stripe created while they are running.
+
+  When a single priority is used every operation contends on the same stripe, which is the single lock again
+  plus the overhead of the counter and of the cross stripe orders (see StripedBenchmark before choosing it).
+
+  Like in BaseTaskManager no side effect runs under a stripe lock: the kill commands and the release of the PIDs of the
+  removed tasks are handed to the KillExecutor once the stripes are unlocked, and list copies the stripes under their read
+  locks and runs the consumer after releasing them.
+ */
+public class StripedTaskManager implements TaskManager {
+
+    private final int capacity;
+
+    protected final PIDPool pidPool;
+
+    // reserved slots, incremented before the task is added and decremented after it is removed
+    private final AtomicInteger size = new AtomicInteger();
+
+    // the FIFO order across the stripes
+    private final AtomicLong sequence = new AtomicLong();
+
+    // indexed by the level of the priority, null until the level is used
+    private final AtomicReferenceArray<PriorityStripe> stripes = new AtomicReferenceArray<>(Priority.LEVELS);
+    // the levels that have a stripe, ascending, copied on write under the write lock of stripesLock
+    private volatile int[] levelsInUse = new int[0];
+    private final ReentrantReadWriteLock stripesLock = new ReentrantReadWriteLock();
+
+    private final KillExecutor killExecutor;
+
+    public StripedTaskManager(int capacity, PIDPool pidPool) {
+        this(capacity, pidPool, KillExecutor.INLINE);
+    }
+
+    public StripedTaskManager(int capacity, PIDPool pidPool, KillExecutor killExecutor) {
+        if (capacity < 1){
+            throw new IllegalArgumentException("Capacity must be greater than 0");
+        }
+        this.capacity = capacity;
+        this.pidPool = pidPool;
+        this.killExecutor = killExecutor;
+    }
+
+    // the stripe of the priority, created if needed (never call it while holding a stripe)
+    protected PriorityStripe stripe(Priority priority){
+        var stripe = stripes.get(priority.rank());
+        if (stripe != null){
+            return stripe;
+        }
+        stripesLock.writeLock().lock();
+        try {
+            stripe = stripes.get(priority.rank());
+            if (stripe == null){
+                stripe = new PriorityStripe();
+                var levels = Arrays.copyOf(levelsInUse, levelsInUse.length + 1);
+                levels[levels.length - 1] = priority.rank();
+                Arrays.sort(levels);
+                stripes.set(priority.rank(), stripe);
+                levelsInUse = levels;
+            }
+            return stripe;
+        } finally {
+            stripesLock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<Task> add(Priority priority) {
+        if (!tryReserve()){
+            return Optional.empty();
+        }
+        var lock = stripe(priority).lock().writeLock();
+        lock.lock();
+        try {
+            return addReserved(priority);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // expiring would need a timer across the stripes, only the locking modes have one
+    @Override
+    public Optional<Task> add(Priority priority, Duration timeToLive) {
+        throw new UnsupportedOperationException("add with a time to live not implemented for " + StorageMode.STRIPED);
+    }
+
+    // a slot freed in any stripe would have to wake up the waiters, only the locking modes queue them
+    @Override
+    public Optional<Task> addAwait(Priority priority) {
+        throw new UnsupportedOperationException("addAwait not implemented for " + StorageMode.STRIPED);
+    }
+
+    @Override
+    public Optional<Task> addAwait(Priority priority, Duration timeout) {
+        throw new UnsupportedOperationException("addAwait not implemented for " + StorageMode.STRIPED);
+    }
+
+    protected boolean tryReserve(){
+        int current;
+        do {
+            current = size.get();
+            if (current >= capacity){
+                return false;
+            }
+        } while (!size.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    // the caller owns a slot and holds the write lock of the stripe of the priority
+    protected Optional<Task> addReserved(Priority priority){
+        Task task = null;
+        try {
+            var pid = pidPool.getPID();
+            task = new Task(pid, priority, this, pidPool.generation(pid));
+        } catch (PIDPool.PIDPoolFullException ex){
+            // log here
+            size.decrementAndGet();
+            return Optional.empty();
+        }
+        stripes.get(priority.rank()).add(sequence.getAndIncrement(), task);
+        return Optional.of(task);
+    }
+
+    @Override
+    public void kill(Task task) {
+        // a task of a level without a stripe was never added
+        var stripe = stripes.get(task.priority().rank());
+        if (stripe == null){
+            return;
+        }
+        boolean removed;
+        var lock = stripe.lock().writeLock();
+        lock.lock();
+        try {
+            removed = stripe.remove(task);
+            if (removed){
+                size.decrementAndGet();
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (removed){
+            reclaim(List.of(List.of(task)));
+        }
+    }
+
+    @Override
+    public void killAll() {
+        var tasksToRemove = new ArrayList<Iterable<Task>>();
+        var locked = lockStripes(Priority.LEVELS - 1, true);
+        try {
+            int removed = 0;
+            for (var stripe : locked){
+                removed += stripe.size();
+                tasksToRemove.add(stripe.removeAll());
+            }
+            size.addAndGet(-removed);
+        } finally {
+            unlockStripes(locked, true);
+        }
+        reclaim(tasksToRemove);
+    }
+
+    @Override
+    public void killByPriority(Priority priority) {
+        var stripe = stripes.get(priority.rank());
+        if (stripe == null){
+            return;
+        }
+        Iterable<Task> tasksToRemove;
+        var lock = stripe.lock().writeLock();
+        lock.lock();
+        try {
+            size.addAndGet(-stripe.size());
+            tasksToRemove = stripe.removeAll();
+        } finally {
+            lock.unlock();
+        }
+        reclaim(List.of(tasksToRemove));
+    }
+
+    /*
+      The kill commands of the removed tasks, then the release of their PIDs (not before, a new task with the same PID and
+      priority would be equal to the killed one), run by the kill executor once the stripes are unlocked. The tasks left
+      their stripes, so their reentrant kill only finds nothing to remove.
+     */
+    protected void reclaim(List<Iterable<Task>> batches){
+        killExecutor.execute(() -> {
+            for (var batch : batches){
+                for (var task : batch){
+                    task.kill();
+                    pidPool.releasePID(task.pid());
+                }
+            }
+        });
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer, SortCriteria sortCriteria, SortOrder sortOrder) {
+        // every order needs a consistent state of all the stripes, copied under their read locks
+        var tasks = new ArrayList<Task>(size.get());
+        var locked = lockStripes(Priority.LEVELS - 1, false);
+        try {
+            TasksView.fromTaskManager(locked, sortCriteria, sortOrder).list(tasks::add);
+        } finally {
+            unlockStripes(locked, false);
+        }
+        // the consumer runs outside of the locks, so it can even kill the tasks it is given
+        tasks.forEach(consumer);
+    }
+
+    @Override
+    public int size() {
+        return size.get();
+    }
+
+    @Override
+    public int count(Priority priority) {
+        var stripe = stripes.get(priority.rank());
+        if (stripe == null){
+            return 0;
+        }
+        var lock = stripe.lock().readLock();
+        lock.lock();
+        try {
+            return stripe.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return capacity - size.get();
+    }
+
+    @Override
+    public Occupancy occupancy() {
+        // the stripes are all read locked, so the counts are taken at the same point in time
+        var counts = new int[Priority.LEVELS];
+        var locked = lockStripes(Priority.LEVELS - 1, false);
+        try {
+            for (var level : levelsInUse){
+                counts[level] = stripes.get(level).size();
+            }
+        } finally {
+            unlockStripes(locked, false);
+        }
+        return new Occupancy(capacity, counts);
+    }
+
+    // a subscription takes the events of one writer at a time, in order, while the stripes are written under different locks
+    @Override
+    public Subscription subscribe(TaskSubscriber subscriber, int bufferSize) {
+        throw new UnsupportedOperationException("subscribe not implemented for " + StorageMode.STRIPED);
+    }
+
+    /*
+      Locks the stripes of the levels in use from the lowest one up to the given level, always in this order, and returns
+      them in the same order. No stripe can be created until unlockStripes.
+     */
+    protected PriorityStripe[] lockStripes(int toLevel, boolean exclusive){
+        stripesLock.readLock().lock();
+        var levels = levelsInUse;
+        int count = 0;
+        while (count < levels.length && levels[count] <= toLevel){
+            count++;
+        }
+        var locked = new PriorityStripe[count];
+        for (int i = 0; i < count; i++){
+            locked[i] = stripes.get(levels[i]);
+            var lock = locked[i].lock();
+            (exclusive ? lock.writeLock() : lock.readLock()).lock();
+        }
+        return locked;
+    }
+
+    protected void unlockStripes(PriorityStripe[] locked, boolean exclusive){
+        for (int i = locked.length - 1; i >= 0; i--){
+            var lock = locked[i].lock();
+            (exclusive ? lock.writeLock() : lock.readLock()).unlock();
+        }
+        stripesLock.readLock().unlock();
+    }
+}
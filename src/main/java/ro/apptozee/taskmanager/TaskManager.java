@@ -1,14 +1,35 @@
 package ro.apptozee.taskmanager;
 
+import ro.apptozee.taskmanager.events.Subscription;
+import ro.apptozee.taskmanager.events.TaskSubscriber;
+import ro.apptozee.taskmanager.journal.TaskJournal;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.LinkedTaskStore;
+import ro.apptozee.taskmanager.storage.CompactTaskStore;
+import ro.apptozee.taskmanager.storage.RingTaskStore;
+import ro.apptozee.taskmanager.storage.TaskStore;
 import ro.apptozee.taskmanager.vo.*;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Optional;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
 
 public interface TaskManager {
 
     Optional<Task> add(Priority priority);
 
+    // the task is removed once the time to live has passed, unless it was killed or evicted before
+    Optional<Task> add(Priority priority, Duration timeToLive);
+
+    // waits for a free slot instead of returning an empty optional when the task manager is full and the strategy can not evict
+    Optional<Task> addAwait(Priority priority) throws InterruptedException;
+
+    // same as addAwait but gives up after the timeout, returning an empty optional
+    Optional<Task> addAwait(Priority priority, Duration timeout) throws InterruptedException;
+
     void kill(Task task);
 
     void killAll();
@@ -29,13 +50,126 @@ public interface TaskManager {
 
     void list(Consumer<Task> consumer, SortCriteria sortCriteria, SortOrder sortOrder);
 
+    /*
+      Walks the view while the visitor returns true, so reading the first k tasks costs O(k) instead of O(n) where the
+      view can stop early (the visitor may run under a read lock and must not modify the task manager)
+     */
+    default void visit(Predicate<Task> visitor, SortCriteria sortCriteria, SortOrder sortOrder){
+        var visiting = new boolean[]{true};
+        list(task -> {
+            if (visiting[0]) {
+                visiting[0] = visitor.test(task);
+            }
+        }, sortCriteria, sortOrder);
+    }
+
+    /*
+      The tasks in the order of the view, copied before the stream is returned: no lock is held while the stream is
+      consumed (so closing it releases nothing) and the copy is sized and split in halves, so parallel() scales.
+     */
+    default Stream<Task> stream(SortCriteria sortCriteria, SortOrder sortOrder){
+        var tasks = new ArrayList<Task>();
+        list(tasks::add, sortCriteria, sortOrder);
+        return tasks.stream();
+    }
+
+    // the number of tasks, read without any lock
+    int size();
+
+    int count(Priority priority);
+
+    int remainingCapacity();
+
+    // size, counts and capacity taken at the same point in time (see the implementations for their guarantees)
+    Occupancy occupancy();
+
+    // the tasks of a view restricted to ranges of PIDs and priorities and paged, see TaskQuery
+    default void query(Consumer<Task> consumer, TaskQuery query){
+        list(query.filter(consumer), query.sortCriteria(), query.sortOrder());
+    }
+
+    // a snapshot of the live tasks followed by every change, delivered through a buffer of bufferSize events
+    Subscription subscribe(TaskSubscriber subscriber, int bufferSize);
+
     static TaskManager withStrategy(Strategy strategy, int capacity){
+        return withStrategy(strategy, capacity, StorageMode.LOCKING);
+    }
+
+    static TaskManager withStrategy(Strategy strategy, int capacity, StorageMode storageMode){
+        return withStrategy(strategy, capacity, storageMode, TaskManagerMetrics.DISABLED);
+    }
+
+    static TaskManager withStrategy(Strategy strategy, int capacity, StorageMode storageMode, TaskManagerMetrics metrics){
+        return withStrategy(strategy, capacity, storageMode, metrics, TaskJournal.DISABLED);
+    }
+
+    static TaskManager withStrategy(Strategy strategy, int capacity, StorageMode storageMode, TaskManagerMetrics metrics,
+                                    TaskJournal journal){
+        return withStrategy(strategy, capacity, storageMode, metrics, journal, KillExecutor.INLINE);
+    }
+
+    // the metrics and the journal are only supported by the LOCKING and COMPACT modes, the kill executor by the STRIPED mode too
+    static TaskManager withStrategy(Strategy strategy, int capacity, StorageMode storageMode, TaskManagerMetrics metrics,
+                                    TaskJournal journal, KillExecutor killExecutor){
+        boolean locking = storageMode == StorageMode.LOCKING || storageMode == StorageMode.COMPACT;
+        if (metrics.isEnabled() && !locking){
+            throw new UnsupportedOperationException("Metrics not implemented for " + storageMode);
+        }
+        if (journal != TaskJournal.DISABLED && !locking){
+            throw new UnsupportedOperationException("Journal not implemented for " + storageMode);
+        }
+        if (killExecutor != KillExecutor.INLINE && !locking && storageMode != StorageMode.STRIPED){
+            throw new UnsupportedOperationException("Kill executor not implemented for " + storageMode);
+        }
+        return switch (storageMode){
+            // the FIFO strategy evicts on every add at capacity, so it gets a store specialized for it
+            case LOCKING -> lockingWithStrategy(strategy, capacity,
+                    strategy == Strategy.FIFO ? RingTaskStore::new : (c, owner) -> new LinkedTaskStore(), metrics, journal,
+                    killExecutor);
+            case COMPACT -> lockingWithStrategy(strategy, capacity, CompactTaskStore::new, metrics, journal, killExecutor);
+            case SNAPSHOT -> snapshotWithStrategy(strategy, capacity);
+            case LOCK_FREE -> lockFreeWithStrategy(strategy, capacity);
+            case STRIPED -> stripedWithStrategy(strategy, capacity, killExecutor);
+            case SHARDED -> new ShardedTaskManager(strategy, capacity, Runtime.getRuntime().availableProcessors());
+            default -> throw new UnsupportedOperationException(storageMode+ " not implemented");
+        };
+    }
+
+    private static TaskManager lockingWithStrategy(Strategy strategy, int capacity, TaskStore.Factory storeFactory,
+                                                   TaskManagerMetrics metrics, TaskJournal journal, KillExecutor killExecutor){
         return switch (strategy){
-            case BLOCK -> new BaseTaskManager(capacity, new PIDPool());
-            case FIFO -> new FavorNewTaskManager(capacity, new PIDPool());
-            case PRIORITY -> new PriorityTaskManager(capacity, new PIDPool());
+            case BLOCK -> new BaseTaskManager(capacity, new PIDPool(), storeFactory, metrics, journal, killExecutor);
+            case FIFO -> new FavorNewTaskManager(capacity, new PIDPool(), storeFactory, metrics, journal, killExecutor);
+            case PRIORITY -> new PriorityTaskManager(capacity, new PIDPool(), storeFactory, metrics, journal, killExecutor);
             default -> throw new UnsupportedOperationException(strategy+ " not implemented");
         };
     }
 
+    private static TaskManager snapshotWithStrategy(Strategy strategy, int capacity){
+        return switch (strategy){
+            case BLOCK -> new SnapshotTaskManager(capacity, new PIDPool());
+            case FIFO -> new FavorNewSnapshotTaskManager(capacity, new PIDPool());
+            case PRIORITY -> new PrioritySnapshotTaskManager(capacity, new PIDPool());
+            default -> throw new UnsupportedOperationException(strategy+ " not implemented");
+        };
+    }
+
+    private static TaskManager lockFreeWithStrategy(Strategy strategy, int capacity){
+        return switch (strategy){
+            case BLOCK -> new LockFreeTaskManager(capacity, new PIDPool());
+            case FIFO -> new FavorNewLockFreeTaskManager(capacity, new PIDPool());
+            // evicting by priority needs an atomic view over all the priorities
+            default -> throw new UnsupportedOperationException(strategy+ " not implemented for " + StorageMode.LOCK_FREE);
+        };
+    }
+
+    private static TaskManager stripedWithStrategy(Strategy strategy, int capacity, KillExecutor killExecutor){
+        return switch (strategy){
+            case BLOCK -> new StripedTaskManager(capacity, new PIDPool(), killExecutor);
+            case PRIORITY -> new PriorityStripedTaskManager(capacity, new PIDPool(), killExecutor);
+            // evicting the oldest task would need all the stripes on every add at capacity
+            default -> throw new UnsupportedOperationException(strategy+ " not implemented for " + StorageMode.STRIPED);
+        };
+    }
+
 }
@@ -1,23 +1,67 @@
 package ro.apptozee.taskmanager;
 
-import ro.apptozee.taskmanager.views.FIFOTasksView;
-import ro.apptozee.taskmanager.views.PIDTasksView;
-import ro.apptozee.taskmanager.views.PriorityTasksView;
+import ro.apptozee.taskmanager.storage.PriorityStripe;
+import ro.apptozee.taskmanager.storage.Storage;
+import ro.apptozee.taskmanager.views.MarkedPriorityTasksView;
+import ro.apptozee.taskmanager.views.MarkedTasksView;
+import ro.apptozee.taskmanager.views.MergedTasksView;
+import ro.apptozee.taskmanager.views.SnapshotPriorityTasksView;
+import ro.apptozee.taskmanager.views.SnapshotTasksView;
+import ro.apptozee.taskmanager.views.StripedTasksView;
 import ro.apptozee.taskmanager.vo.SortCriteria;
 import ro.apptozee.taskmanager.vo.SortOrder;
 import ro.apptozee.taskmanager.vo.Task;
 
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public interface TasksView {
     void list(Consumer<Task> consumer);
 
+    // walks the tasks while the visitor returns true, the views that can stop their walk early override it
+    default void visit(Predicate<Task> visitor) {
+        var visiting = new boolean[]{true};
+        list(task -> {
+            if (visiting[0]) {
+                visiting[0] = visitor.test(task);
+            }
+        });
+    }
+
     // the use of the concrete class is important since this is coupled with a particular implementation
     static TasksView fromTaskManager(BaseTaskManager baseTaskManager, SortCriteria sortCriteria, SortOrder sortOrder){
+        // each store knows how to walk its own structures
+        return baseTaskManager.store().view(sortCriteria, sortOrder);
+    }
+
+    static TasksView fromTaskManager(LockFreeTaskManager lockFreeTaskManager, SortCriteria sortCriteria, SortOrder sortOrder){
+        var ascending = sortOrder == SortOrder.ASCENDING;
+        return switch (sortCriteria){
+            case FIFO -> new MarkedTasksView(ascending
+                    ? lockFreeTaskManager.orderedFIFOView().iterator()
+                    : lockFreeTaskManager.orderedFIFOView().descendingIterator());
+            case PID -> new MarkedTasksView(ascending
+                    ? lockFreeTaskManager.orderedPIDView().values().iterator()
+                    : lockFreeTaskManager.orderedPIDView().descendingMap().values().iterator());
+            case PRIORITY -> new MarkedPriorityTasksView(lockFreeTaskManager.orderedFIFOView(), sortOrder);
+            default -> throw new UnsupportedOperationException(sortCriteria+ " not implemented");
+        };
+    }
+
+    // the stripes of the levels in use, ascending, locked by the caller
+    static TasksView fromTaskManager(PriorityStripe[] stripes, SortCriteria sortCriteria, SortOrder sortOrder){
+        return new StripedTasksView(stripes, sortCriteria, sortOrder);
+    }
+
+    static TasksView fromTaskManager(ShardedTaskManager shardedTaskManager, SortCriteria sortCriteria, SortOrder sortOrder){
+        return new MergedTasksView(shardedTaskManager.runs(sortCriteria, sortOrder), sortCriteria, sortOrder);
+    }
+
+    static TasksView fromStorage(Storage storage, SortCriteria sortCriteria, SortOrder sortOrder){
         return switch (sortCriteria){
-            case FIFO -> new FIFOTasksView(baseTaskManager.orderedFIFOView(),sortOrder);
-            case PID -> new PIDTasksView(baseTaskManager.orderedPIDView(),sortOrder);
-            case PRIORITY -> new PriorityTasksView(baseTaskManager.orderedPriorityView(),sortOrder);
+            case FIFO -> new SnapshotTasksView<>(storage.orderedFIFOView(), task -> task, sortOrder);
+            case PID -> new SnapshotTasksView<>(storage.orderedPIDView(), Storage.Entry::task, sortOrder);
+            case PRIORITY -> new SnapshotPriorityTasksView(storage.orderedPriorityView(), sortOrder);
             default -> throw new UnsupportedOperationException(sortCriteria+ " not implemented");
         };
     }
@@ -0,0 +1,178 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.function.Consumer;
+
+/*
+  Hierarchical timing wheel of the task deadlines, in ticks. LEVELS wheels of 64 slots, a slot of level l covering 64^l ticks:
+  a timer is put in the lowest level that can hold its deadline and moved down one level (cascaded) when the slots of the
+  level below reach it, so schedule and cancel are O(1) and a tick only touches the slots that are due.
+  The timers are doubly linked in their slot and indexed by task, so the removal of a task cancels its timer directly.
+  Deadlines further than the top level are parked in its last slot and placed again every time it is cascaded.
+
+  Not thread safe, only used under the write lock of the task manager.
+ */
+final class TimingWheel {
+
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+    private static final int LEVELS = 4;
+    // the furthest deadline the wheels can hold, 64^4 ticks
+    private static final long SPAN = 1L << (SLOT_BITS * LEVELS);
+
+    private final Timer[][] slots = new Timer[LEVELS][SLOTS];
+    // replaced instead of cleared by clear, which does not depend on the number of timers
+    private HashMap<Task, Timer> timers = new HashMap<>();
+
+    // the next tick to expire, every earlier tick was already expired
+    private long currentTick;
+
+    TimingWheel(long currentTick) {
+        this.currentTick = currentTick;
+    }
+
+    boolean isEmpty() {
+        return timers.isEmpty();
+    }
+
+    int size() {
+        return timers.size();
+    }
+
+    long currentTick() {
+        return currentTick;
+    }
+
+    // a deadline already passed expires with the next tick
+    void schedule(Task task, long deadlineTick) {
+        var timer = new Timer(task, Math.max(deadlineTick, currentTick));
+        cancel(task);
+        timers.put(task, timer);
+        place(timer);
+    }
+
+    void cancel(Task task) {
+        if (timers.isEmpty()) {
+            return;
+        }
+        var timer = timers.remove(task);
+        if (timer != null) {
+            unlink(timer);
+        }
+    }
+
+    void clear() {
+        if (timers.isEmpty()) {
+            return;
+        }
+        for (var level : slots) {
+            Arrays.fill(level, null);
+        }
+        timers = new HashMap<>();
+    }
+
+    // expires every tick up to nowTick included, the ticks where nothing expires or cascades are skipped
+    void advance(long nowTick, Consumer<Task> expired) {
+        while (true) {
+            long next = nextTick();
+            if (next > nowTick) {
+                currentTick = nowTick + 1;
+                return;
+            }
+            currentTick = next;
+            // the cascades first, a timer cascaded down to the first level can expire at this very tick
+            for (int level = 1; level < LEVELS; level++) {
+                if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) == 0) {
+                    cascade(level, slot(currentTick, level));
+                }
+            }
+            // a timer of the first level is in the slot of its own deadline, unlinked one by one as the consumer can cancel others
+            int slot = slot(currentTick, 0);
+            Timer timer;
+            while ((timer = slots[0][slot]) != null) {
+                unlink(timer);
+                timers.remove(timer.task);
+                expired.accept(timer.task);
+            }
+            currentTick++;
+        }
+    }
+
+    // the next tick that expires or cascades timers (Long.MAX_VALUE when there are none), at most 64 slots per level
+    long nextTick() {
+        long next = Long.MAX_VALUE;
+        for (int level = 0; level < LEVELS && !timers.isEmpty(); level++) {
+            int bits = SLOT_BITS * level;
+            // the slots of a level are reached on the ticks that are multiples of 64^level
+            long tick = ((currentTick + (1L << bits) - 1) >>> bits) << bits;
+            for (int i = 0; i < SLOTS && tick < next; i++, tick += 1L << bits) {
+                if (slots[level][slot(tick, level)] != null) {
+                    next = tick;
+                    break;
+                }
+            }
+        }
+        return next;
+    }
+
+    private void cascade(int level, int slot) {
+        var timer = slots[level][slot];
+        slots[level][slot] = null;
+        while (timer != null) {
+            var next = timer.next;
+            place(timer);
+            timer = next;
+        }
+    }
+
+    private void place(Timer timer) {
+        long delta = timer.deadlineTick - currentTick;
+        long deadline = delta < SPAN ? timer.deadlineTick : currentTick + SPAN - 1;
+        int level = 0;
+        while (level < LEVELS - 1 && (deadline - currentTick) >= 1L << (SLOT_BITS * (level + 1))) {
+            level++;
+        }
+        int slot = slot(deadline, level);
+        timer.level = level;
+        timer.slot = slot;
+        timer.previous = null;
+        timer.next = slots[level][slot];
+        if (timer.next != null) {
+            timer.next.previous = timer;
+        }
+        slots[level][slot] = timer;
+    }
+
+    private void unlink(Timer timer) {
+        if (timer.previous == null) {
+            slots[timer.level][timer.slot] = timer.next;
+        } else {
+            timer.previous.next = timer.next;
+        }
+        if (timer.next != null) {
+            timer.next.previous = timer.previous;
+        }
+    }
+
+    private static int slot(long tick, int level) {
+        return (int) ((tick >>> (SLOT_BITS * level)) & SLOT_MASK);
+    }
+
+    private static final class Timer {
+        final Task task;
+        final long deadlineTick;
+        int level;
+        int slot;
+        Timer previous;
+        Timer next;
+
+        Timer(Task task, long deadlineTick) {
+            this.task = task;
+            this.deadlineTick = deadlineTick;
+        }
+    }
+}
@@ -0,0 +1,8 @@
+package ro.apptozee.taskmanager.events;
+
+public interface Subscription extends AutoCloseable {
+
+    // no event is delivered after close returns, except the batch being delivered at that moment
+    @Override
+    void close();
+}
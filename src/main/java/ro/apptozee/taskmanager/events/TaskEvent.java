@@ -0,0 +1,16 @@
+package ro.apptozee.taskmanager.events;
+
+import ro.apptozee.taskmanager.vo.Task;
+
+public record TaskEvent(Type type, Task task) {
+
+    public enum Type {
+        ADDED,
+        // killed on request, including killAll and killByPriority
+        KILLED,
+        // killed by the strategy to make room for a new task (FIFO and PRIORITY)
+        EVICTED,
+        // removed by the reaper once its time to live has passed
+        EXPIRED
+    }
+}
@@ -0,0 +1,30 @@
+package ro.apptozee.taskmanager.events;
+
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.List;
+
+/*
+  Receives the changes of a task manager on a thread of its subscription, never on the thread of a writer.
+  The callbacks of a subscription are never called concurrently.
+ */
+public interface TaskSubscriber {
+
+    // the live tasks in FIFO order when the subscription started, the events that follow start right after it
+    default void onSnapshot(List<Task> tasks) {
+    }
+
+    // the events in the order they happened
+    void onEvents(List<TaskEvent> events);
+
+    // the buffer was full and this many events were lost, the events that follow come after the gap
+    // (subscribing again gives a new snapshot to start over)
+    void onOverflow(long lost);
+
+    // a callback threw, the subscription is already closed and no callback follows (by default the failure goes to the
+    // uncaught exception handler of the thread of the subscription, which prints it)
+    default void onError(RuntimeException failure) {
+        var thread = Thread.currentThread();
+        thread.getUncaughtExceptionHandler().uncaughtException(thread, failure);
+    }
+}
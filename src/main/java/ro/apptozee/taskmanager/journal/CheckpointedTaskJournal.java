@@ -0,0 +1,261 @@
+package ro.apptozee.taskmanager.journal;
+
+import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/*
+  Journal with checkpoints: the task manager is rebuilt from the newest valid checkpoint followed by the records
+  appended after it, instead of the whole history.
+
+  A checkpoint is a columnar snapshot of the live tasks in FIFO order, so the FIFO sequence is the row number and is not stored
+    int   magic
+    long  position in the journal
+    int   number of tasks
+    int   number of bytes of the PID column
+    byte  level of the priority (unsigned), one per task
+    ...   PID column: the difference to the previous PID (zigzag varint), the PIDs being almost sorted in FIFO order
+          most of them take a single byte
+    int   CRC32 of everything before
+  It is written to a temporary file and moved in place, named after its position so that the newest one sorts last.
+  On startup it is memory mapped and the tasks are added in FIFO order, which keeps the store insertions O(1) (the PID
+  chain is walked from the previously inserted PID), so the indexes are built in linear time without any sort.
+
+  The journal is truncated after every checkpoint: the segments before the position of the oldest checkpoint kept are
+  dropped, so the journal only grows with the records appended between two checkpoints. Once truncated, the journal can
+  not rebuild the tasks without a valid checkpoint anymore.
+
+  A checkpoint is forced to disk but the journal is not always (NONE and PERIODIC), so after a crash the journal can end
+  before the position of the newest checkpoint. That checkpoint already holds the records the journal lost: it is
+  restored with nothing to replay and written again at the end of the journal, which goes on from there, and the
+  checkpoints after that end are dropped as their positions now belong to new records.
+ */
+public final class CheckpointedTaskJournal implements TaskJournal, AutoCloseable {
+
+    private static final int MAGIC = 0x54434B50;
+    private static final int HEADER_SIZE = Integer.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final String PREFIX = "checkpoint-";
+    private static final String SUFFIX = ".bin";
+
+    // the previous checkpoint is kept in case the newest one is damaged
+    private static final int KEPT = 2;
+
+    private final MappedTaskJournal journal;
+    private final Path directory;
+
+    public CheckpointedTaskJournal(MappedTaskJournal journal, Path directory) {
+        this.journal = journal;
+        this.directory = directory;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void added(Task task) {
+        journal.added(task);
+    }
+
+    @Override
+    public void killed(Task task) {
+        journal.killed(task);
+    }
+
+    @Override
+    public void killedAll() {
+        journal.killedAll();
+    }
+
+    @Override
+    public void killedByPriority(Priority priority) {
+        journal.killedByPriority(priority);
+    }
+
+    @Override
+    public void commit() {
+        journal.commit();
+    }
+
+    @Override
+    public long position() {
+        return journal.position();
+    }
+
+    @Override
+    public void replay(Replay replay) {
+        for (var checkpoint : checkpoints()){
+            var restored = read(checkpoint);
+            if (restored != null){
+                restore(restored, replay);
+                long position = restored.getLong(Integer.BYTES);
+                long end = journal.position();
+                if (position > end){
+                    anchor(restored, end);
+                } else {
+                    journal.replay(position, replay);
+                }
+                return;
+            }
+        }
+        journal.replay(replay);
+    }
+
+    @Override
+    public void checkpoint(Task[] tasks, long position) {
+        // the ranks are known to fit, the PIDs take at most 5 bytes each
+        var buffer = ByteBuffer.allocate(HEADER_SIZE + tasks.length * 6 + Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putLong(position).putInt(tasks.length).putInt(0);
+        for (var task : tasks){
+            buffer.put((byte) task.priority().rank());
+        }
+        int pidsStart = buffer.position();
+        int previous = 0;
+        for (var task : tasks){
+            int pid = task.pid().pid();
+            putVarint(buffer, (pid - previous) << 1 ^ (pid - previous) >> 31);
+            previous = pid;
+        }
+        buffer.putInt(HEADER_SIZE - Integer.BYTES, buffer.position() - pidsStart);
+        var crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        buffer.flip();
+        write(buffer, position);
+    }
+
+    // the same checkpoint at another position of the journal
+    private void anchor(MappedByteBuffer checkpoint, long position) {
+        var buffer = ByteBuffer.allocate(checkpoint.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put(checkpoint.duplicate().clear());
+        buffer.putLong(Integer.BYTES, position);
+        int end = buffer.capacity() - Integer.BYTES;
+        var crc = new CRC32();
+        crc.update(buffer.array(), 0, end);
+        buffer.putInt(end, (int) crc.getValue());
+        write(buffer.clear(), position);
+    }
+
+    private void write(ByteBuffer buffer, long position) {
+        try {
+            var temporary = Files.createTempFile(directory, PREFIX, ".tmp");
+            try (var channel = FileChannel.open(temporary, StandardOpenOption.WRITE)){
+                while (buffer.hasRemaining()){
+                    channel.write(buffer);
+                }
+                channel.force(true);
+            }
+            Files.move(temporary, directory.resolve(name(position)), StandardCopyOption.ATOMIC_MOVE);
+            var checkpoints = checkpoints();
+            // only left by a journal that ended before them, see anchor
+            while (position(checkpoints.get(0)) > position){
+                Files.delete(checkpoints.remove(0));
+            }
+            for (int i = KEPT; i < checkpoints.size(); i++){
+                Files.deleteIfExists(checkpoints.get(i));
+            }
+            // the records before the oldest checkpoint kept are never replayed again
+            var oldest = checkpoints.get(Math.min(KEPT, checkpoints.size()) - 1);
+            journal.truncate(position(oldest));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        journal.close();
+    }
+
+    // the newest first
+    private List<Path> checkpoints() {
+        try (var files = Files.list(directory)){
+            var checkpoints = new ArrayList<Path>();
+            files.filter(file -> file.getFileName().toString().startsWith(PREFIX) && file.getFileName().toString().endsWith(SUFFIX))
+                    .forEach(checkpoints::add);
+            checkpoints.sort(Comparator.comparing((Path file) -> file.getFileName().toString()).reversed());
+            return checkpoints;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // null when the checkpoint is damaged
+    private static MappedByteBuffer read(Path checkpoint) {
+        try (var channel = FileChannel.open(checkpoint, StandardOpenOption.READ)){
+            long size = channel.size();
+            if (size < HEADER_SIZE + Integer.BYTES || size > Integer.MAX_VALUE){
+                return null;
+            }
+            // the mapping stays valid after the channel is closed
+            var buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            int end = (int) size - Integer.BYTES;
+            var crc = new CRC32();
+            crc.update(buffer.duplicate().limit(end));
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(end) != (int) crc.getValue()){
+                return null;
+            }
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void restore(MappedByteBuffer checkpoint, Replay replay) {
+        int count = checkpoint.getInt(Integer.BYTES + Long.BYTES);
+        int ranks = HEADER_SIZE;
+        var pids = checkpoint.duplicate().order(ByteOrder.LITTLE_ENDIAN).position(ranks + count);
+        int pid = 0;
+        for (int row = 0; row < count; row++){
+            int zigzag = getVarint(pids);
+            pid += zigzag >>> 1 ^ -(zigzag & 1);
+            replay.added(new PID(pid), Priority.of(checkpoint.get(ranks + row) & 0xFF));
+        }
+    }
+
+    private static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0){
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer buffer) {
+        int value = 0;
+        for (int shift = 0; ; shift += 7){
+            byte next = buffer.get();
+            value |= (next & 0x7F) << shift;
+            if (next >= 0){
+                return value;
+            }
+        }
+    }
+
+    // zero padded so that the names sort like the positions
+    private static String name(long position) {
+        return PREFIX + String.format("%019d", position) + SUFFIX;
+    }
+
+    private static long position(Path checkpoint) {
+        var fileName = checkpoint.getFileName().toString();
+        return Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+    }
+}
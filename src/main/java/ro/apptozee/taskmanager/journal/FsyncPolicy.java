@@ -0,0 +1,10 @@
+package ro.apptozee.taskmanager.journal;
+
+public enum FsyncPolicy {
+    // never forced by us: the mapped pages survive a crash of the process, but not of the machine
+    NONE,
+    // forced by a background thread at a fixed interval, a crash of the machine loses at most one interval
+    PERIODIC,
+    // an operation returns only once its record was forced, the writers waiting at the same time share a single force
+    GROUP_COMMIT
+}
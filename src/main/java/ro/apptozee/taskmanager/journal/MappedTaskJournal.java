@@ -0,0 +1,379 @@
+package ro.apptozee.taskmanager.journal;
+
+import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+/*
+  Append only journal of fixed size records in memory mapped segments. Every segment is a file next to the path of the
+  journal, named after it and the number of the segment (tasks.journal.0000000000, tasks.journal.0000000001...), created
+  (and zero filled by the file system) as the journal grows, so an append is a handful of stores in memory:
+  no system call and no allocation while the task manager holds its write lock.
+  The segments that only hold records already part of a checkpoint are dropped by truncate (see CheckpointedTaskJournal),
+  so the journal does not grow forever. The records keep their sequence, a journal whose first segments were dropped
+  starts at the first record of its first segment.
+
+  A record is 16 bytes
+    0  long  sequence, 1 for the first record (0 is never written, so an unwritten record ends the journal)
+    8  int   PID (unused by KILL_ALL)
+    12 byte  type
+    13 byte  level of the priority, unsigned (unused by KILL_ALL)
+    14 short checksum of the other fields
+  When opened, the journal is scanned up to the first record that does not have the expected sequence and checksum
+  (the end of the journal or a record torn by a crash) and everything after it is cleared, so that a record of the
+  previous run can never be mistaken for a new one.
+
+  Durability depends on the FsyncPolicy. With GROUP_COMMIT the writers that commit while a force is in progress wait for
+  it and are then covered by a single force of everything appended so far.
+ */
+public final class MappedTaskJournal implements TaskJournal, AutoCloseable {
+
+    static final int RECORD_SIZE = 16;
+
+    // 64 MB per segment
+    public static final int DEFAULT_SEGMENT_RECORDS = 1 << 22;
+
+    public static final Duration DEFAULT_FLUSH_INTERVAL = Duration.ofMillis(10);
+
+    private static final byte ADD = 1;
+    private static final byte KILL = 2;
+    private static final byte KILL_ALL = 3;
+    private static final byte KILL_BY_PRIORITY = 4;
+
+    private final Path directory;
+    private final String name;
+    private final FsyncPolicy fsyncPolicy;
+    private final int segmentRecords;
+
+    // replaced (never modified) when a segment is added or dropped, so the forcing threads can read it without locking
+    private volatile Segments segments;
+    // the writer adding a segment and the truncation after a checkpoint replace the segments one at a time
+    private final ReentrantLock segmentsLock = new ReentrantLock();
+
+    // the records found when the journal was opened
+    private final long recovered;
+
+    // only written by the task manager under its write lock, published for the forcing threads
+    private volatile long appended;
+
+    // only written under forceLock
+    private volatile long durable;
+    private final ReentrantLock forceLock = new ReentrantLock();
+
+    private final Thread flusher;
+    private volatile boolean open = true;
+
+    public MappedTaskJournal(Path path, FsyncPolicy fsyncPolicy) {
+        this(path, fsyncPolicy, DEFAULT_FLUSH_INTERVAL, DEFAULT_SEGMENT_RECORDS);
+    }
+
+    public MappedTaskJournal(Path path, FsyncPolicy fsyncPolicy, Duration flushInterval, int segmentRecords) {
+        if (segmentRecords < 1 || segmentRecords > Integer.MAX_VALUE / RECORD_SIZE){
+            throw new IllegalArgumentException("A segment must hold between 1 and " + Integer.MAX_VALUE / RECORD_SIZE + " records");
+        }
+        this.directory = path.toAbsolutePath().getParent();
+        this.name = path.getFileName().toString();
+        this.fsyncPolicy = fsyncPolicy;
+        this.segmentRecords = segmentRecords;
+        try {
+            var numbers = segmentNumbers();
+            int first = numbers.isEmpty() ? 0 : numbers.get(0);
+            // the journal ends at the first missing segment, the ones after it are left from a previous run
+            int count = 1;
+            while (count < numbers.size() && numbers.get(count) == first + count){
+                count++;
+            }
+            for (int i = count; i < numbers.size(); i++){
+                Files.delete(segmentPath(numbers.get(i)));
+            }
+            var buffers = new MappedByteBuffer[count];
+            for (int i = 0; i < count; i++){
+                buffers[i] = map(first + i);
+            }
+            segments = new Segments(first, buffers);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        recovered = scan();
+        clearAfter(recovered);
+        appended = recovered;
+        durable = recovered;
+        if (fsyncPolicy == FsyncPolicy.PERIODIC){
+            long intervalNanos = flushInterval.toNanos();
+            flusher = new Thread(() -> {
+                while (open){
+                    LockSupport.parkNanos(this, intervalNanos);
+                    force();
+                }
+            }, "task-journal-flusher");
+            flusher.setDaemon(true);
+            flusher.start();
+        } else {
+            flusher = null;
+        }
+    }
+
+    @Override
+    public void added(Task task) {
+        append(ADD, task.pid().pid(), task.priority().rank());
+    }
+
+    @Override
+    public void killed(Task task) {
+        append(KILL, task.pid().pid(), task.priority().rank());
+    }
+
+    @Override
+    public void killedAll() {
+        append(KILL_ALL, 0, 0);
+    }
+
+    @Override
+    public void killedByPriority(Priority priority) {
+        append(KILL_BY_PRIORITY, 0, priority.rank());
+    }
+
+    @Override
+    public void commit() {
+        if (fsyncPolicy == FsyncPolicy.GROUP_COMMIT && durable < appended){
+            force();
+        }
+    }
+
+    @Override
+    public void replay(Replay replay) {
+        replay(0, replay);
+    }
+
+    // the records recovered after the first ones, which are already part of a checkpoint
+    public void replay(long from, Replay replay) {
+        if (from > recovered){
+            throw new IllegalStateException("The journal ends at " + recovered + " before the position " + from);
+        }
+        var current = segments;
+        if (from < current.firstRecord(segmentRecords)){
+            throw new IllegalStateException("The journal starts at " + current.firstRecord(segmentRecords)
+                    + " after the position " + from + ", the records before were dropped after a checkpoint");
+        }
+        for (long sequence = from; sequence < recovered; sequence++){
+            var buffer = current.buffer(sequence, segmentRecords);
+            int offset = (int) (sequence % segmentRecords) * RECORD_SIZE;
+            int pid = buffer.getInt(offset + 8);
+            var priority = Priority.of(buffer.get(offset + 13) & 0xFF);
+            switch (buffer.get(offset + 12)){
+                case ADD -> replay.added(new PID(pid), priority);
+                case KILL -> replay.killed(new PID(pid), priority);
+                case KILL_ALL -> replay.killedAll();
+                default -> replay.killedByPriority(priority);
+            }
+        }
+    }
+
+    // the number of records, replayed or appended
+    @Override
+    public long position() {
+        return appended;
+    }
+
+    @Override
+    public void close() {
+        open = false;
+        if (flusher != null){
+            LockSupport.unpark(flusher);
+            try {
+                flusher.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        // the mappings outlive their channels, they go away with the buffers
+        force();
+    }
+
+    /*
+      Drops the segments that only hold records before the position, which a checkpoint made useless: their files are
+      deleted and their buffers left to the garbage collector, which unmaps them (a force in progress can still use them).
+      The last segment is always kept, the next records are appended to it or right after it.
+     */
+    public void truncate(long position) {
+        int dropFrom;
+        int dropTo;
+        segmentsLock.lock();
+        try {
+            var current = segments;
+            dropFrom = current.first;
+            dropTo = (int) Math.min(position / segmentRecords, current.first + current.buffers.length - 1);
+            if (dropTo <= dropFrom){
+                return;
+            }
+            segments = new Segments(dropTo, Arrays.copyOfRange(current.buffers, dropTo - dropFrom, current.buffers.length));
+        } finally {
+            segmentsLock.unlock();
+        }
+        try {
+            for (int segment = dropFrom; segment < dropTo; segment++){
+                Files.deleteIfExists(segmentPath(segment));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void append(byte type, int pid, int rank) {
+        long index = appended;
+        var current = segments;
+        if (index == current.endRecord(segmentRecords)){
+            current = grow();
+        }
+        var buffer = current.buffer(index, segmentRecords);
+        int offset = (int) (index % segmentRecords) * RECORD_SIZE;
+        buffer.putLong(offset, index + 1);
+        buffer.putInt(offset + 8, pid);
+        buffer.put(offset + 12, type);
+        buffer.put(offset + 13, (byte) rank);
+        buffer.putShort(offset + 14, checksum(index + 1, pid, type, (byte) rank));
+        appended = index + 1;
+    }
+
+    private Segments grow() {
+        segmentsLock.lock();
+        try {
+            var current = segments;
+            var buffers = Arrays.copyOf(current.buffers, current.buffers.length + 1);
+            buffers[current.buffers.length] = map(current.first + current.buffers.length);
+            segments = new Segments(current.first, buffers);
+            return segments;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            segmentsLock.unlock();
+        }
+    }
+
+    private MappedByteBuffer map(int segment) throws IOException {
+        // the mapping stays valid after the channel is closed
+        try (var channel = FileChannel.open(segmentPath(segment), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)){
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+        }
+    }
+
+    private Path segmentPath(int segment) {
+        return directory.resolve(name + "." + String.format("%010d", segment));
+    }
+
+    // the numbers of the segment files, ascending
+    private List<Integer> segmentNumbers() throws IOException {
+        var numbers = new ArrayList<Integer>();
+        try (var files = Files.list(directory)){
+            for (var file : (Iterable<Path>) files::iterator){
+                var fileName = file.getFileName().toString();
+                var suffix = fileName.substring(Math.min(fileName.length(), name.length() + 1));
+                if (fileName.startsWith(name + ".") && suffix.length() == 10 && suffix.chars().allMatch(Character::isDigit)){
+                    numbers.add(Integer.parseInt(suffix));
+                }
+            }
+        }
+        numbers.sort(null);
+        return numbers;
+    }
+
+    // forces everything appended so far, a thread that finds its records already forced by another one returns right away
+    private void force() {
+        long target = appended;
+        if (durable >= target){
+            return;
+        }
+        forceLock.lock();
+        try {
+            long from = durable;
+            // the writers that appended while we were waiting for the lock get a free ride
+            target = appended;
+            if (from >= target){
+                return;
+            }
+            var current = segments;
+            // the dropped segments do not need to be durable anymore, a checkpoint covers them
+            for (long first = Math.max(from, current.firstRecord(segmentRecords)); first < target; ){
+                long last = Math.min(target, (first / segmentRecords + 1) * segmentRecords);
+                int offset = (int) (first % segmentRecords) * RECORD_SIZE;
+                current.buffer(first, segmentRecords).force(offset, (int) (last - first) * RECORD_SIZE);
+                first = last;
+            }
+            durable = target;
+        } finally {
+            forceLock.unlock();
+        }
+    }
+
+    // the number of valid records at the start of the journal (the first one being the first of the first segment),
+    // any level is valid as the byte of a record can not hold more than the 256 priority levels
+    private long scan() {
+        var current = segments;
+        long end = current.endRecord(segmentRecords);
+        for (long index = current.firstRecord(segmentRecords); index < end; index++){
+            var buffer = current.buffer(index, segmentRecords);
+            int offset = (int) (index % segmentRecords) * RECORD_SIZE;
+            long sequence = buffer.getLong(offset);
+            byte type = buffer.get(offset + 12);
+            byte rank = buffer.get(offset + 13);
+            if (sequence != index + 1 || type < ADD || type > KILL_BY_PRIORITY
+                    || buffer.getShort(offset + 14) != checksum(sequence, buffer.getInt(offset + 8), type, rank)){
+                return index;
+            }
+        }
+        return end;
+    }
+
+    private void clearAfter(long index) {
+        var current = segments;
+        for (int segment = (int) (index / segmentRecords); segment < current.first + current.buffers.length; segment++){
+            var buffer = current.buffers[segment - current.first];
+            int from = segment == index / segmentRecords ? (int) (index % segmentRecords) * RECORD_SIZE : 0;
+            // reading is much cheaper than dirtying the pages that are already clear
+            for (int offset = from; offset < buffer.capacity(); offset += Long.BYTES){
+                if (buffer.getLong(offset) != 0){
+                    buffer.putLong(offset, 0);
+                }
+            }
+        }
+    }
+
+    private static short checksum(long sequence, int pid, byte type, byte rank) {
+        long hash = sequence * 0x9E3779B97F4A7C15L ^ pid * 0xC2B2AE3D27D4EB4FL ^ (type << 8 | rank & 0xFF);
+        hash ^= hash >>> 32;
+        hash ^= hash >>> 16;
+        return (short) hash;
+    }
+
+    // the mapped segments, first being the number of the segment of buffers[0]
+    private record Segments(int first, MappedByteBuffer[] buffers) {
+
+        MappedByteBuffer buffer(long index, int segmentRecords) {
+            return buffers[(int) (index / segmentRecords) - first];
+        }
+
+        long firstRecord(int segmentRecords) {
+            return (long) first * segmentRecords;
+        }
+
+        // the index after the last record the segments can hold
+        long endRecord(int segmentRecords) {
+            return (long) (first + buffers.length) * segmentRecords;
+        }
+    }
+}
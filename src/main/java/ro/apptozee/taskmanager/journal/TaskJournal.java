@@ -0,0 +1,75 @@
+package ro.apptozee.taskmanager.journal;
+
+import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+/*
+  Write-ahead journal of the modifications of a task manager, replayed when the task manager is created.
+  The records are appended by the task manager under its write lock (so a journal has a single writer at a time and
+  belongs to a single task manager) and made durable by commit() after the lock was released.
+  The DISABLED instance is a no op, the task manager does not branch on it.
+ */
+public interface TaskJournal {
+
+    TaskJournal DISABLED = new TaskJournal() {
+        @Override
+        public void added(Task task) {
+        }
+
+        @Override
+        public void killed(Task task) {
+        }
+
+        @Override
+        public void killedAll() {
+        }
+
+        @Override
+        public void killedByPriority(Priority priority) {
+        }
+
+        @Override
+        public void commit() {
+        }
+
+        @Override
+        public void replay(Replay replay) {
+        }
+    };
+
+    void added(Task task);
+
+    // also used for the evictions, from the point of view of the state an eviction is a kill
+    void killed(Task task);
+
+    void killedAll();
+
+    void killedByPriority(Priority priority);
+
+    // returns once every record appended before the call is as durable as the fsync policy promises
+    void commit();
+
+    // the records found when the journal was opened, in the order they were appended
+    void replay(Replay replay);
+
+    // the number of records appended so far, only stable under the lock of the task manager
+    default long position() {
+        return 0;
+    }
+
+    // the live tasks in FIFO order at the given position, called outside of any lock
+    default void checkpoint(Task[] tasks, long position) {
+        throw new UnsupportedOperationException("Checkpoints not implemented by " + getClass().getSimpleName());
+    }
+
+    interface Replay {
+        void added(PID pid, Priority priority);
+
+        void killed(PID pid, Priority priority);
+
+        void killedAll();
+
+        void killedByPriority(Priority priority);
+    }
+}
@@ -0,0 +1,26 @@
+package ro.apptozee.taskmanager.metrics;
+
+// buckets[b] counts the values in [2^(b-1), 2^b) nanoseconds (bucket 0 counts the zeros)
+public record HistogramSnapshot(long count, long totalNanos, long maxNanos, long[] buckets) {
+
+    public double meanNanos() {
+        return count == 0 ? 0 : (double) totalNanos / count;
+    }
+
+    // the upper bound of the bucket of the given percentile (0 to 100), so at most twice the real value
+    public long percentileNanos(double percentile) {
+        if (percentile < 0 || percentile > 100) {
+            throw new IllegalArgumentException("Percentile must be between 0 and 100");
+        }
+        long rank = (long) Math.ceil(percentile / 100 * count);
+        long seen = 0;
+        for (int b = 0; b < buckets.length; b++) {
+            seen += buckets[b];
+            if (seen >= rank && seen > 0) {
+                long upper = b == 0 ? 0 : b >= Long.SIZE - 1 ? Long.MAX_VALUE : (1L << b) - 1;
+                return Math.min(upper, maxNanos);
+            }
+        }
+        return 0;
+    }
+}
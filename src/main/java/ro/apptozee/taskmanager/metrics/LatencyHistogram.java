@@ -0,0 +1,45 @@
+package ro.apptozee.taskmanager.metrics;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/*
+  Lock free latency histogram with one bucket per power of two of nanoseconds: bucket b counts the values in [2^(b-1), 2^b).
+  The buckets are LongAdders, so concurrent writers update different cells instead of contending on a single counter.
+  The resolution is a factor of 2, which is enough to tell microseconds from milliseconds.
+ */
+public final class LatencyHistogram {
+
+    static final int BUCKETS = Long.SIZE;
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Long::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long nanos) {
+        if (nanos < 0) {
+            // the clock is monotonic but not across cores on every platform
+            nanos = 0;
+        }
+        buckets[Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(nanos))].increment();
+        total.add(nanos);
+        max.accumulate(nanos);
+    }
+
+    // not atomic across the buckets, a concurrent record can be seen in some of the values only
+    public HistogramSnapshot snapshot() {
+        var counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets[i].sum();
+            count += counts[i];
+        }
+        return new HistogramSnapshot(count, total.sum(), max.get(), counts);
+    }
+}
@@ -0,0 +1,19 @@
+package ro.apptozee.taskmanager.metrics;
+
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.Strategy;
+
+import java.util.Map;
+
+// point in time copy of the metrics of a task manager (every value is read separately, they are not atomic together)
+public record MetricsSnapshot(long admissions,
+                              Map<RejectionCause, Long> rejections,
+                              Map<Strategy, Long> evictions,
+                              long expirations,
+                              Map<Priority, Long> occupancy,
+                              Map<Operation, HistogramSnapshot> operationLatencies,
+                              HistogramSnapshot writeLockWait,
+                              HistogramSnapshot writeLockHold,
+                              Map<SortCriteria, HistogramSnapshot> readLockHold) {
+}
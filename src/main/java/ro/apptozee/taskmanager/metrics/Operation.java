@@ -0,0 +1,13 @@
+package ro.apptozee.taskmanager.metrics;
+
+// the operations of a task manager whose latency is recorded
+public enum Operation {
+    ADD,
+    KILL,
+    KILL_ALL,
+    KILL_BY_PRIORITY,
+    LIST,
+    QUERY,
+    // a batch of expirations of the reaper thread
+    EXPIRE
+}
@@ -0,0 +1,11 @@
+package ro.apptozee.taskmanager.metrics;
+
+// why add returned an empty optional
+public enum RejectionCause {
+    // the task manager is full and the strategy does not evict (BLOCK)
+    CAPACITY,
+    // the task manager is full and there is no task with a lower priority to evict (PRIORITY)
+    NO_LOWER_PRIORITY,
+    // the PID pool could not hand out a PID
+    PID_POOL_EXHAUSTED
+}
@@ -0,0 +1,254 @@
+package ro.apptozee.taskmanager.metrics;
+
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.Strategy;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/*
+  Counters and latency histograms of a task manager, safe to update from any number of threads without locking.
+  The task manager guards every measurement with isEnabled(), so the DISABLED instance costs a single predictable branch
+  per operation: no clock reads, no counters.
+ */
+public final class TaskManagerMetrics implements TaskManagerMetricsMXBean {
+
+    public static final TaskManagerMetrics DISABLED = new TaskManagerMetrics(false);
+
+    // the value of start() when nothing is measured
+    public static final long NOT_MEASURED = Long.MIN_VALUE;
+
+    private final boolean enabled;
+
+    private final LongAdder admissions = new LongAdder();
+    private final EnumMap<RejectionCause, LongAdder> rejections = adders(RejectionCause.class);
+    private final EnumMap<Strategy, LongAdder> evictions = adders(Strategy.class);
+    // neither kills nor evictions, the tasks whose time to live has passed
+    private final LongAdder expirations = new LongAdder();
+    // indexed by the level of the priority
+    private final LongAdder[] occupancy = new LongAdder[Priority.LEVELS];
+
+    private final EnumMap<Operation, LatencyHistogram> operationLatencies = histograms(Operation.class);
+    private final LatencyHistogram writeLockWait = new LatencyHistogram();
+    private final LatencyHistogram writeLockHold = new LatencyHistogram();
+    private final EnumMap<SortCriteria, LatencyHistogram> readLockHold = histograms(SortCriteria.class);
+
+    private TaskManagerMetrics(boolean enabled) {
+        this.enabled = enabled;
+        for (int level = 0; level < occupancy.length; level++) {
+            occupancy[level] = new LongAdder();
+        }
+    }
+
+    public static TaskManagerMetrics create() {
+        return new TaskManagerMetrics(true);
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : NOT_MEASURED;
+    }
+
+    public void operation(Operation operation, long start) {
+        if (start != NOT_MEASURED) {
+            operationLatencies.get(operation).record(System.nanoTime() - start);
+        }
+    }
+
+    public void writeLockWaited(long nanos) {
+        writeLockWait.record(nanos);
+    }
+
+    public void writeLockHeld(long nanos) {
+        writeLockHold.record(nanos);
+    }
+
+    public void readLockHeld(SortCriteria sortCriteria, long nanos) {
+        readLockHold.get(sortCriteria).record(nanos);
+    }
+
+    public void admitted(Priority priority) {
+        if (enabled) {
+            admissions.increment();
+            occupancy[priority.rank()].increment();
+        }
+    }
+
+    public void removed(Priority priority) {
+        if (enabled) {
+            occupancy[priority.rank()].decrement();
+        }
+    }
+
+    // the bulk kills
+    public void removed(Priority priority, int count) {
+        if (enabled) {
+            occupancy[priority.rank()].add(-count);
+        }
+    }
+
+    public void rejected(RejectionCause cause) {
+        if (enabled) {
+            rejections.get(cause).increment();
+        }
+    }
+
+    public void evicted(Strategy strategy) {
+        if (enabled) {
+            evictions.get(strategy).increment();
+        }
+    }
+
+    public void expired() {
+        if (enabled) {
+            expirations.increment();
+        }
+    }
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(admissions.sum(),
+                sums(rejections),
+                sums(evictions),
+                expirations.sum(),
+                occupancy(),
+                snapshots(operationLatencies),
+                writeLockWait.snapshot(),
+                writeLockHold.snapshot(),
+                snapshots(readLockHold));
+    }
+
+    // registers this instance in the platform MBean server under ro.apptozee.taskmanager:type=TaskManagerMetrics,name=<name>
+    public ObjectName registerMBean(String name) {
+        try {
+            var objectName = new ObjectName("ro.apptozee.taskmanager:type=TaskManagerMetrics,name=" + ObjectName.quote(name));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+            return objectName;
+        } catch (JMException ex) {
+            throw new IllegalArgumentException("Can not register the metrics as " + name, ex);
+        }
+    }
+
+    public void unregisterMBean(ObjectName objectName) {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException ex) {
+            throw new IllegalArgumentException("Can not unregister " + objectName, ex);
+        }
+    }
+
+    @Override
+    public long getAdmissions() {
+        return admissions.sum();
+    }
+
+    @Override
+    public Map<String, Long> getRejections() {
+        return byName(sums(rejections));
+    }
+
+    @Override
+    public Map<String, Long> getEvictions() {
+        return byName(sums(evictions));
+    }
+
+    @Override
+    public long getExpirations() {
+        return expirations.sum();
+    }
+
+    @Override
+    public Map<String, Long> getOccupancy() {
+        var byName = new LinkedHashMap<String, Long>();
+        occupancy().forEach((priority, count) -> byName.put(priority.toString(), count));
+        return byName;
+    }
+
+    @Override
+    public Map<String, Long> getLatencyCounts() {
+        return latencies(HistogramSnapshot::count);
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP50() {
+        return latencies(histogram -> histogram.percentileNanos(50));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyP99() {
+        return latencies(histogram -> histogram.percentileNanos(99));
+    }
+
+    @Override
+    public Map<String, Long> getLatencyMax() {
+        return latencies(HistogramSnapshot::maxNanos);
+    }
+
+    private Map<String, Long> latencies(ToLongFunction<HistogramSnapshot> value) {
+        var snapshot = snapshot();
+        var latencies = new LinkedHashMap<String, Long>();
+        snapshot.operationLatencies().forEach((operation, histogram) -> latencies.put(operation.name(), value.applyAsLong(histogram)));
+        latencies.put("WRITE_LOCK_WAIT", value.applyAsLong(snapshot.writeLockWait()));
+        latencies.put("WRITE_LOCK_HOLD", value.applyAsLong(snapshot.writeLockHold()));
+        snapshot.readLockHold().forEach((sortCriteria, histogram) -> latencies.put("READ_LOCK_HOLD_" + sortCriteria.name(), value.applyAsLong(histogram)));
+        return latencies;
+    }
+
+    // the named priorities and every other level that has tasks, ascending
+    private Map<Priority, Long> occupancy() {
+        var occupancy = new LinkedHashMap<Priority, Long>();
+        var named = List.of(Priority.values());
+        for (var priority : Priority.ASCENDING) {
+            long count = this.occupancy[priority.rank()].sum();
+            if (count != 0 || named.contains(priority)) {
+                occupancy.put(priority, count);
+            }
+        }
+        return occupancy;
+    }
+
+    private static <E extends Enum<E>> EnumMap<E, LongAdder> adders(Class<E> keys) {
+        var adders = new EnumMap<E, LongAdder>(keys);
+        for (var key : keys.getEnumConstants()) {
+            adders.put(key, new LongAdder());
+        }
+        return adders;
+    }
+
+    private static <E extends Enum<E>> EnumMap<E, LatencyHistogram> histograms(Class<E> keys) {
+        var histograms = new EnumMap<E, LatencyHistogram>(keys);
+        for (var key : keys.getEnumConstants()) {
+            histograms.put(key, new LatencyHistogram());
+        }
+        return histograms;
+    }
+
+    private static <E extends Enum<E>> Map<E, Long> sums(EnumMap<E, LongAdder> adders) {
+        var sums = new EnumMap<E, Long>(adders.keySet().iterator().next().getDeclaringClass());
+        adders.forEach((key, adder) -> sums.put(key, adder.sum()));
+        return sums;
+    }
+
+    private static <E extends Enum<E>> Map<E, HistogramSnapshot> snapshots(EnumMap<E, LatencyHistogram> histograms) {
+        var snapshots = new EnumMap<E, HistogramSnapshot>(histograms.keySet().iterator().next().getDeclaringClass());
+        histograms.forEach((key, histogram) -> snapshots.put(key, histogram.snapshot()));
+        return snapshots;
+    }
+
+    private static <E extends Enum<E>> Map<String, Long> byName(Map<E, Long> values) {
+        var byName = new LinkedHashMap<String, Long>();
+        values.forEach((key, value) -> byName.put(key.name(), value));
+        return byName;
+    }
+}
@@ -0,0 +1,28 @@
+package ro.apptozee.taskmanager.metrics;
+
+import java.util.Map;
+
+// JMX view of TaskManagerMetrics, the maps are keyed by the enum names (latencies in nanoseconds)
+public interface TaskManagerMetricsMXBean {
+
+    boolean isEnabled();
+
+    long getAdmissions();
+
+    Map<String, Long> getRejections();
+
+    Map<String, Long> getEvictions();
+
+    long getExpirations();
+
+    Map<String, Long> getOccupancy();
+
+    // by operation, then the write lock wait and hold and the read lock hold of every sort criteria
+    Map<String, Long> getLatencyCounts();
+
+    Map<String, Long> getLatencyP50();
+
+    Map<String, Long> getLatencyP99();
+
+    Map<String, Long> getLatencyMax();
+}
@@ -0,0 +1,389 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.views.CompactTasksView;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/*
+  Task store laid out as a struct of arrays: a task is a slot index in parallel primitive arrays.
+  The FIFO, priority and PID orders are doubly linked chains of slot indexes, so there is no per task object at all
+  (around 44 bytes per task including the PID hash index, compared to several hundreds for LinkedTaskStore, plus a node
+  of the PIDIndex per 64 PIDs in use).
+  Task instances are only created at the API boundary (views, eviction candidates and bulk removals).
+
+  All the arrays are preallocated for the capacity of the task manager. removeAll hands the arrays a removed task is read
+  from over to the caller and starts from new ones, so it does not touch a single slot (the other arrays are written by add
+  before they are read). removeAll by priority still walks the chain of the priority, to unlink every slot from the others.
+ */
+public class CompactTaskStore implements TaskStore {
+
+    private static final int NIL = -1;
+
+    private final TaskManager owner;
+
+    // pids, generations, priorities and fifoNext are replaced instead of cleared by removeAll
+    private int[] pids;
+    // the generation of the task, a stale task with a recycled PID is not the one in the slot
+    private int[] generations;
+    // the level of the priority, unsigned
+    private byte[] priorities;
+
+    // fifoNext also links the free slots
+    private final int[] fifoPrev;
+    private int[] fifoNext;
+    private int fifoHead = NIL;
+    private int fifoTail = NIL;
+
+    // one chain per priority level, in FIFO order, indexed by the level
+    private final int[] priorityPrev;
+    private final int[] priorityNext;
+    private final int[] priorityHead = new int[Priority.LEVELS];
+    private final int[] priorityTail = new int[Priority.LEVELS];
+
+    // the levels with a non empty chain
+    private final PriorityBitmap nonEmptyLevels = new PriorityBitmap();
+
+    // a new slot is linked after the slot of the highest lower PID, whatever the order the PIDs are recycled in
+    private final int[] pidPrev;
+    private final int[] pidNext;
+    private int pidHead = NIL;
+    private int pidTail = NIL;
+    // replaced instead of cleared by removeAll
+    private PIDIndex pidIndex = new PIDIndex();
+
+    private int freeHead = NIL;
+    // the slots from unused on were not taken since the last removeAll, they are free without being linked
+    private int unused;
+    private int size;
+
+    // PID -> slot hash index, chained through the slots. The live PIDs are mostly a window of consecutive values,
+    // so hashing by identity keeps the chains at one or two slots and neighbouring PIDs in neighbouring buckets.
+    // The buckets and the chains hold the slot + 1, so that a zeroed array is an empty index (replaced by removeAll)
+    private int[] buckets;
+    private final int[] bucketNext;
+    private final int bucketMask;
+
+    public CompactTaskStore(int capacity, TaskManager owner) {
+        this.owner = owner;
+        pids = new int[capacity];
+        generations = new int[capacity];
+        priorities = new byte[capacity];
+        fifoPrev = new int[capacity];
+        fifoNext = new int[capacity];
+        priorityPrev = new int[capacity];
+        priorityNext = new int[capacity];
+        pidPrev = new int[capacity];
+        pidNext = new int[capacity];
+        Arrays.fill(priorityHead, NIL);
+        Arrays.fill(priorityTail, NIL);
+        int bucketCount = Integer.highestOneBit(capacity);
+        if (bucketCount < capacity && bucketCount < (1 << 30)) {
+            bucketCount <<= 1;
+        }
+        buckets = new int[bucketCount];
+        bucketNext = new int[capacity];
+        bucketMask = bucketCount - 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(Task task) {
+        int slot = freeHead;
+        if (slot != NIL) {
+            freeHead = fifoNext[slot];
+        } else if (unused < pids.length) {
+            slot = unused++;
+        } else {
+            // the task manager never adds over its capacity
+            throw new IllegalStateException("No free slot left");
+        }
+        int pid = task.pid().pid();
+        int priority = task.priority().rank();
+        pids[slot] = pid;
+        generations[slot] = task.generation();
+        priorities[slot] = (byte) priority;
+
+        fifoPrev[slot] = fifoTail;
+        fifoNext[slot] = NIL;
+        if (fifoTail == NIL) {
+            fifoHead = slot;
+        } else {
+            fifoNext[fifoTail] = slot;
+        }
+        fifoTail = slot;
+
+        priorityPrev[slot] = priorityTail[priority];
+        priorityNext[slot] = NIL;
+        if (priorityTail[priority] == NIL) {
+            priorityHead[priority] = slot;
+        } else {
+            priorityNext[priorityTail[priority]] = slot;
+        }
+        priorityTail[priority] = slot;
+        nonEmptyLevels.set(priority);
+
+        int previous = pidIndex.floor(pid - 1);
+        int after = previous < 0 ? NIL : find(previous);
+        int before = after == NIL ? pidHead : pidNext[after];
+        pidPrev[slot] = after;
+        pidNext[slot] = before;
+        if (after == NIL) {
+            pidHead = slot;
+        } else {
+            pidNext[after] = slot;
+        }
+        if (before == NIL) {
+            pidTail = slot;
+        } else {
+            pidPrev[before] = slot;
+        }
+        pidIndex.add(pid);
+
+        int bucket = pid & bucketMask;
+        bucketNext[slot] = buckets[bucket];
+        buckets[bucket] = slot + 1;
+        size++;
+    }
+
+    @Override
+    public boolean remove(Task task) {
+        int slot = find(task.pid().pid());
+        // a recycled PID could belong to a newer task
+        if (slot == NIL || level(slot) != task.priority().rank() || generations[slot] != task.generation()
+                || task.taskManager() != owner) {
+            return false;
+        }
+        unlinkFIFO(slot);
+        unlinkPriority(slot);
+        release(slot);
+        return true;
+    }
+
+    @Override
+    public Iterable<Task> removeAll() {
+        // the old arrays are only read once the write lock is released, nothing writes to them anymore
+        var removed = detached(fifoHead, fifoNext, pids, generations, priorities);
+        int capacity = pids.length;
+        pids = new int[capacity];
+        generations = new int[capacity];
+        priorities = new byte[capacity];
+        fifoNext = new int[capacity];
+        buckets = new int[buckets.length];
+        freeHead = NIL;
+        unused = 0;
+        fifoHead = fifoTail = NIL;
+        pidHead = pidTail = NIL;
+        pidIndex = new PIDIndex();
+        for (int level = nonEmptyLevels.lowest(); level >= 0; level = nonEmptyLevels.next(level + 1)) {
+            priorityHead[level] = priorityTail[level] = NIL;
+        }
+        nonEmptyLevels.clearAll();
+        size = 0;
+        return removed;
+    }
+
+    @Override
+    public List<Task> removeAll(Priority priority) {
+        var removed = new ArrayList<Task>();
+        int rank = priority.rank();
+        for (int slot = priorityHead[rank]; slot != NIL; ) {
+            int next = priorityNext[slot];
+            removed.add(task(slot));
+            unlinkFIFO(slot);
+            release(slot);
+            slot = next;
+        }
+        priorityHead[rank] = priorityTail[rank] = NIL;
+        nonEmptyLevels.clear(rank);
+        return removed;
+    }
+
+    @Override
+    public Task pollOldest() {
+        int slot = fifoHead;
+        if (slot == NIL) {
+            return null;
+        }
+        var task = task(slot);
+        unlinkFIFO(slot);
+        unlinkPriority(slot);
+        release(slot);
+        return task;
+    }
+
+    @Override
+    public Task pollOldestBelow(Priority priority) {
+        int lowest = nonEmptyLevels.lowest();
+        if (lowest < 0 || lowest >= priority.rank()) {
+            return null;
+        }
+        int slot = priorityHead[lowest];
+        var task = task(slot);
+        unlinkFIFO(slot);
+        unlinkPriority(slot);
+        release(slot);
+        return task;
+    }
+
+    @Override
+    public TasksView view(SortCriteria sortCriteria, SortOrder sortOrder) {
+        return new CompactTasksView(this, sortCriteria, sortOrder);
+    }
+
+    public void forEach(SortCriteria sortCriteria, SortOrder sortOrder, Consumer<Task> consumer) {
+        visit(sortCriteria, sortOrder, task -> {
+            consumer.accept(task);
+            return true;
+        });
+    }
+
+    // walks the tasks while the visitor returns true, a task is only materialized when it is visited
+    public void visit(SortCriteria sortCriteria, SortOrder sortOrder, Predicate<Task> visitor) {
+        boolean ascending = sortOrder == SortOrder.ASCENDING;
+        switch (sortCriteria) {
+            case FIFO -> walk(ascending ? fifoHead : fifoTail, ascending ? fifoNext : fifoPrev, visitor);
+            case PID -> walk(ascending ? pidHead : pidTail, ascending ? pidNext : pidPrev, visitor);
+            case PRIORITY -> {
+                // the priorities are reversed, the tasks inside a priority keep the FIFO order, the empty levels are skipped
+                for (int level = ascending ? nonEmptyLevels.lowest() : nonEmptyLevels.highest(); level >= 0;
+                     level = ascending ? nonEmptyLevels.next(level + 1) : nonEmptyLevels.previous(level - 1)) {
+                    if (!walk(priorityHead[level], priorityNext, visitor)) {
+                        return;
+                    }
+                }
+            }
+            default -> throw new UnsupportedOperationException(sortCriteria + " not implemented");
+        }
+    }
+
+    // false if the visitor stopped the walk
+    private boolean walk(int slot, int[] next, Predicate<Task> visitor) {
+        while (slot != NIL) {
+            if (!visitor.test(task(slot))) {
+                return false;
+            }
+            slot = next[slot];
+        }
+        return true;
+    }
+
+    private Task task(int slot) {
+        return new Task(new PID(pids[slot]), Priority.of(level(slot)), owner, generations[slot]);
+    }
+
+    // the tasks of the FIFO chain starting with head, read from the given arrays
+    private Iterable<Task> detached(int head, int[] next, int[] pids, int[] generations, byte[] priorities) {
+        return () -> new Iterator<>() {
+            private int slot = head;
+
+            @Override
+            public boolean hasNext() {
+                return slot != NIL;
+            }
+
+            @Override
+            public Task next() {
+                if (slot == NIL) {
+                    throw new NoSuchElementException();
+                }
+                var task = new Task(new PID(pids[slot]), Priority.of(priorities[slot] & 0xFF), owner, generations[slot]);
+                slot = next[slot];
+                return task;
+            }
+        };
+    }
+
+    private int level(int slot) {
+        return priorities[slot] & 0xFF;
+    }
+
+    private void unlinkFIFO(int slot) {
+        int prev = fifoPrev[slot];
+        int next = fifoNext[slot];
+        if (prev == NIL) {
+            fifoHead = next;
+        } else {
+            fifoNext[prev] = next;
+        }
+        if (next == NIL) {
+            fifoTail = prev;
+        } else {
+            fifoPrev[next] = prev;
+        }
+    }
+
+    private void unlinkPriority(int slot) {
+        int priority = level(slot);
+        int prev = priorityPrev[slot];
+        int next = priorityNext[slot];
+        if (prev == NIL) {
+            priorityHead[priority] = next;
+            if (next == NIL) {
+                nonEmptyLevels.clear(priority);
+            }
+        } else {
+            priorityNext[prev] = next;
+        }
+        if (next == NIL) {
+            priorityTail[priority] = prev;
+        } else {
+            priorityPrev[next] = prev;
+        }
+    }
+
+    // unlinks from the PID chain and gives the slot back, the FIFO and priority chains are handled by the caller
+    private void release(int slot) {
+        int prev = pidPrev[slot];
+        int next = pidNext[slot];
+        pidIndex.remove(pids[slot]);
+        if (prev == NIL) {
+            pidHead = next;
+        } else {
+            pidNext[prev] = next;
+        }
+        if (next == NIL) {
+            pidTail = prev;
+        } else {
+            pidPrev[next] = prev;
+        }
+        unindex(slot);
+        fifoNext[slot] = freeHead;
+        freeHead = slot;
+        size--;
+    }
+
+    // NIL if no slot holds the PID
+    private int find(int pid) {
+        int next = buckets[pid & bucketMask];
+        while (next != 0 && pids[next - 1] != pid) {
+            next = bucketNext[next - 1];
+        }
+        return next - 1;
+    }
+
+    private void unindex(int slot) {
+        int bucket = pids[slot] & bucketMask;
+        if (buckets[bucket] == slot + 1) {
+            buckets[bucket] = bucketNext[slot];
+            return;
+        }
+        int previous = buckets[bucket] - 1;
+        while (bucketNext[previous] != slot + 1) {
+            previous = bucketNext[previous] - 1;
+        }
+        bucketNext[previous] = bucketNext[slot];
+    }
+}
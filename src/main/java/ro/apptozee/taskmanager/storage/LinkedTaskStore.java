@@ -0,0 +1,385 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.views.FIFOTasksView;
+import ro.apptozee.taskmanager.views.PIDTasksView;
+import ro.apptozee.taskmanager.views.PriorityTasksView;
+import ro.apptozee.taskmanager.views.QueryTasksView;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.function.LongSupplier;
+
+/*
+  Task store with intrusive indexes: every task has a single node which is linked in a doubly linked chain for every order.
+  Insertion and removal are O(1) on every index (the node is found through a hash map by PID, its neighbours in the PID
+  chain through a PIDIndex in a few bit scans) and every view can be walked in both directions without any temporary collection.
+ */
+public class LinkedTaskStore implements TaskStore {
+
+    // replaced instead of cleared by removeAll
+    private HashMap<PID, TaskNode> nodes = new HashMap<>();
+
+    private TaskNode fifoHead;
+    private TaskNode fifoTail;
+
+    // one chain per priority level, in FIFO order, indexed by the level
+    private final TaskNode[] priorityHead = new TaskNode[Priority.LEVELS];
+    private final TaskNode[] priorityTail = new TaskNode[Priority.LEVELS];
+
+    // the levels with a non empty chain, eviction picks its victim and the views skip the empty levels with a few bit scans
+    private final PriorityBitmap nonEmptyLevels = new PriorityBitmap();
+
+    // a new node is linked after the node of the highest lower PID, whatever the order the PIDs are recycled in
+    private TaskNode pidHead;
+    private TaskNode pidTail;
+    // replaced instead of cleared by removeAll
+    private PIDIndex pids = new PIDIndex();
+
+    // stamps every node with its insertion order, shared by the stores of a ShardedTaskManager (null for a store of its own)
+    private final LongSupplier sequence;
+    private long added;
+
+    private static final Comparator<TaskNode> BY_SEQUENCE = Comparator.comparingLong(TaskNode::sequence);
+
+    public LinkedTaskStore() {
+        this(null);
+    }
+
+    public LinkedTaskStore(LongSupplier sequence) {
+        this.sequence = sequence;
+    }
+
+    @Override
+    public int size() {
+        return nodes.size();
+    }
+
+    @Override
+    public void add(Task task) {
+        var node = new TaskNode(task, sequence == null ? ++added : sequence.getAsLong());
+
+        node.fifoPrevious = fifoTail;
+        if (fifoTail == null) {
+            fifoHead = node;
+        } else {
+            fifoTail.fifoNext = node;
+        }
+        fifoTail = node;
+
+        int priority = task.priority().rank();
+        node.priorityPrevious = priorityTail[priority];
+        if (priorityTail[priority] == null) {
+            priorityHead[priority] = node;
+        } else {
+            priorityTail[priority].priorityNext = node;
+        }
+        priorityTail[priority] = node;
+        nonEmptyLevels.set(priority);
+
+        linkPID(node);
+        nodes.put(task.pid(), node);
+    }
+
+    private void linkPID(TaskNode node) {
+        int pid = node.task.pid().pid();
+        int previous = pids.floor(pid - 1);
+        var after = previous < 0 ? null : nodes.get(new PID(previous));
+        var before = after == null ? pidHead : after.pidNext;
+        node.pidPrevious = after;
+        node.pidNext = before;
+        if (after == null) {
+            pidHead = node;
+        } else {
+            after.pidNext = node;
+        }
+        if (before == null) {
+            pidTail = node;
+        } else {
+            before.pidPrevious = node;
+        }
+        pids.add(pid);
+    }
+
+    @Override
+    public boolean remove(Task task) {
+        var node = nodes.get(task.pid());
+        // a recycled PID could belong to a newer task
+        if (node == null || !node.task.equals(task)) {
+            return false;
+        }
+        unlinkFIFO(node);
+        unlinkPriority(node);
+        unlinkPID(node);
+        nodes.remove(task.pid());
+        return true;
+    }
+
+    /*
+      The bulk removals detach the nodes instead of copying the tasks: once the store does not link to a chain anymore
+      nothing modifies it, so the removed tasks are walked on the chain itself after the write lock was released.
+      removeAll swaps in empty indexes in O(1) (O(levels in use) for the priority heads), removeAll(priority) detaches the
+      chain of the level but still has to unlink every one of its nodes from the FIFO and PID chains they are interleaved in.
+     */
+    @Override
+    public Iterable<Task> removeAll() {
+        var removed = detached(fifoHead, SortCriteria.FIFO);
+        nodes = new HashMap<>();
+        fifoHead = fifoTail = null;
+        pidHead = pidTail = null;
+        pids = new PIDIndex();
+        // only the non empty levels need clearing
+        for (int level = nonEmptyLevels.lowest(); level >= 0; level = nonEmptyLevels.next(level + 1)) {
+            priorityHead[level] = priorityTail[level] = null;
+        }
+        nonEmptyLevels.clearAll();
+        return removed;
+    }
+
+    @Override
+    public Iterable<Task> removeAll(Priority priority) {
+        int rank = priority.rank();
+        var removed = detached(priorityHead[rank], SortCriteria.PRIORITY);
+        for (var node = priorityHead[rank]; node != null; node = node.priorityNext) {
+            unlinkFIFO(node);
+            unlinkPID(node);
+            nodes.remove(node.task.pid());
+        }
+        priorityHead[rank] = priorityTail[rank] = null;
+        nonEmptyLevels.clear(rank);
+        return removed;
+    }
+
+    @Override
+    public Task pollOldest() {
+        var node = fifoHead;
+        if (node == null) {
+            return null;
+        }
+        unlinkFIFO(node);
+        unlinkPriority(node);
+        unlinkPID(node);
+        nodes.remove(node.task.pid());
+        return node.task;
+    }
+
+    @Override
+    public Task pollOldestBelow(Priority priority) {
+        int lowest = nonEmptyLevels.lowest();
+        if (lowest < 0 || lowest >= priority.rank()) {
+            return null;
+        }
+        var node = priorityHead[lowest];
+        unlinkFIFO(node);
+        unlinkPriority(node);
+        unlinkPID(node);
+        nodes.remove(node.task.pid());
+        return node.task;
+    }
+
+    @Override
+    public TasksView view(SortCriteria sortCriteria, SortOrder sortOrder) {
+        return switch (sortCriteria){
+            case FIFO -> new FIFOTasksView(fifoHead, fifoTail, sortOrder);
+            case PID -> new PIDTasksView(pidHead, pidTail, sortOrder);
+            // the chains are already sorted by priority
+            case PRIORITY -> new PriorityTasksView(priorityHead, nonEmptyLevels, sortOrder);
+            default -> throw new UnsupportedOperationException(sortCriteria+ " not implemented");
+        };
+    }
+
+    /*
+      The query walks a single index, the one of the sort criteria, and only its part that can match:
+      - FIFO: the chains of the priorities in range, merged by sequence, unless the range covers every priority
+      - PID: the PID chain from the first PID in range to the last one
+      - PRIORITY: the chains of the priorities in range
+      The other conditions are checked on the tasks walked, so the cost is proportional to the result (plus the offset)
+      when the query is selective on the index of its sort criteria, e.g. the newest tasks of a priority
+     */
+    @Override
+    public TasksView query(TaskQuery query) {
+        boolean ascending = query.sortOrder() == SortOrder.ASCENDING;
+        int lowest = query.lowestPriority().rank();
+        int highest = query.highestPriority().rank();
+        boolean everyLevel = nonEmptyLevels.lowest() >= lowest && nonEmptyLevels.highest() <= highest;
+        return switch (query.sortCriteria()){
+            case FIFO -> new QueryTasksView(everyLevel
+                    ? () -> new NodeIterator(ascending ? fifoHead : fifoTail, SortCriteria.FIFO, ascending, 0, Priority.LEVELS - 1)
+                    : () -> new MergedLevelsIterator(lowest, highest, ascending), query);
+            case PID -> new QueryTasksView(() -> new NodeIterator(firstPID(query, ascending), SortCriteria.PID, ascending,
+                    0, Priority.LEVELS - 1), query);
+            case PRIORITY -> new QueryTasksView(() -> new NodeIterator(null, SortCriteria.PRIORITY, ascending, lowest, highest), query);
+            default -> throw new UnsupportedOperationException(query.sortCriteria()+ " not implemented");
+        };
+    }
+
+    // the node with the lowest (or highest when descending) PID in the range of the query, null if there is none
+    private TaskNode firstPID(TaskQuery query, boolean ascending) {
+        int pid = ascending ? pids.ceiling(query.lowestPID().pid()) : pids.floor(query.highestPID().pid());
+        if (pid < 0 || !query.matchesPID(new PID(pid))) {
+            return null;
+        }
+        return nodes.get(new PID(pid));
+    }
+
+    // same orders as the views, but pulled one node at a time so that several stores can be merged
+    public Iterator<TaskNode> nodes(SortCriteria sortCriteria, SortOrder sortOrder) {
+        boolean ascending = sortOrder == SortOrder.ASCENDING;
+        return switch (sortCriteria){
+            case FIFO -> new NodeIterator(ascending ? fifoHead : fifoTail, sortCriteria, ascending, 0, Priority.LEVELS - 1);
+            case PID -> new NodeIterator(ascending ? pidHead : pidTail, sortCriteria, ascending, 0, Priority.LEVELS - 1);
+            case PRIORITY -> new NodeIterator(null, sortCriteria, ascending, 0, Priority.LEVELS - 1);
+            default -> throw new UnsupportedOperationException(sortCriteria+ " not implemented");
+        };
+    }
+
+    // the tasks of a chain the store no longer links to, by the FIFO or the priority links
+    private static Iterable<Task> detached(TaskNode first, SortCriteria sortCriteria) {
+        return () -> new Iterator<>() {
+            private TaskNode next = first;
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Task next() {
+                var node = next;
+                if (node == null) {
+                    throw new NoSuchElementException();
+                }
+                next = sortCriteria == SortCriteria.FIFO ? node.fifoNext : node.priorityNext;
+                return node.task;
+            }
+        };
+    }
+
+    private void unlinkFIFO(TaskNode node) {
+        if (node.fifoPrevious == null) {
+            fifoHead = node.fifoNext;
+        } else {
+            node.fifoPrevious.fifoNext = node.fifoNext;
+        }
+        if (node.fifoNext == null) {
+            fifoTail = node.fifoPrevious;
+        } else {
+            node.fifoNext.fifoPrevious = node.fifoPrevious;
+        }
+    }
+
+    private void unlinkPriority(TaskNode node) {
+        int priority = node.task.priority().rank();
+        if (node.priorityPrevious == null) {
+            priorityHead[priority] = node.priorityNext;
+            if (node.priorityNext == null) {
+                nonEmptyLevels.clear(priority);
+            }
+        } else {
+            node.priorityPrevious.priorityNext = node.priorityNext;
+        }
+        if (node.priorityNext == null) {
+            priorityTail[priority] = node.priorityPrevious;
+        } else {
+            node.priorityNext.priorityPrevious = node.priorityPrevious;
+        }
+    }
+
+    private void unlinkPID(TaskNode node) {
+        pids.remove(node.task.pid().pid());
+        if (node.pidPrevious == null) {
+            pidHead = node.pidNext;
+        } else {
+            node.pidPrevious.pidNext = node.pidNext;
+        }
+        if (node.pidNext == null) {
+            pidTail = node.pidPrevious;
+        } else {
+            node.pidNext.pidPrevious = node.pidPrevious;
+        }
+    }
+
+    private final class NodeIterator implements Iterator<TaskNode> {
+        private final SortCriteria sortCriteria;
+        private final boolean ascending;
+        private TaskNode next;
+        // only used by the priority order: the range of levels to walk and the next level to look at
+        private final int lowestLevel;
+        private final int highestLevel;
+        private int level;
+
+        NodeIterator(TaskNode first, SortCriteria sortCriteria, boolean ascending, int lowestLevel, int highestLevel) {
+            this.sortCriteria = sortCriteria;
+            this.ascending = ascending;
+            this.lowestLevel = lowestLevel;
+            this.highestLevel = highestLevel;
+            this.level = ascending ? lowestLevel : highestLevel;
+            this.next = sortCriteria == SortCriteria.PRIORITY ? nextPriorityHead() : first;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public TaskNode next() {
+            var node = next;
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            next = switch (sortCriteria){
+                case FIFO -> ascending ? node.fifoNext : node.fifoPrevious;
+                case PID -> ascending ? node.pidNext : node.pidPrevious;
+                // the priorities are reversed, the tasks inside a priority keep the FIFO order
+                default -> node.priorityNext != null ? node.priorityNext : nextPriorityHead();
+            };
+            return node;
+        }
+
+        private TaskNode nextPriorityHead() {
+            int next = ascending ? nonEmptyLevels.next(level) : nonEmptyLevels.previous(level);
+            if (next < lowestLevel || next > highestLevel) {
+                return null;
+            }
+            level = ascending ? next + 1 : next - 1;
+            return priorityHead[next];
+        }
+    }
+
+    // the FIFO order of a range of levels: the chains of the levels are in FIFO order, so their heads are merged by sequence
+    private final class MergedLevelsIterator implements Iterator<TaskNode> {
+        private final boolean ascending;
+        private final PriorityQueue<TaskNode> next;
+
+        MergedLevelsIterator(int lowestLevel, int highestLevel, boolean ascending) {
+            this.ascending = ascending;
+            this.next = new PriorityQueue<>(ascending ? BY_SEQUENCE : BY_SEQUENCE.reversed());
+            for (int level = nonEmptyLevels.next(lowestLevel); level >= 0 && level <= highestLevel; level = nonEmptyLevels.next(level + 1)) {
+                next.add(ascending ? priorityHead[level] : priorityTail[level]);
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return !next.isEmpty();
+        }
+
+        @Override
+        public TaskNode next() {
+            var node = next.poll();
+            if (node == null) {
+                throw new NoSuchElementException();
+            }
+            var following = ascending ? node.priorityNext : node.priorityPrevious;
+            if (following != null) {
+                next.add(following);
+            }
+            return node;
+        }
+    }
+}
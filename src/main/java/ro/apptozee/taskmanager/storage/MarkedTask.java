@@ -0,0 +1,32 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.vo.Task;
+
+/*
+  Task wrapper with a lazy deletion mark.
+  Removing an element from the middle of a concurrent linked queue requires a traversal, so killed tasks are only marked
+  and physically unlinked later, when the queue is traversed anyway.
+ */
+public final class MarkedTask {
+
+    private final Task task;
+
+    // written once, only by the thread that won the removal of the task from the PID index
+    private volatile boolean deleted;
+
+    public MarkedTask(Task task) {
+        this.task = task;
+    }
+
+    public Task task() {
+        return task;
+    }
+
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    public void markDeleted() {
+        deleted = true;
+    }
+}
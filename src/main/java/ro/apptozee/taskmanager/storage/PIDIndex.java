@@ -0,0 +1,143 @@
+package ro.apptozee.taskmanager.storage;
+
+/*
+  The PIDs held by a store in a trie of 64 bit words: a leaf has one bit per PID of its 64 consecutive PIDs and an inner
+  node one bit per non empty child, six levels of 6 bits covering every non negative int. The PID before or after any
+  value is found with one bit scan per level, whatever the number of PIDs and however they are spread, where walking the
+  PID chain from the previous insertion is O(n) once the PIDs are recycled out of order (LOWEST_FREE, kills of old tasks).
+  Only the nodes of the ranges in use exist, a node is dropped with its last PID.
+
+  Not thread safe, it is modified along with the store under the write lock of the task manager.
+ */
+final class PIDIndex {
+
+    private static final int BITS = 6;
+    private static final int MASK = (1 << BITS) - 1;
+    private static final int TOP_SHIFT = BITS * 5;
+
+    private final Node root = new Node(TOP_SHIFT);
+
+    void add(int pid) {
+        var node = root;
+        while (true) {
+            int index = pid >>> node.shift & MASK;
+            node.bits |= 1L << index;
+            if (node.shift == 0) {
+                return;
+            }
+            var child = node.children[index];
+            if (child == null) {
+                child = new Node(node.shift - BITS);
+                node.children[index] = child;
+            }
+            node = child;
+        }
+    }
+
+    void remove(int pid) {
+        remove(root, pid);
+    }
+
+    // the highest PID lower or equal to the given one, -1 if there is none
+    int floor(int pid) {
+        return pid < 0 ? -1 : floor(root, pid);
+    }
+
+    // the lowest PID greater or equal to the given one, -1 if there is none
+    int ceiling(int pid) {
+        return ceiling(root, Math.max(pid, 0));
+    }
+
+    // true when the node is left empty, its parent then drops it
+    private static boolean remove(Node node, int pid) {
+        int index = pid >>> node.shift & MASK;
+        if (node.shift != 0) {
+            var child = node.children[index];
+            if (child == null || !remove(child, pid)) {
+                return false;
+            }
+            node.children[index] = null;
+        }
+        node.bits &= ~(1L << index);
+        return node.bits == 0;
+    }
+
+    private static int floor(Node node, int pid) {
+        int index = pid >>> node.shift & MASK;
+        if (node.shift == 0) {
+            long bits = node.bits & -1L >>> (63 - index);
+            return bits == 0 ? -1 : (pid & ~MASK) | 63 - Long.numberOfLeadingZeros(bits);
+        }
+        var child = node.children[index];
+        if (child != null) {
+            int found = floor(child, pid);
+            if (found >= 0) {
+                return found;
+            }
+        }
+        // otherwise the highest PID of the closest lower child
+        long lower = node.bits & (1L << index) - 1;
+        if (lower == 0) {
+            return -1;
+        }
+        int next = 63 - Long.numberOfLeadingZeros(lower);
+        return highest(node.children[next], prefix(pid, node.shift) | next << node.shift);
+    }
+
+    private static int ceiling(Node node, int pid) {
+        int index = pid >>> node.shift & MASK;
+        if (node.shift == 0) {
+            long bits = node.bits & -1L << index;
+            return bits == 0 ? -1 : (pid & ~MASK) | Long.numberOfTrailingZeros(bits);
+        }
+        var child = node.children[index];
+        if (child != null) {
+            int found = ceiling(child, pid);
+            if (found >= 0) {
+                return found;
+            }
+        }
+        // otherwise the lowest PID of the closest higher child
+        long higher = index == MASK ? 0 : node.bits & -1L << (index + 1);
+        if (higher == 0) {
+            return -1;
+        }
+        int next = Long.numberOfTrailingZeros(higher);
+        return lowest(node.children[next], prefix(pid, node.shift) | next << node.shift);
+    }
+
+    private static int highest(Node node, int base) {
+        while (node.shift != 0) {
+            int index = 63 - Long.numberOfLeadingZeros(node.bits);
+            base |= index << node.shift;
+            node = node.children[index];
+        }
+        return base | 63 - Long.numberOfLeadingZeros(node.bits);
+    }
+
+    private static int lowest(Node node, int base) {
+        while (node.shift != 0) {
+            int index = Long.numberOfTrailingZeros(node.bits);
+            base |= index << node.shift;
+            node = node.children[index];
+        }
+        return base | Long.numberOfTrailingZeros(node.bits);
+    }
+
+    // the bits of the PID above the ones a node at this shift tells apart
+    private static int prefix(int pid, int shift) {
+        return (int) (pid & ~((1L << (shift + BITS)) - 1));
+    }
+
+    private static final class Node {
+        // the position of the 6 bits of the PID this node tells apart, 0 for a leaf
+        final int shift;
+        long bits;
+        final Node[] children;
+
+        Node(int shift) {
+            this.shift = shift;
+            this.children = shift == 0 ? null : new Node[1 << BITS];
+        }
+    }
+}
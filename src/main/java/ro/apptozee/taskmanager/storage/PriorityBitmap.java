@@ -0,0 +1,87 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.vo.Priority;
+
+/*
+  Occupancy bitmap of the priority levels in two tiers: a bit per level, grouped in words of 64 levels, and a summary word
+  with a bit per non empty word. The lowest or highest non empty level, at or after a given one, is found with a couple
+  of bit scans whatever the number of levels (up to 64 * 64), so walking the non empty levels never visits the empty ones.
+ */
+public final class PriorityBitmap {
+
+    private final long[] words = new long[(Priority.LEVELS + 63) / 64];
+    private long summary;
+
+    public void set(int level) {
+        words[level >>> 6] |= 1L << level;
+        summary |= 1L << (level >>> 6);
+    }
+
+    public void clear(int level) {
+        int word = level >>> 6;
+        words[word] &= ~(1L << level);
+        if (words[word] == 0) {
+            summary &= ~(1L << word);
+        }
+    }
+
+    public void clearAll() {
+        for (long word = summary; word != 0; word &= word - 1) {
+            words[Long.numberOfTrailingZeros(word)] = 0;
+        }
+        summary = 0;
+    }
+
+    public boolean isEmpty() {
+        return summary == 0;
+    }
+
+    public boolean contains(int level) {
+        return (words[level >>> 6] & 1L << level) != 0;
+    }
+
+    // -1 if there is none
+    public int lowest() {
+        return next(0);
+    }
+
+    public int highest() {
+        return previous(Priority.LEVELS - 1);
+    }
+
+    // the lowest non empty level at or above the given one, -1 if there is none
+    public int next(int level) {
+        if (level >= Priority.LEVELS) {
+            return -1;
+        }
+        int word = level >>> 6;
+        long bits = words[word] & -1L << level;
+        if (bits == 0) {
+            long next = word + 1 < 64 ? summary & -1L << (word + 1) : 0;
+            if (next == 0) {
+                return -1;
+            }
+            word = Long.numberOfTrailingZeros(next);
+            bits = words[word];
+        }
+        return word << 6 | Long.numberOfTrailingZeros(bits);
+    }
+
+    // the highest non empty level at or below the given one, -1 if there is none
+    public int previous(int level) {
+        if (level < 0) {
+            return -1;
+        }
+        int word = level >>> 6;
+        long bits = words[word] & -1L >>> (63 - (level & 63));
+        if (bits == 0) {
+            long previous = summary & (1L << word) - 1;
+            if (previous == 0) {
+                return -1;
+            }
+            word = 63 - Long.numberOfLeadingZeros(previous);
+            bits = words[word];
+        }
+        return word << 6 | 63 - Long.numberOfLeadingZeros(bits);
+    }
+}
@@ -0,0 +1,70 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/*
+  The tasks of a single priority together with the lock that guards them.
+  The tasks are kept in FIFO order, each with the sequence number of its insertion so that the FIFO order across
+  stripes can be rebuilt.
+ */
+public final class PriorityStripe {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock(true);
+
+    // replaced instead of cleared by removeAll
+    private LinkedHashMap<PID, Entry> tasks = new LinkedHashMap<>();
+
+    public ReadWriteLock lock() {
+        return lock;
+    }
+
+    public int size() {
+        return tasks.size();
+    }
+
+    public void add(long sequence, Task task) {
+        tasks.put(task.pid(), new Entry(sequence, task));
+    }
+
+    // removes the task only if it is tracked, a recycled PID could belong to a newer task
+    public boolean remove(Task task) {
+        var entry = tasks.get(task.pid());
+        if (entry == null || !entry.task().equals(task)) {
+            return false;
+        }
+        tasks.remove(task.pid());
+        return true;
+    }
+
+    // null if the stripe is empty
+    public Task pollOldest() {
+        if (tasks.isEmpty()) {
+            return null;
+        }
+        var it = tasks.values().iterator();
+        var task = it.next().task();
+        it.remove();
+        return task;
+    }
+
+    // the removed tasks in FIFO order, read from the detached map once the lock was released
+    public Iterable<Task> removeAll() {
+        var removed = tasks.values();
+        tasks = new LinkedHashMap<>();
+        return () -> removed.stream().map(Entry::task).iterator();
+    }
+
+    // in FIFO order
+    public Collection<Entry> entries() {
+        return tasks.values();
+    }
+
+    public record Entry(long sequence, Task task) {
+    }
+}
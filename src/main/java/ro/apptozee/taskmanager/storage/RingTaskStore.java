@@ -0,0 +1,326 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.views.RingTasksView;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/*
+  Task store specialized for the FIFO strategy: the tasks are kept in insertion order in a preallocated circular array.
+  Once the task manager is full every add evicts the oldest task, which is a head and a tail move with no allocation.
+
+  A task killed out of order leaves a tombstone (null slot) behind, skipped by the readers. The ring has room for at least
+  twice the capacity, so it only has to be compacted after at least capacity tombstones (amortized O(1) per kill).
+
+  The other orders are not indexed, their views sort a copy in FIFO order. By PID it is close to O(n) because the FIFO order
+  is made of a few PID sorted runs (TimSort merges the runs), by priority a counting sort places every level in one pass.
+
+  removeAll hands the ring over as the removed tasks and starts from new arrays, it does not touch a single task. removeAll
+  by priority is still a pass over the ring, the priorities are not indexed.
+ */
+public class RingTaskStore implements TaskStore {
+
+    private static final int NIL = -1;
+
+    // replaced instead of cleared by removeAll
+    private Task[] slots;
+    private final int mask;
+
+    // head and tail only grow (and overflow), the slot is position & mask
+    private int head;
+    private int tail;
+    private int size;
+
+    // PID -> slot hash index, chained through the slots and hashed by identity like in CompactTaskStore. The buckets and
+    // the chains hold the slot + 1, so that a zeroed array is an empty index and removeAll only has to replace it
+    private int[] buckets;
+    private final int[] bucketNext;
+    private final int bucketMask;
+
+    public RingTaskStore(int capacity, TaskManager owner) {
+        int length = Integer.highestOneBit(capacity) << 1;
+        if (length < 2 * capacity) {
+            length <<= 1;
+        }
+        if (length <= 0) {
+            throw new IllegalArgumentException("Capacity too large for a ring: " + capacity);
+        }
+        slots = new Task[length];
+        mask = length - 1;
+        bucketNext = new int[length];
+        buckets = new int[Integer.highestOneBit(capacity) << 1];
+        bucketMask = buckets.length - 1;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public void add(Task task) {
+        if (tail - head == slots.length) {
+            compact();
+        }
+        int slot = tail & mask;
+        slots[slot] = task;
+        tail++;
+        size++;
+        int bucket = task.pid().pid() & bucketMask;
+        bucketNext[slot] = buckets[bucket];
+        buckets[bucket] = slot + 1;
+    }
+
+    @Override
+    public boolean remove(Task task) {
+        int slot = find(task);
+        // a recycled PID could belong to a newer task
+        if (slot == NIL) {
+            return false;
+        }
+        // leave a tombstone, the head skips it lazily
+        clear(slot);
+        return true;
+    }
+
+    @Override
+    public Iterable<Task> removeAll() {
+        // the old ring is only read once the write lock is released, nothing writes to it anymore
+        var removed = detached(slots, head, tail);
+        slots = new Task[slots.length];
+        buckets = new int[buckets.length];
+        head = tail;
+        size = 0;
+        return removed;
+    }
+
+    @Override
+    public List<Task> removeAll(Priority priority) {
+        var removed = new ArrayList<Task>();
+        for (int position = head; position != tail; position++) {
+            var task = slots[position & mask];
+            if (task != null && task.priority() == priority) {
+                removed.add(task);
+                clear(position & mask);
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public Task pollOldest() {
+        skipTombstones();
+        if (size == 0) {
+            return null;
+        }
+        int slot = head & mask;
+        var task = slots[slot];
+        clear(slot);
+        head++;
+        return task;
+    }
+
+    @Override
+    public Task pollOldestBelow(Priority priority) {
+        // not the use case of this store: the oldest task of the lowest priority needs a full traversal
+        Task victim = null;
+        for (int position = head; position != tail; position++) {
+            var task = slots[position & mask];
+            if (task != null && task.priority().getNumericalPriority() < priority.getNumericalPriority()
+                    && (victim == null || task.priority().getNumericalPriority() < victim.priority().getNumericalPriority())) {
+                victim = task;
+            }
+        }
+        if (victim != null) {
+            remove(victim);
+        }
+        return victim;
+    }
+
+    @Override
+    public TasksView view(SortCriteria sortCriteria, SortOrder sortOrder) {
+        return new RingTasksView(this, sortCriteria, sortOrder);
+    }
+
+    public void forEach(SortCriteria sortCriteria, SortOrder sortOrder, Consumer<Task> consumer) {
+        visit(sortCriteria, sortOrder, task -> {
+            consumer.accept(task);
+            return true;
+        });
+    }
+
+    // walks the tasks while the visitor returns true
+    public void visit(SortCriteria sortCriteria, SortOrder sortOrder, Predicate<Task> visitor) {
+        boolean ascending = sortOrder == SortOrder.ASCENDING;
+        switch (sortCriteria) {
+            case FIFO -> visitFIFO(ascending, visitor);
+            case PID -> {
+                var sorted = sortedCopy(Task.BY_PID_COMP);
+                for (int i = 0; i < sorted.length; i++) {
+                    if (!visitor.test(sorted[ascending ? i : sorted.length - 1 - i])) {
+                        return;
+                    }
+                }
+            }
+            case PRIORITY -> visitByPriority(ascending, visitor);
+            default -> throw new UnsupportedOperationException(sortCriteria + " not implemented");
+        }
+    }
+
+    /*
+      A stable counting sort by level: one pass over the ring counts the tasks of every level, one places them after the
+      tasks of the lower levels, O(n + levels) instead of O(n lg(n)). The priorities are reversed, the tasks inside a
+      priority keep the FIFO order.
+     */
+    private void visitByPriority(boolean ascending, Predicate<Task> visitor) {
+        // start[level] is the index of the first task of the level in sorted, start[level + 1] the end
+        var start = new int[Priority.LEVELS + 1];
+        for (int position = head; position != tail; position++) {
+            var task = slots[position & mask];
+            if (task != null) {
+                start[task.priority().rank() + 1]++;
+            }
+        }
+        for (int level = 0; level < Priority.LEVELS; level++) {
+            start[level + 1] += start[level];
+        }
+        var sorted = new Task[size];
+        var next = Arrays.copyOf(start, Priority.LEVELS);
+        for (int position = head; position != tail; position++) {
+            var task = slots[position & mask];
+            if (task != null) {
+                sorted[next[task.priority().rank()]++] = task;
+            }
+        }
+        for (int i = 0; i < Priority.LEVELS; i++) {
+            int level = ascending ? i : Priority.LEVELS - 1 - i;
+            for (int index = start[level]; index < start[level + 1]; index++) {
+                if (!visitor.test(sorted[index])) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // the tasks in FIFO order, sorted
+    private Task[] sortedCopy(Comparator<Task> comparator) {
+        var sorted = new Task[size];
+        int i = 0;
+        for (int position = head; position != tail; position++) {
+            var task = slots[position & mask];
+            if (task != null) {
+                sorted[i++] = task;
+            }
+        }
+        Arrays.sort(sorted, comparator);
+        return sorted;
+    }
+
+    // the slots are walked in place, stopping as soon as the visitor returns false
+    private void visitFIFO(boolean ascending, Predicate<Task> visitor) {
+        if (ascending) {
+            for (int position = head; position != tail; position++) {
+                var task = slots[position & mask];
+                if (task != null && !visitor.test(task)) {
+                    return;
+                }
+            }
+        } else {
+            for (int position = tail - 1; position != head - 1; position--) {
+                var task = slots[position & mask];
+                if (task != null && !visitor.test(task)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    // the tasks of the positions between from and to of the ring, in FIFO order
+    private Iterable<Task> detached(Task[] ring, int from, int to) {
+        return () -> new Iterator<>() {
+            private int position = skip(from);
+
+            @Override
+            public boolean hasNext() {
+                return position != to;
+            }
+
+            @Override
+            public Task next() {
+                if (position == to) {
+                    throw new NoSuchElementException();
+                }
+                var task = ring[position & mask];
+                position = skip(position + 1);
+                return task;
+            }
+
+            private int skip(int position) {
+                while (position != to && ring[position & mask] == null) {
+                    position++;
+                }
+                return position;
+            }
+        };
+    }
+
+    private void skipTombstones() {
+        while (head != tail && slots[head & mask] == null) {
+            head++;
+        }
+    }
+
+    // the ring is full of tasks and tombstones, move the tasks next to each other and index them again
+    private void compact() {
+        int write = head;
+        for (int read = head; read != tail; read++) {
+            var task = slots[read & mask];
+            if (task != null) {
+                slots[read & mask] = null;
+                slots[write & mask] = task;
+                write++;
+            }
+        }
+        tail = write;
+        Arrays.fill(buckets, 0);
+        for (int position = head; position != tail; position++) {
+            int slot = position & mask;
+            int bucket = slots[slot].pid().pid() & bucketMask;
+            bucketNext[slot] = buckets[bucket];
+            buckets[bucket] = slot + 1;
+        }
+    }
+
+    // NIL if the task is not in the ring
+    private int find(Task task) {
+        int next = buckets[task.pid().pid() & bucketMask];
+        while (next != 0 && !task.equals(slots[next - 1])) {
+            next = bucketNext[next - 1];
+        }
+        return next - 1;
+    }
+
+    private void clear(int slot) {
+        int bucket = slots[slot].pid().pid() & bucketMask;
+        if (buckets[bucket] == slot + 1) {
+            buckets[bucket] = bucketNext[slot];
+        } else {
+            int previous = buckets[bucket] - 1;
+            while (bucketNext[previous] != slot + 1) {
+                previous = bucketNext[previous] - 1;
+            }
+            bucketNext[previous] = bucketNext[slot];
+        }
+        slots[slot] = null;
+        size--;
+    }
+}
@@ -0,0 +1,152 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Optional;
+
+/*
+  Immutable snapshot of all the tasks of a task manager.
+  Every modification returns a new Storage that shares most of its structure with the previous one (O(lg(n)) new
+  nodes per index), so a reader holding on to an instance always sees a consistent view of all the indexes.
+ */
+public final class Storage {
+
+    private static final Storage EMPTY = new Storage(0,
+            PersistentSortedMap.empty(),
+            PersistentSortedMap.empty(),
+            PersistentSortedMap.empty(Priority.BY_PRIORITY));
+
+    // PIDs are not guaranteed to follow the insertion order, so we keep our own insertion sequence
+    private final long nextSequence;
+
+    private final PersistentSortedMap<Long, Task> fifo;
+
+    private final PersistentSortedMap<PID, Entry> byPID;
+
+    private final PersistentSortedMap<Priority, PersistentSortedMap<Long, Task>> byPriority;
+
+    private Storage(long nextSequence,
+                    PersistentSortedMap<Long, Task> fifo,
+                    PersistentSortedMap<PID, Entry> byPID,
+                    PersistentSortedMap<Priority, PersistentSortedMap<Long, Task>> byPriority) {
+        this.nextSequence = nextSequence;
+        this.fifo = fifo;
+        this.byPID = byPID;
+        this.byPriority = byPriority;
+    }
+
+    public static Storage empty() {
+        return EMPTY;
+    }
+
+    public int size() {
+        return fifo.size();
+    }
+
+    public int count(Priority priority) {
+        var bucket = byPriority.get(priority);
+        return bucket == null ? 0 : bucket.size();
+    }
+
+    // indexed by the level of the priority
+    public int[] counts() {
+        var counts = new int[Priority.LEVELS];
+        byPriority.forEachValue(false, bucket -> {
+            // the buckets emptied by the removals are kept
+            var task = bucket.firstValue();
+            if (task != null) {
+                counts[task.priority().rank()] = bucket.size();
+            }
+        });
+        return counts;
+    }
+
+    public boolean contains(Task task) {
+        // a recycled PID could belong to a newer task
+        var entry = byPID.get(task.pid());
+        return entry != null && entry.task().equals(task);
+    }
+
+    public Storage add(Task task) {
+        long sequence = nextSequence;
+        var bucket = byPriority.get(task.priority());
+        if (bucket == null) {
+            bucket = PersistentSortedMap.empty();
+        }
+        return new Storage(sequence + 1,
+                fifo.put(sequence, task),
+                byPID.put(task.pid(), new Entry(sequence, task)),
+                byPriority.put(task.priority(), bucket.put(sequence, task)));
+    }
+
+    public Storage remove(Task task) {
+        var entry = byPID.get(task.pid());
+        // a recycled PID could belong to a newer task
+        if (entry == null || !entry.task().equals(task)) {
+            return this;
+        }
+        var priority = entry.task().priority();
+        return new Storage(nextSequence,
+                fifo.remove(entry.sequence()),
+                byPID.remove(task.pid()),
+                // we are guaranteed the bucket exists
+                byPriority.put(priority, byPriority.get(priority).remove(entry.sequence())));
+    }
+
+    public Storage removeByPriority(Priority priority) {
+        var bucket = byPriority.get(priority);
+        if (bucket == null || bucket.isEmpty()) {
+            return this;
+        }
+        // o(k lg(n)) where k is the number of tasks with the given priority
+        var newFIFO = fifo;
+        var newByPID = byPID;
+        for (var it = bucket.valuesIterator(false); it.hasNext(); ) {
+            var task = it.next();
+            newFIFO = newFIFO.remove(byPID.get(task.pid()).sequence());
+            newByPID = newByPID.remove(task.pid());
+        }
+        return new Storage(nextSequence, newFIFO, newByPID, byPriority.put(priority, bucket.clear()));
+    }
+
+    public Storage clear() {
+        // keep the sequence monotonic even across a kill all
+        return new Storage(nextSequence, fifo.clear(), byPID.clear(), EMPTY.byPriority);
+    }
+
+    public Optional<Task> oldest() {
+        return Optional.ofNullable(fifo.firstValue());
+    }
+
+    public Optional<Task> oldestBelow(Priority priority) {
+        // there are only a handful of priorities, so a linear scan of the buckets is fine
+        for (var it = byPriority.valuesIterator(false); it.hasNext(); ) {
+            var candidate = it.next().firstValue();
+            if (candidate == null) {
+                continue;
+            }
+            if (candidate.priority().getNumericalPriority() >= priority.getNumericalPriority()) {
+                break;
+            }
+            return Optional.of(candidate);
+        }
+        return Optional.empty();
+    }
+
+    public PersistentSortedMap<Long, Task> orderedFIFOView() {
+        return fifo;
+    }
+
+    public PersistentSortedMap<PID, Entry> orderedPIDView() {
+        return byPID;
+    }
+
+    public PersistentSortedMap<Priority, PersistentSortedMap<Long, Task>> orderedPriorityView() {
+        return byPriority;
+    }
+
+    public record Entry(long sequence, Task task) {
+    }
+}
@@ -0,0 +1,57 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.vo.Task;
+
+/*
+  A single node per task, linked at the same time in the FIFO chain, the chain of its priority and the PID chain.
+  The links are only modified by LinkedTaskStore, the views only walk them.
+ */
+public final class TaskNode {
+
+    final Task task;
+
+    // the order of insertion, across several stores when they share a counter
+    final long sequence;
+
+    TaskNode fifoPrevious;
+    TaskNode fifoNext;
+
+    TaskNode priorityPrevious;
+    TaskNode priorityNext;
+
+    TaskNode pidPrevious;
+    TaskNode pidNext;
+
+    TaskNode(Task task, long sequence) {
+        this.task = task;
+        this.sequence = sequence;
+    }
+
+    public Task task() {
+        return task;
+    }
+
+    public long sequence() {
+        return sequence;
+    }
+
+    public TaskNode fifoPrevious() {
+        return fifoPrevious;
+    }
+
+    public TaskNode fifoNext() {
+        return fifoNext;
+    }
+
+    public TaskNode priorityNext() {
+        return priorityNext;
+    }
+
+    public TaskNode pidPrevious() {
+        return pidPrevious;
+    }
+
+    public TaskNode pidNext() {
+        return pidNext;
+    }
+}
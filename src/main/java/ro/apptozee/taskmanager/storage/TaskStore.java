@@ -0,0 +1,48 @@
+package ro.apptozee.taskmanager.storage;
+
+import ro.apptozee.taskmanager.TaskManager;
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.SortOrder;
+import ro.apptozee.taskmanager.vo.Task;
+import ro.apptozee.taskmanager.vo.TaskQuery;
+
+/*
+  Mutable storage of the tasks of a BaseTaskManager, it keeps the FIFO, PID and priority orders.
+  It is not thread safe: modifications happen under the write lock of the task manager and views are used under the read lock.
+ */
+public interface TaskStore {
+
+    int size();
+
+    void add(Task task);
+
+    // removes the task only if it is tracked, a recycled PID could belong to a newer task (told apart by its generation)
+    boolean remove(Task task);
+
+    // the removed tasks in FIFO order, iterated after the write lock was released (a store can hand over what it detached)
+    Iterable<Task> removeAll();
+
+    Iterable<Task> removeAll(Priority priority);
+
+    // removes the oldest task, null if the store is empty (the eviction path of a full FIFO task manager)
+    Task pollOldest();
+
+    // removes the oldest task of the lowest priority strictly below the given one
+    // returns null instead of an empty optional because this is the eviction path of a full task manager
+    Task pollOldestBelow(Priority priority);
+
+    TasksView view(SortCriteria sortCriteria, SortOrder sortOrder);
+
+    // the tasks of the view selected by the query, the stores with indexes only walk the part of the view that can match
+    default TasksView query(TaskQuery query) {
+        return consumer -> view(query.sortCriteria(), query.sortOrder()).list(query.filter(consumer));
+    }
+
+    @FunctionalInterface
+    interface Factory {
+        // the owner is the task manager referenced by the tasks, for stores that do not keep the Task instances
+        TaskStore create(int capacity, TaskManager owner);
+    }
+}
@@ -0,0 +1,32 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class ArrayTasksView implements TasksView {
+    // already in the order of the view, never modified
+    private final Task[] tasks;
+
+    public ArrayTasksView(Task[] tasks) {
+        this.tasks = tasks;
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        for (var task : tasks) {
+            consumer.accept(task);
+        }
+    }
+
+    @Override
+    public void visit(Predicate<Task> visitor) {
+        for (var task : tasks) {
+            if (!visitor.test(task)) {
+                return;
+            }
+        }
+    }
+}
@@ -1,34 +1,47 @@
 package ro.apptozee.taskmanager.views;
 
 import ro.apptozee.taskmanager.TasksView;
-import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.storage.TaskNode;
 import ro.apptozee.taskmanager.vo.SortOrder;
 import ro.apptozee.taskmanager.vo.Task;
 
-import java.util.Collections;
-import java.util.LinkedHashMap;
-import java.util.Map;
 import java.util.function.Consumer;
-import java.util.stream.Collectors;
+import java.util.function.Predicate;
 
 public class FIFOTasksView implements TasksView {
-    private final LinkedHashMap<PID, Task> tasks;
+    private final TaskNode oldest;
+    private final TaskNode newest;
     private final SortOrder sortOrder;
 
-    public FIFOTasksView(LinkedHashMap<PID, Task> tasks, SortOrder sortOrder) {
-        this.tasks = tasks;
+    public FIFOTasksView(TaskNode oldest, TaskNode newest, SortOrder sortOrder) {
+        this.oldest = oldest;
+        this.newest = newest;
         this.sortOrder = sortOrder;
     }
 
     @Override
     public void list(Consumer<Task> consumer) {
+        visit(task -> {
+            consumer.accept(task);
+            return true;
+        });
+    }
+
+    @Override
+    public void visit(Predicate<Task> visitor) {
+        // the chain is doubly linked, so both orders are a simple walk
         if (sortOrder == SortOrder.ASCENDING) {
-            tasks.entrySet().stream().map(Map.Entry::getValue).forEach(consumer);
+            for (var node = oldest; node != null; node = node.fifoNext()) {
+                if (!visitor.test(node.task())) {
+                    return;
+                }
+            }
         } else {
-            // can not do any better than this without accessing internal state unfortunately (since we do not have descending iterators)
-            var reversed = tasks.entrySet().stream().map(Map.Entry::getValue).collect(Collectors.toList());
-            Collections.reverse(reversed);
-            reversed.stream().forEach(consumer);
+            for (var node = newest; node != null; node = node.fifoPrevious()) {
+                if (!visitor.test(node.task())) {
+                    return;
+                }
+            }
         }
     }
 }
@@ -0,0 +1,43 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.MarkedTask;
+import ro.apptozee.taskmanager.storage.PriorityBitmap;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.SortOrder;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Collection;
+import java.util.function.Consumer;
+
+public class MarkedPriorityTasksView implements TasksView {
+    private final Collection<MarkedTask> tasks;
+    private final SortOrder sortOrder;
+
+    public MarkedPriorityTasksView(Collection<MarkedTask> tasks, SortOrder sortOrder) {
+        this.tasks = tasks;
+        this.sortOrder = sortOrder;
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        // there is no concurrent index by priority, so we do one FIFO traversal per level in use (found by a first one)
+        // O(p*n) but without any extra space, p being the (usually small) number of levels in use
+        var levels = new PriorityBitmap();
+        for (var markedTask : tasks) {
+            if (!markedTask.isDeleted()) {
+                levels.set(markedTask.task().priority().rank());
+            }
+        }
+        boolean ascending = sortOrder == SortOrder.ASCENDING;
+        for (int level = ascending ? levels.lowest() : levels.highest(); level >= 0;
+             level = ascending ? levels.next(level + 1) : levels.previous(level - 1)) {
+            var priority = Priority.of(level);
+            for (var markedTask : tasks) {
+                if (!markedTask.isDeleted() && markedTask.task().priority() == priority) {
+                    consumer.accept(markedTask.task());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.MarkedTask;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+
+public class MarkedTasksView implements TasksView {
+    // already positioned in the requested order
+    private final Iterator<MarkedTask> tasks;
+
+    public MarkedTasksView(Iterator<MarkedTask> tasks) {
+        this.tasks = tasks;
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        // weakly consistent: tasks killed or added during the traversal may or may not be seen
+        while (tasks.hasNext()) {
+            var markedTask = tasks.next();
+            if (!markedTask.isDeleted()) {
+                consumer.accept(markedTask.task());
+            }
+        }
+    }
+}
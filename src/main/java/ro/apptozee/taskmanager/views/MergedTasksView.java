@@ -0,0 +1,81 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.TaskNode;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.SortOrder;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/*
+  k-way merge of runs that are already sorted (one per shard): only the current node of every run is kept in a heap,
+  so listing n tasks from k runs is O(n lg(k)) without any temporary collection of the tasks
+ */
+public class MergedTasksView implements TasksView {
+    private static final Comparator<TaskNode> BY_SEQUENCE = Comparator.comparingLong(TaskNode::sequence);
+    private static final Comparator<TaskNode> BY_PID = Comparator.comparing(node -> node.task().pid());
+    private static final Comparator<TaskNode> BY_RANK = Comparator.comparingInt(node -> node.task().priority().rank());
+
+    private final List<Iterator<TaskNode>> runs;
+    private final Comparator<TaskNode> comparator;
+
+    public MergedTasksView(List<Iterator<TaskNode>> runs, SortCriteria sortCriteria, SortOrder sortOrder) {
+        this.runs = runs;
+        this.comparator = comparator(sortCriteria, sortOrder);
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        visit(task -> {
+            consumer.accept(task);
+            return true;
+        });
+    }
+
+    @Override
+    public void visit(Predicate<Task> visitor) {
+        var heads = new PriorityQueue<Run>(Math.max(1, runs.size()), (a, b) -> comparator.compare(a.head, b.head));
+        for (var run : runs) {
+            if (run.hasNext()) {
+                heads.add(new Run(run));
+            }
+        }
+        while (!heads.isEmpty()) {
+            var run = heads.poll();
+            if (!visitor.test(run.head.task())) {
+                return;
+            }
+            if (run.nodes.hasNext()) {
+                run.head = run.nodes.next();
+                heads.add(run);
+            }
+        }
+    }
+
+    private static Comparator<TaskNode> comparator(SortCriteria sortCriteria, SortOrder sortOrder) {
+        boolean ascending = sortOrder == SortOrder.ASCENDING;
+        return switch (sortCriteria) {
+            case FIFO -> ascending ? BY_SEQUENCE : BY_SEQUENCE.reversed();
+            case PID -> ascending ? BY_PID : BY_PID.reversed();
+            // the priorities are reversed, the tasks inside a priority keep the FIFO order
+            case PRIORITY -> (ascending ? BY_RANK : BY_RANK.reversed()).thenComparing(BY_SEQUENCE);
+            default -> throw new UnsupportedOperationException(sortCriteria + " not implemented");
+        };
+    }
+
+    private static final class Run {
+        final Iterator<TaskNode> nodes;
+        TaskNode head;
+
+        Run(Iterator<TaskNode> nodes) {
+            this.nodes = nodes;
+            this.head = nodes.next();
+        }
+    }
+}
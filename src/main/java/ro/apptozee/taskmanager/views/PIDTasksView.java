@@ -1,30 +1,47 @@
 package ro.apptozee.taskmanager.views;
 
 import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.TaskNode;
 import ro.apptozee.taskmanager.vo.SortOrder;
 import ro.apptozee.taskmanager.vo.Task;
 
-import java.util.Spliterators;
-import java.util.TreeSet;
 import java.util.function.Consumer;
-import java.util.stream.StreamSupport;
+import java.util.function.Predicate;
 
 public class PIDTasksView implements TasksView {
     private final SortOrder sortOrder;
-    private final TreeSet<Task> tasks;
+    private final TaskNode lowest;
+    private final TaskNode highest;
 
-    public PIDTasksView(TreeSet<Task> tasks,SortOrder sortOrder) {
+    public PIDTasksView(TaskNode lowest, TaskNode highest, SortOrder sortOrder) {
         this.sortOrder = sortOrder;
-        this.tasks = tasks;
+        this.lowest = lowest;
+        this.highest = highest;
     }
 
 
     @Override
     public void list(Consumer<Task> consumer) {
+        visit(task -> {
+            consumer.accept(task);
+            return true;
+        });
+    }
+
+    @Override
+    public void visit(Predicate<Task> visitor) {
         if (sortOrder == SortOrder.ASCENDING) {
-            StreamSupport.stream(Spliterators.spliteratorUnknownSize(tasks.iterator(), 0), false).forEach(consumer);
+            for (var node = lowest; node != null; node = node.pidNext()) {
+                if (!visitor.test(node.task())) {
+                    return;
+                }
+            }
         } else {
-            StreamSupport.stream(Spliterators.spliteratorUnknownSize(tasks.descendingIterator(), 0), false).forEach(consumer);;
+            for (var node = highest; node != null; node = node.pidPrevious()) {
+                if (!visitor.test(node.task())) {
+                    return;
+                }
+            }
         }
     }
 }
@@ -1,30 +1,45 @@
 package ro.apptozee.taskmanager.views;
 
 import ro.apptozee.taskmanager.TasksView;
-import ro.apptozee.taskmanager.vo.PID;
-import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.storage.PriorityBitmap;
+import ro.apptozee.taskmanager.storage.TaskNode;
 import ro.apptozee.taskmanager.vo.SortOrder;
 import ro.apptozee.taskmanager.vo.Task;
 
-import java.util.Map;
-import java.util.TreeMap;
 import java.util.function.Consumer;
+import java.util.function.Predicate;
 
 public class PriorityTasksView implements TasksView {
-    private final TreeMap<Priority, Map<PID, Task>> tasks;
+    // the oldest task of every level, indexed by the level (null for an empty level)
+    private final TaskNode[] heads;
+    private final PriorityBitmap nonEmptyLevels;
     private final SortOrder sortOrder;
 
-    public PriorityTasksView(TreeMap<Priority, Map<PID, Task>> tasks, SortOrder sortOrder) {
-        this.tasks = tasks;
+    public PriorityTasksView(TaskNode[] heads, PriorityBitmap nonEmptyLevels, SortOrder sortOrder) {
+        this.heads = heads;
+        this.nonEmptyLevels = nonEmptyLevels;
         this.sortOrder = sortOrder;
     }
 
     @Override
     public void list(Consumer<Task> consumer) {
-        if (sortOrder == SortOrder.ASCENDING) {
-             tasks.entrySet().stream().flatMap(kv->kv.getValue().values().stream()).forEach(consumer);
-        } else {
-             tasks.descendingMap().entrySet().stream().flatMap(kv->kv.getValue().values().stream()).forEach(consumer);
+        visit(task -> {
+            consumer.accept(task);
+            return true;
+        });
+    }
+
+    @Override
+    public void visit(Predicate<Task> visitor) {
+        // the priorities are reversed, the tasks inside a priority keep the FIFO order, the empty levels are skipped
+        boolean ascending = sortOrder == SortOrder.ASCENDING;
+        for (int level = ascending ? nonEmptyLevels.lowest() : nonEmptyLevels.highest(); level >= 0;
+             level = ascending ? nonEmptyLevels.next(level + 1) : nonEmptyLevels.previous(level - 1)) {
+            for (var node = heads[level]; node != null; node = node.priorityNext()) {
+                if (!visitor.test(node.task())) {
+                    return;
+                }
+            }
         }
     }
 }
@@ -0,0 +1,50 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.TaskNode;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.Task;
+import ro.apptozee.taskmanager.vo.TaskQuery;
+
+import java.util.Iterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/*
+  Applies a query to the candidates of an index, in the order of the view: the walk stops as soon as the limit is reached
+  and, when the candidates are sorted by PID (starting inside the PID range), at the first PID past the range.
+ */
+public class QueryTasksView implements TasksView {
+    private final Supplier<Iterator<TaskNode>> candidates;
+    private final TaskQuery query;
+
+    public QueryTasksView(Supplier<Iterator<TaskNode>> candidates, TaskQuery query) {
+        this.candidates = candidates;
+        this.query = query;
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        boolean byPID = query.sortCriteria() == SortCriteria.PID;
+        int skipped = 0;
+        int listed = 0;
+        for (var nodes = candidates.get(); listed < query.limit() && nodes.hasNext(); ) {
+            var task = nodes.next().task();
+            if (!query.matchesPID(task.pid())) {
+                if (byPID) {
+                    return;
+                }
+                continue;
+            }
+            if (!query.matchesPriority(task.priority())) {
+                continue;
+            }
+            if (skipped < query.offset()) {
+                skipped++;
+                continue;
+            }
+            consumer.accept(task);
+            listed++;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.RingTaskStore;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.SortOrder;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+public class RingTasksView implements TasksView {
+    private final RingTaskStore tasks;
+    private final SortCriteria sortCriteria;
+    private final SortOrder sortOrder;
+
+    public RingTasksView(RingTaskStore tasks, SortCriteria sortCriteria, SortOrder sortOrder) {
+        this.tasks = tasks;
+        this.sortCriteria = sortCriteria;
+        this.sortOrder = sortOrder;
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        // the store knows how to walk its ring for every order
+        tasks.forEach(sortCriteria, sortOrder, consumer);
+    }
+
+    @Override
+    public void visit(Predicate<Task> visitor) {
+        // stops walking as soon as the visitor does
+        tasks.visit(sortCriteria, sortOrder, visitor);
+    }
+}
@@ -0,0 +1,25 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.PersistentSortedMap;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.SortOrder;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.function.Consumer;
+
+public class SnapshotPriorityTasksView implements TasksView {
+    private final PersistentSortedMap<Priority, PersistentSortedMap<Long, Task>> tasks;
+    private final SortOrder sortOrder;
+
+    public SnapshotPriorityTasksView(PersistentSortedMap<Priority, PersistentSortedMap<Long, Task>> tasks, SortOrder sortOrder) {
+        this.tasks = tasks;
+        this.sortOrder = sortOrder;
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        // same semantics as PriorityTasksView: the priorities are reversed, the tasks inside a priority keep the FIFO order
+        tasks.forEachValue(sortOrder == SortOrder.DESCENDING, bucket -> bucket.forEachValue(false, consumer));
+    }
+}
@@ -0,0 +1,27 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.PersistentSortedMap;
+import ro.apptozee.taskmanager.vo.SortOrder;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+public class SnapshotTasksView<V> implements TasksView {
+    private final PersistentSortedMap<?, V> tasks;
+    private final Function<V, Task> toTask;
+    private final SortOrder sortOrder;
+
+    public SnapshotTasksView(PersistentSortedMap<?, V> tasks, Function<V, Task> toTask, SortOrder sortOrder) {
+        this.tasks = tasks;
+        this.toTask = toTask;
+        this.sortOrder = sortOrder;
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        // the map is immutable so there is nothing to lock, we simply walk the tree in the requested order
+        tasks.forEachValue(sortOrder == SortOrder.DESCENDING, value -> consumer.accept(toTask.apply(value)));
+    }
+}
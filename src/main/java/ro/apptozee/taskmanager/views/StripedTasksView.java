@@ -0,0 +1,72 @@
+package ro.apptozee.taskmanager.views;
+
+import ro.apptozee.taskmanager.TasksView;
+import ro.apptozee.taskmanager.storage.PriorityStripe;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.SortOrder;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.function.Consumer;
+
+public class StripedTasksView implements TasksView {
+    private static final Comparator<PriorityStripe.Entry> BY_SEQUENCE = Comparator.comparingLong(PriorityStripe.Entry::sequence);
+
+    // the stripes of the levels in use, ascending
+    private final PriorityStripe[] stripes;
+    private final SortCriteria sortCriteria;
+    private final SortOrder sortOrder;
+
+    public StripedTasksView(PriorityStripe[] stripes, SortCriteria sortCriteria, SortOrder sortOrder) {
+        this.stripes = stripes;
+        this.sortCriteria = sortCriteria;
+        this.sortOrder = sortOrder;
+    }
+
+    @Override
+    public void list(Consumer<Task> consumer) {
+        boolean ascending = sortOrder == SortOrder.ASCENDING;
+        switch (sortCriteria) {
+            case FIFO -> {
+                // every stripe is already in FIFO order, so sorting by sequence only merges a handful of runs
+                var entries = gather();
+                Arrays.sort(entries, BY_SEQUENCE);
+                for (int i = 0; i < entries.length; i++) {
+                    consumer.accept(entries[ascending ? i : entries.length - 1 - i].task());
+                }
+            }
+            case PID -> {
+                var entries = gather();
+                Arrays.sort(entries, Comparator.comparing(entry -> entry.task().pid()));
+                for (int i = 0; i < entries.length; i++) {
+                    consumer.accept(entries[ascending ? i : entries.length - 1 - i].task());
+                }
+            }
+            case PRIORITY -> {
+                // the priorities are reversed, the tasks inside a priority keep the FIFO order
+                for (int i = 0; i < stripes.length; i++) {
+                    for (var entry : stripes[ascending ? i : stripes.length - 1 - i].entries()) {
+                        consumer.accept(entry.task());
+                    }
+                }
+            }
+            default -> throw new UnsupportedOperationException(sortCriteria + " not implemented");
+        }
+    }
+
+    private PriorityStripe.Entry[] gather() {
+        int size = 0;
+        for (var stripe : stripes) {
+            size += stripe.size();
+        }
+        var entries = new PriorityStripe.Entry[size];
+        int i = 0;
+        for (var stripe : stripes) {
+            for (var entry : stripe.entries()) {
+                entries[i++] = entry;
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,60 @@
+package ro.apptozee.taskmanager.vo;
+
+import java.util.Arrays;
+
+// the number of tasks of a task manager at a single point in time, in total and by priority
+public final class Occupancy {
+
+    private final int capacity;
+    private final int size;
+    // indexed by the level of the priority
+    private final int[] counts;
+
+    public Occupancy(int capacity, int[] counts) {
+        this.capacity = capacity;
+        this.counts = counts.clone();
+        int size = 0;
+        for (int count : counts) {
+            size += count;
+        }
+        this.size = size;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int count(Priority priority) {
+        return counts[priority.rank()];
+    }
+
+    public int remainingCapacity() {
+        return capacity - size;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Occupancy other && capacity == other.capacity && Arrays.equals(counts, other.counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * capacity + Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        // the levels without tasks are left out
+        var byPriority = new StringBuilder();
+        for (var priority : Priority.ASCENDING) {
+            if (count(priority) != 0) {
+                byPriority.append(", ").append(priority).append('=').append(count(priority));
+            }
+        }
+        return "Occupancy[capacity=" + capacity + ", size=" + size + byPriority + "]";
+    }
+}
@@ -1,25 +1,83 @@
 package ro.apptozee.taskmanager.vo;
 
 import java.util.Comparator;
+import java.util.List;
 
-public enum Priority  {
-    LOW(1),
-    MEDIUM(10),
-    HIGH(20);
+/*
+  A numeric priority level between 0 and LEVELS - 1, a higher level being a higher priority. LOW, MEDIUM and HIGH are
+  named levels, any other level is obtained with of(level).
+  There is a single instance per level, so the priorities can be compared by identity and the level is used as a direct
+  index in the bucket arrays of the stores (it is also the rank of the priority: the levels are already sorted).
+  There are always 256 levels, every one of them fitting in the byte of the journal records and of the checkpoints, so
+  every manager, journal and store of the process agrees on the range whatever the order the classes are loaded in.
+
+  It replaced the LOW, MEDIUM, HIGH enum: valueOf, switch, EnumMap and EnumSet are gone, values() only returns the named
+  levels and ASCENDING all of them.
+ */
+public final class Priority implements Comparable<Priority> {
+
+    public static final int LEVELS = 256;
+
+    private static final Priority[] BY_LEVEL = new Priority[LEVELS];
+
+    static {
+        for (int level = 0; level < LEVELS; level++) {
+            BY_LEVEL[level] = new Priority(level, null);
+        }
+    }
+
+    public static final Priority LOW = named(1, "LOW");
+    public static final Priority MEDIUM = named(10, "MEDIUM");
+    public static final Priority HIGH = named(20, "HIGH");
+
+    private static final Priority[] NAMED = {LOW, MEDIUM, HIGH};
 
     public static final Comparator<Priority> BY_PRIORITY = Comparator.comparing(Priority::getNumericalPriority);
 
-    private final int numericalPriority;
+    // all the levels, the order of the priority views
+    public static final List<Priority> ASCENDING = List.of(BY_LEVEL);
 
-    Priority(int numericalPriority) {
-        this.numericalPriority = numericalPriority;
+    private final int level;
+    private final String name;
+
+    private Priority(int level, String name) {
+        this.level = level;
+        this.name = name;
     }
 
-    public int getNumericalPriority() {
-        return numericalPriority;
+    private static Priority named(int level, String name) {
+        BY_LEVEL[level] = new Priority(level, name);
+        return BY_LEVEL[level];
     }
 
+    public static Priority of(int level) {
+        if (level < 0 || level >= LEVELS) {
+            throw new IllegalArgumentException("The priority level must be between 0 and " + (LEVELS - 1) + ": " + level);
+        }
+        return BY_LEVEL[level];
+    }
 
+    // the named levels, ascending
+    public static Priority[] values() {
+        return NAMED.clone();
+    }
 
+    public int getNumericalPriority() {
+        return level;
+    }
 
+    // the position in ASCENDING, which is the level itself
+    public int rank() {
+        return level;
+    }
+
+    @Override
+    public int compareTo(Priority o) {
+        return Integer.compare(level, o.level);
+    }
+
+    @Override
+    public String toString() {
+        return name != null ? name : "LEVEL_" + level;
+    }
 }
@@ -0,0 +1,16 @@
+package ro.apptozee.taskmanager.vo;
+
+public enum StorageMode {
+    // mutable collections guarded by a fair read-write lock
+    LOCKING,
+    // same as LOCKING but the tasks are kept in preallocated primitive arrays instead of collections of objects
+    COMPACT,
+    // immutable snapshots published through a volatile reference, readers never block
+    SNAPSHOT,
+    // concurrent deque with lazily marked deletions, no locks at all (BLOCK and FIFO strategies only)
+    LOCK_FREE,
+    // one read-write lock per priority and an atomic capacity counter (BLOCK and PRIORITY strategies only)
+    STRIPED,
+    // one LOCKING task manager per core, tasks routed by PID and the capacity split between them
+    SHARDED
+}
@@ -6,15 +6,26 @@ import ro.apptozee.taskmanager.vo.Priority;
 
 import java.util.Comparator;
 
-public record Task(PID pid, Priority priority, TaskManager taskManager) {
+/*
+  A value: two tasks are equal when their PID, priority, task manager and generation are. The PIDs are recycled, the
+  generation tells a handle kept after its task was removed apart from the newer task that got the same PID, so killing
+  it is a no-op (see the README).
+ */
+public record Task(PID pid, Priority priority, TaskManager taskManager, int generation) {
 
     public static final Comparator<Task> BY_PID_COMP = Comparator.comparing(Task::pid);
 
+    // the first generation of a PID, the one of the tasks rebuilt from a journal
+    public Task(PID pid, Priority priority, TaskManager taskManager) {
+        this(pid, priority, taskManager, 0);
+    }
+
     public void kill(){
         // code that performs the actual kill command to be inserted here
 
         // there is a potential infinite loop here
         // we avoided it by making sure we remove the task from internal tracking before issuing the kill command
+        // (the locking task managers issue it after releasing their lock, through their KillExecutor)
         this.taskManager.kill(this);
     }
 
@@ -0,0 +1,80 @@
+package ro.apptozee.taskmanager.vo;
+
+import java.util.function.Consumer;
+
+/*
+  The tasks of a view (sortCriteria and sortOrder) restricted to a range of PIDs and a range of priorities (both inclusive),
+  of which the first offset are skipped and at most limit are listed.
+  For example the 50 newest HIGH tasks:
+    TaskQuery.of(SortCriteria.FIFO, SortOrder.DESCENDING).priority(Priority.HIGH).limit(50)
+ */
+public record TaskQuery(SortCriteria sortCriteria, SortOrder sortOrder, PID lowestPID, PID highestPID,
+                        Priority lowestPriority, Priority highestPriority, int offset, int limit) {
+
+    public TaskQuery {
+        if (lowestPID.compareTo(highestPID) > 0){
+            throw new IllegalArgumentException("Empty PID range " + lowestPID + " - " + highestPID);
+        }
+        if (lowestPriority.rank() > highestPriority.rank()){
+            throw new IllegalArgumentException("Empty priority range " + lowestPriority + " - " + highestPriority);
+        }
+        if (offset < 0 || limit < 0){
+            throw new IllegalArgumentException("The offset and the limit can not be negative");
+        }
+    }
+
+    // the whole view
+    public static TaskQuery of(SortCriteria sortCriteria, SortOrder sortOrder){
+        return new TaskQuery(sortCriteria, sortOrder, new PID(Integer.MIN_VALUE), new PID(Integer.MAX_VALUE),
+                Priority.of(0), Priority.of(Priority.LEVELS - 1), 0, Integer.MAX_VALUE);
+    }
+
+    public TaskQuery pids(PID lowest, PID highest){
+        return new TaskQuery(sortCriteria, sortOrder, lowest, highest, lowestPriority, highestPriority, offset, limit);
+    }
+
+    public TaskQuery priorities(Priority lowest, Priority highest){
+        return new TaskQuery(sortCriteria, sortOrder, lowestPID, highestPID, lowest, highest, offset, limit);
+    }
+
+    public TaskQuery priority(Priority priority){
+        return priorities(priority, priority);
+    }
+
+    public TaskQuery offset(int offset){
+        return new TaskQuery(sortCriteria, sortOrder, lowestPID, highestPID, lowestPriority, highestPriority, offset, limit);
+    }
+
+    public TaskQuery limit(int limit){
+        return new TaskQuery(sortCriteria, sortOrder, lowestPID, highestPID, lowestPriority, highestPriority, offset, limit);
+    }
+
+    public boolean matches(Task task){
+        return matchesPID(task.pid()) && matchesPriority(task.priority());
+    }
+
+    public boolean matchesPID(PID pid){
+        return pid.compareTo(lowestPID) >= 0 && pid.compareTo(highestPID) <= 0;
+    }
+
+    public boolean matchesPriority(Priority priority){
+        return priority.rank() >= lowestPriority.rank() && priority.rank() <= highestPriority.rank();
+    }
+
+    /*
+      Applies the query to the tasks of the whole view given to the returned consumer, for the implementations that can not
+      do better than a full traversal: the tasks after the limit are still walked, but ignored.
+     */
+    public Consumer<Task> filter(Consumer<Task> consumer){
+        return new Consumer<>() {
+            private int matched;
+
+            @Override
+            public void accept(Task task) {
+                if (matches(task) && matched++ >= offset && matched - offset <= limit){
+                    consumer.accept(task);
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,159 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncTaskManagerTest {
+
+    private AsyncTaskManager asyncTaskManager;
+
+    @AfterEach
+    void tearDown() {
+        asyncTaskManager.close();
+    }
+
+    @Test
+    public void keepsTheAdmissionOfTheStrategy() throws ExecutionException, InterruptedException {
+        // given an asynchronous front end of a priority task manager with capacity 3
+        asyncTaskManager = new AsyncTaskManager(new PriorityTaskManager(3, new PIDPool()), 4);
+
+        // when publishing more adds than the capacity and the size of the buffer
+        var results = new ArrayList<CompletableFuture<Optional<Task>>>();
+        for (var priority : Arrays.asList(Priority.LOW, Priority.MEDIUM, Priority.LOW, Priority.HIGH, Priority.LOW, Priority.HIGH)){
+            results.add(asyncTaskManager.add(priority));
+        }
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).get();
+
+        // then the adds were applied in order with the eviction of the strategy
+        assertTrue(results.get(4).get().isEmpty());
+        var taskManager = asyncTaskManager.taskManager();
+        var insertionOrder = new LinkedList<>();
+        asyncTaskManager.list(insertionOrder::add, SortCriteria.FIFO, SortOrder.ASCENDING);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(1), Priority.MEDIUM,taskManager),
+                        new Task(new PID(3), Priority.HIGH,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void appliesKills() throws ExecutionException, InterruptedException {
+        // given an asynchronous front end of a blocking task manager with capacity 2 at full capacity
+        asyncTaskManager = new AsyncTaskManager(new BaseTaskManager(2, new PIDPool()));
+        var first = asyncTaskManager.add(Priority.LOW).get().orElseThrow();
+        asyncTaskManager.add(Priority.HIGH).get();
+
+        // when killing a task, adding one and killing a priority
+        asyncTaskManager.kill(first);
+        var added = asyncTaskManager.add(Priority.MEDIUM);
+        asyncTaskManager.killByPriority(Priority.HIGH).get();
+
+        // then the commands were applied in the order they were published
+        assertTrue(added.get().isPresent());
+        var insertionOrder = new LinkedList<>();
+        asyncTaskManager.list(insertionOrder::add, SortCriteria.FIFO, SortOrder.ASCENDING);
+        assertThat(insertionOrder).isEqualTo(Arrays.asList(added.get().get()));
+
+        // and when killing all the tasks nothing is left
+        asyncTaskManager.killAll().get();
+        insertionOrder.clear();
+        asyncTaskManager.list(insertionOrder::add, SortCriteria.FIFO, SortOrder.ASCENDING);
+        assertThat(insertionOrder).isEmpty();
+    }
+
+    @Test
+    public void capacityHoldsWithConcurrentProducers() throws InterruptedException {
+        // given an asynchronous front end of a blocking task manager with capacity 100 and a small buffer
+        asyncTaskManager = new AsyncTaskManager(new BaseTaskManager(100, new PIDPool()), 8);
+        var admitted = new AtomicInteger();
+        var threads = new ArrayList<Thread>();
+
+        // when 4 producers publish 1000 adds each
+        for (int t = 0; t < 4; t++){
+            threads.add(new Thread(() -> {
+                var results = new ArrayList<CompletableFuture<Optional<Task>>>();
+                for (int i = 0; i < 1000; i++){
+                    results.add(asyncTaskManager.add(Priority.values()[i % 3]));
+                }
+                results.forEach(result -> result.join().ifPresent(task -> admitted.incrementAndGet()));
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (var thread : threads){
+            thread.join();
+        }
+
+        // then exactly the capacity was admitted
+        assertEquals(100, admitted.get());
+    }
+
+    @Test
+    public void rejectsCommandsOnceClosed(){
+        // given a closed asynchronous front end
+        asyncTaskManager = new AsyncTaskManager(new BaseTaskManager(2, new PIDPool()));
+        var beforeClose = asyncTaskManager.add(Priority.LOW);
+        asyncTaskManager.close();
+
+        // when publishing a new command
+        var afterClose = asyncTaskManager.add(Priority.LOW);
+
+        // then the commands published before were applied and the new one fails
+        assertTrue(beforeClose.join().isPresent());
+        assertTrue(afterClose.isCompletedExceptionally());
+    }
+
+    @Test
+    public void completesEveryCommandWhenClosedConcurrently() throws InterruptedException {
+        // the race is narrow, so it is repeated
+        for (int round = 0; round < 200; round++){
+            // given producers publishing to an asynchronous front end with a small buffer
+            asyncTaskManager = new AsyncTaskManager(new BaseTaskManager(100, new PIDPool()), 4);
+            var results = new ConcurrentLinkedQueue<CompletableFuture<Optional<Task>>>();
+            var started = new CountDownLatch(4);
+            var threads = new ArrayList<Thread>();
+            for (int t = 0; t < 4; t++){
+                threads.add(new Thread(() -> {
+                    started.countDown();
+                    for (int i = 0; i < 1_000; i++){
+                        results.add(asyncTaskManager.add(Priority.values()[i % 3]));
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+
+            // when closing while they are still publishing
+            started.await();
+            asyncTaskManager.close();
+            for (var thread : threads){
+                thread.join(5_000);
+                assertFalse(thread.isAlive());
+            }
+
+            // then every command was either applied or failed
+            assertEquals(4_000, results.size());
+            assertThat(results).allMatch(CompletableFuture::isDone);
+        }
+    }
+
+    @Test
+    public void bufferSizeMustBeAPowerOf2(){
+        assertThrows(IllegalArgumentException.class,
+                () -> asyncTaskManager = new AsyncTaskManager(new BaseTaskManager(2, new PIDPool()), 6));
+        asyncTaskManager = new AsyncTaskManager(new BaseTaskManager(2, new PIDPool()), 1);
+    }
+}
@@ -2,13 +2,25 @@ package ro.apptozee.taskmanager;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.LinkedTaskStore;
+import ro.apptozee.taskmanager.vo.Occupancy;
 import ro.apptozee.taskmanager.vo.PID;
 import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.SortOrder;
+import ro.apptozee.taskmanager.vo.Strategy;
 import ro.apptozee.taskmanager.vo.Task;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -352,4 +364,306 @@ class BaseTaskManagerTest {
         assertTrue(shouldFailOpt.isEmpty());
     }
 
-}
\ No newline at end of file
+    @Test
+    public void reusesTheViewUntilTheNextModification(){
+        // given a task manager whose store counts the views it builds
+        var builtViews = new AtomicInteger();
+        taskManager = new BaseTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new ReferenceTaskStore(){
+            @Override
+            public TasksView view(SortCriteria sortCriteria, SortOrder sortOrder) {
+                builtViews.incrementAndGet();
+                return super.view(sortCriteria, sortOrder);
+            }
+        });
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+
+        // when listing the same view twice, another view, and the first one again after a modification
+        taskManager.list(task -> {}, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+        taskManager.list(task -> {}, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+        taskManager.list(task -> {}, SortCriteria.PID, SortOrder.DESCENDING);
+        taskManager.add(Priority.MEDIUM);
+        var byPriority = new LinkedList<>();
+        taskManager.list(byPriority::add, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+
+        // then a view is only built on the first request after a change
+        assertEquals(3, builtViews.get());
+        assertThat(byPriority)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(2), Priority.MEDIUM,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager)
+                ));
+    }
+
+    @Test
+    public void streamsTheViewInParallel(){
+        // given a task manager with tasks of every priority
+        taskManager = new BaseTaskManager(100, new PIDPool());
+        for (int i = 0; i < 100; i++){
+            taskManager.add(Priority.ASCENDING.get(i % Priority.ASCENDING.size()));
+        }
+        var listed = new ArrayList<Task>();
+        taskManager.list(listed::add, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+
+        // when streaming the same view in parallel
+        var streamed = taskManager.stream(SortCriteria.PRIORITY, SortOrder.DESCENDING).parallel().collect(Collectors.toList());
+        var spliterator = taskManager.stream(SortCriteria.PRIORITY, SortOrder.DESCENDING).spliterator();
+
+        // then the order is kept and the stream is sized and splits
+        assertEquals(listed, streamed);
+        assertTrue(spliterator.hasCharacteristics(Spliterator.SIZED | Spliterator.SUBSIZED | Spliterator.ORDERED));
+        assertEquals(100, spliterator.getExactSizeIfKnown());
+        assertEquals(50, spliterator.trySplit().getExactSizeIfKnown());
+    }
+
+    @Test
+    public void stopsVisitingWhenTheVisitorDoes(){
+        // given a task manager with tasks
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when visiting the first 2 tasks by priority, before and after the view is cached
+        var visited = new ArrayList<Task>();
+        taskManager.visit(task -> visited.add(task) && visited.size() < 2, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+        taskManager.list(task -> {}, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+        var visitedCached = new ArrayList<Task>();
+        taskManager.visit(task -> visitedCached.add(task) && visitedCached.size() < 2, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+
+        // then only those are visited
+        var expected = Arrays.asList(
+                new Task(new PID(1), Priority.HIGH, taskManager),
+                new Task(new PID(3), Priority.HIGH, taskManager));
+        assertEquals(expected, visited);
+        assertEquals(expected, visitedCached);
+    }
+
+    @Test
+    public void countsTheTasksOnEveryPath(){
+        // given a task manager with tasks of every priority
+        taskManager.add(Priority.HIGH);
+        var low = taskManager.add(Priority.LOW).orElseThrow();
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when a task is killed, then the tasks of a priority and at last all of them
+        taskManager.kill(low);
+        var afterKill = taskManager.occupancy();
+        taskManager.killByPriority(Priority.HIGH);
+        var afterKillByPriority = taskManager.occupancy();
+        int mediumCount = taskManager.count(Priority.MEDIUM);
+        taskManager.killAll();
+
+        // then the counters follow every change
+        assertEquals(occupancy(Priority.MEDIUM, Priority.HIGH, Priority.HIGH), afterKill);
+        assertEquals(3, afterKill.size());
+        assertEquals(2, afterKill.remainingCapacity());
+        assertEquals(occupancy(Priority.MEDIUM), afterKillByPriority);
+        assertEquals(1, mediumCount);
+        assertEquals(0, taskManager.size());
+        assertEquals(CAPACITY, taskManager.remainingCapacity());
+        assertEquals(0, taskManager.count(Priority.MEDIUM));
+    }
+
+    private static Occupancy occupancy(Priority... priorities){
+        var counts = new int[Priority.LEVELS];
+        for (var priority : priorities){
+            counts[priority.rank()]++;
+        }
+        return new Occupancy(CAPACITY, counts);
+    }
+
+    @Test
+    public void staleHandlesDoNotKillTheTaskHoldingTheirRecycledPID(){
+        // given a task manager that reuses the lowest free PID, with a task killed and its PID recycled by the same priority
+        var recycling = new BaseTaskManager(CAPACITY, new PIDPool(100, PIDPool.AllocationPolicy.LOWEST_FREE));
+        var stale = recycling.add(Priority.LOW).orElseThrow();
+        stale.kill();
+        var newer = recycling.add(Priority.LOW).orElseThrow();
+
+        // when killing through the stale handle
+        stale.kill();
+
+        // then the newer task is left alone, it has the same PID but a newer generation
+        assertEquals(stale.pid(), newer.pid());
+        assertNotEquals(stale, newer);
+        var tasks = new ArrayList<Task>();
+        recycling.list(tasks::add);
+        assertEquals(List.of(newer), tasks);
+    }
+
+    @Test
+    public void canKillWhileListing(){
+        // given a task manager with tasks
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+
+        // when killing every listed task
+        taskManager.list(Task::kill);
+
+        // then the listing saw all of them and none is left
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder).isEmpty();
+    }
+
+    @Test
+    public void addAwaitGivesUpAfterTheTimeout() throws InterruptedException {
+        // given a task manager at full capacity
+        for (int i = 0; i < CAPACITY; i++){
+            taskManager.add(Priority.LOW);
+        }
+
+        // when waiting for a slot that is never freed
+        var added = taskManager.addAwait(Priority.HIGH, Duration.ofMillis(20));
+
+        // then nothing was added
+        assertTrue(added.isEmpty());
+        assertTrue(taskManager.addAwait(Priority.HIGH, Duration.ZERO).isEmpty());
+    }
+
+    @Test
+    public void addAwaitServesTheWaitersInArrivalOrder() throws InterruptedException {
+        // given a task manager at full capacity with two medium priority tasks
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        for (int i = 2; i < CAPACITY; i++){
+            taskManager.add(Priority.HIGH);
+        }
+
+        // when three producers wait one after the other
+        var results = new ConcurrentHashMap<Integer, Task>();
+        var waiters = new ArrayList<Thread>();
+        for (int i = 0; i < 3; i++){
+            int arrival = i;
+            var waiter = new Thread(() -> {
+                try {
+                    taskManager.addAwait(Priority.LOW).ifPresent(task -> results.put(arrival, task));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            waiter.start();
+            awaitParked(waiter);
+            waiters.add(waiter);
+        }
+
+        // and two slots are freed at once
+        taskManager.killByPriority(Priority.MEDIUM);
+        waiters.get(0).join();
+        waiters.get(1).join();
+
+        // then the two oldest waiters got them, in order, and the last one is still waiting
+        assertEquals(new Task(new PID(5), Priority.LOW, taskManager), results.get(0));
+        assertEquals(new Task(new PID(6), Priority.LOW, taskManager), results.get(1));
+        Thread.sleep(20);
+        assertFalse(results.containsKey(2));
+        assertTrue(waiters.get(2).isAlive());
+
+        // and when a single slot is freed the last waiter gets it
+        taskManager.kill(results.get(0));
+        waiters.get(2).join();
+        assertEquals(new Task(new PID(7), Priority.LOW, taskManager), results.get(2));
+    }
+
+    @Test
+    public void addAwaitCanBeInterrupted() throws InterruptedException {
+        // given a task manager at full capacity and a waiting producer
+        for (int i = 0; i < CAPACITY; i++){
+            taskManager.add(Priority.LOW);
+        }
+        var interrupted = new AtomicInteger();
+        var waiter = new Thread(() -> {
+            try {
+                taskManager.addAwait(Priority.HIGH);
+            } catch (InterruptedException e) {
+                interrupted.incrementAndGet();
+            }
+        });
+        waiter.start();
+        awaitParked(waiter);
+
+        // when interrupting it
+        waiter.interrupt();
+        waiter.join();
+
+        // then it gave up and does not take the next free slot
+        assertEquals(1, interrupted.get());
+        taskManager.killByPriority(Priority.LOW);
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder).isEmpty();
+    }
+
+    @Test
+    public void runsTheBulkKillCommandsAfterTheUnlock(){
+        // given a full task manager that records whether the kill command of a task runs under its write lock
+        var killedUnderLock = new ArrayList<Boolean>();
+        var taskManager = new BaseTaskManager(CAPACITY, new PIDPool()){
+            @Override
+            public void kill(Task task) {
+                killedUnderLock.add(rl.isWriteLockedByCurrentThread());
+                super.kill(task);
+            }
+        };
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+
+        // when killing a priority and then everything
+        taskManager.killByPriority(Priority.LOW);
+        var afterKillByPriority = taskManager.occupancy();
+        taskManager.killAll();
+
+        // then every task was killed once, outside of the lock, and the counters followed
+        assertThat(killedUnderLock).containsExactly(false, false, false, false, false);
+        assertEquals(2, afterKillByPriority.size());
+        assertEquals(0, afterKillByPriority.count(Priority.LOW));
+        assertEquals(0, taskManager.size());
+        // and the whole capacity can be used again
+        for (int i = 0; i < CAPACITY; i++){
+            assertTrue(taskManager.add(Priority.HIGH).isPresent());
+        }
+        assertTrue(taskManager.add(Priority.HIGH).isEmpty());
+    }
+
+    @Test
+    public void expiresTasksAfterTheirTimeToLive() throws InterruptedException {
+        // given a task manager with metrics at full capacity, two of its tasks with a short time to live
+        var metrics = TaskManagerMetrics.create();
+        var taskManager = new BaseTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new LinkedTaskStore(), metrics);
+        var expiring = taskManager.add(Priority.LOW, Duration.ofMillis(30)).get();
+        var killed = taskManager.add(Priority.LOW, Duration.ofMillis(30)).get();
+        for (int i = 2; i < CAPACITY; i++){
+            taskManager.add(Priority.MEDIUM, Duration.ofHours(1));
+        }
+        taskManager.kill(killed);
+
+        // when a producer waits for a slot (the killed task made one) and another one after it
+        var first = taskManager.addAwait(Priority.HIGH, Duration.ofSeconds(5));
+        var second = taskManager.addAwait(Priority.HIGH, Duration.ofSeconds(5));
+
+        // then the expired task made room for the second one and only the expiration is counted as such
+        assertTrue(first.isPresent());
+        assertTrue(second.isPresent());
+        assertFalse(taskManager.stream(SortCriteria.FIFO, SortOrder.ASCENDING).anyMatch(expiring::equals));
+        assertEquals(CAPACITY, taskManager.size());
+        assertEquals(0, taskManager.count(Priority.LOW));
+        var snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.expirations());
+        assertEquals(0, snapshot.evictions().get(Strategy.FIFO));
+        assertThrows(IllegalArgumentException.class, () -> taskManager.add(Priority.LOW, Duration.ZERO));
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        while (thread.getState() != Thread.State.WAITING){
+            Thread.sleep(1);
+        }
+    }
+
+}
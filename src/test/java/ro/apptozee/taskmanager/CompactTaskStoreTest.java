@@ -0,0 +1,80 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.storage.CompactTaskStore;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactTaskStoreTest {
+
+    private static final int CAPACITY = 5;
+
+    private TaskManager taskManager;
+
+    @BeforeEach
+    void setUp() {
+        // given a task manager with capacity 5 backed by the compact store
+        taskManager = new BaseTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new);
+    }
+
+    @Test
+    public void canListEveryOrder(){
+        // given a task manager with tasks
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        var toRemoveOpt = taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when killing a task
+        taskManager.kill(toRemoveOpt.get());
+
+        // then every view skips it and keeps its order
+        var fifo = new LinkedList<>();
+        taskManager.list(fifo::add, SortCriteria.FIFO, SortOrder.DESCENDING);
+        assertThat(fifo)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(3), Priority.MEDIUM,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(0), Priority.HIGH,taskManager)
+                ));
+
+        var byPriority = new LinkedList<>();
+        taskManager.list(byPriority::add, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+        assertThat(byPriority)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(3), Priority.MEDIUM,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager)
+                ));
+    }
+
+    @Test
+    public void canCreateCapacityByKillAllAndKillByPriority(){
+        // given a task manager at full capacity
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when killing a priority and then all the tasks
+        taskManager.killByPriority(Priority.MEDIUM);
+        taskManager.add(Priority.LOW);
+        taskManager.killAll();
+
+        // then all the slots can be used again
+        for (int i = 0; i < CAPACITY; i++){
+            assertFalse(taskManager.add(Priority.LOW).isEmpty());
+        }
+        assertTrue(taskManager.add(Priority.LOW).isEmpty());
+    }
+}
@@ -2,12 +2,21 @@ package ro.apptozee.taskmanager;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.journal.TaskJournal;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.RingTaskStore;
 import ro.apptozee.taskmanager.vo.PID;
 import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.SortCriteria;
+import ro.apptozee.taskmanager.vo.SortOrder;
 import ro.apptozee.taskmanager.vo.Task;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -94,4 +103,71 @@ class FavorNewTaskManagerTest {
                         new Task(new PID(1), Priority.LOW,taskManager)
                 ));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void occupancyNeverSeesAnEvictionWithoutItsAddition() throws InterruptedException {
+        // given a full task manager and a writer that keeps evicting the oldest task with every add
+        for (int i = 0; i < CAPACITY; i++){
+            taskManager.add(Priority.LOW);
+        }
+        var writing = new AtomicBoolean(true);
+        var writer = new Thread(() -> {
+            for (int i = 0; writing.get(); i++){
+                taskManager.add(i % 2 == 0 ? Priority.HIGH : Priority.LOW);
+            }
+        });
+        writer.start();
+
+        // when reading the occupancy without any lock while the writer runs
+        try {
+            for (int i = 0; i < 100_000; i++){
+                var occupancy = taskManager.occupancy();
+
+                // then every snapshot is of a full task manager
+                assertEquals(CAPACITY, occupancy.size());
+                assertEquals(0, occupancy.remainingCapacity());
+                assertEquals(0, occupancy.count(Priority.MEDIUM));
+            }
+        } finally {
+            writing.set(false);
+            writer.join();
+        }
+        assertEquals(CAPACITY, taskManager.size());
+    }
+    @Test
+    public void runsTheKillCommandsOnTheKillExecutor() throws InterruptedException {
+        // given a task manager of capacity 2 whose kill commands run on a single thread, recording what they see
+        var executor = Executors.newSingleThreadExecutor();
+        var killed = new ArrayList<Task>();
+        var stillListed = new AtomicBoolean();
+        var underLock = new AtomicBoolean();
+        var caller = Thread.currentThread();
+        var taskManager = new FavorNewTaskManager(2, new PIDPool(), RingTaskStore::new, TaskManagerMetrics.DISABLED,
+                TaskJournal.DISABLED, KillExecutor.of(executor)){
+            @Override
+            public void kill(Task task) {
+                if (Thread.currentThread() != caller){
+                    killed.add(task);
+                    underLock.compareAndSet(false, rl.getReadHoldCount() > 0 || rl.isWriteLockedByCurrentThread());
+                    stillListed.compareAndSet(false, stream(SortCriteria.FIFO, SortOrder.ASCENDING).anyMatch(task::equals));
+                }
+                super.kill(task);
+            }
+        };
+        var evicted = taskManager.add(Priority.LOW).get();
+        var kept = taskManager.add(Priority.LOW).get();
+
+        // when a task is evicted, one is killed and then all of them
+        var added = taskManager.add(Priority.HIGH).get();
+        taskManager.kill(kept);
+        taskManager.killAll();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // then every kill command ran once on the executor, in order, once its task had left the task manager
+        assertThat(killed).containsExactly(evicted, kept, added);
+        assertFalse(underLock.get());
+        assertFalse(stillListed.get());
+    }
+
+}
@@ -0,0 +1,222 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class LockFreeTaskManagerTest {
+
+    private static final int CAPACITY = 5;
+
+    private TaskManager taskManager;
+
+    @BeforeEach
+    void setUp() {
+        // given a task manager with capacity 5
+        taskManager = new LockFreeTaskManager(CAPACITY, new PIDPool());
+    }
+
+    @Test
+    public void canNotAddWhenNotCapacity(){
+        // given a task manager with capacity 5
+
+        // when adding 6 tasks
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+        var failedAdd = taskManager.add(Priority.HIGH);
+
+        // then only the first 5 tasks were accepted to capacity
+        assertTrue(failedAdd.isEmpty());
+
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(2), Priority.MEDIUM,taskManager),
+                        new Task(new PID(3), Priority.MEDIUM,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void canNotCreateFalseCapacityByKill(){
+        // given a task manager at full capacity that contains a specific task
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        var toRemoveOpt = taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when removing the task twice and adding two new tasks
+        taskManager.kill(toRemoveOpt.get());
+        taskManager.add(Priority.HIGH);
+        taskManager.kill(toRemoveOpt.get());
+        var failedAdd = taskManager.add(Priority.LOW);
+
+        // then the task over capacity should not be added and the killed task is not listed
+        assertTrue(failedAdd.isEmpty());
+
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add, SortCriteria.FIFO, SortOrder.DESCENDING);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(5), Priority.HIGH,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(3), Priority.MEDIUM,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(0), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void canCreateCapacityByKillByPriorityAndKillAll(){
+        // given a task manager at full capacity
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when killing a priority
+        taskManager.killByPriority(Priority.MEDIUM);
+
+        // then there is room for exactly two tasks
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        assertTrue(taskManager.add(Priority.LOW).isEmpty());
+
+        var byPriority = new LinkedList<>();
+        taskManager.list(byPriority::add, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+        assertThat(byPriority)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(6), Priority.MEDIUM,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(5), Priority.LOW,taskManager)
+                ));
+
+        // and when killing all the tasks nothing is left
+        taskManager.killAll();
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add, SortCriteria.PID);
+        assertThat(insertionOrder).isEmpty();
+        assertFalse(taskManager.add(Priority.LOW).isEmpty());
+    }
+
+    @Test
+    public void fifoStrategyEvictsTheOldest(){
+        // given a lock free task manager with the FIFO strategy at full capacity with a killed task
+        taskManager = new FavorNewLockFreeTaskManager(3, new PIDPool());
+        var killed = taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.kill(killed.get());
+        taskManager.add(Priority.HIGH);
+
+        // when adding a new task
+        taskManager.add(Priority.MEDIUM);
+
+        // then the oldest live task was evicted
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(2), Priority.MEDIUM,taskManager),
+                        new Task(new PID(3), Priority.HIGH,taskManager),
+                        new Task(new PID(4), Priority.MEDIUM,taskManager)
+                ));
+    }
+
+    @Test
+    public void capacityHoldsUnderConcurrentAddAndKill() throws InterruptedException {
+        // given a lock free task manager and several threads adding and killing their own tasks
+        var threads = new ArrayList<Thread>();
+        var start = new CountDownLatch(1);
+        // tasks currently owned by the threads, never more than the tasks in the manager
+        var held = new AtomicInteger();
+        var maxHeld = new AtomicInteger();
+        for (int t = 0; t < 4; t++){
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++){
+                    var added = taskManager.add(Priority.values()[i % 3]);
+                    added.ifPresent(task -> maxHeld.accumulateAndGet(held.incrementAndGet(), Math::max));
+                    // concurrent traversals also unlink the marked tasks
+                    taskManager.list(task -> {});
+                    added.ifPresent(task -> {
+                        held.decrementAndGet();
+                        taskManager.kill(task);
+                    });
+                }
+            }));
+        }
+
+        // when they run concurrently
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (var thread : threads){
+            thread.join();
+        }
+
+        // then the capacity was never exceeded and every slot was given back
+        assertThat(maxHeld.get()).isLessThanOrEqualTo(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++){
+            assertFalse(taskManager.add(Priority.LOW).isEmpty());
+        }
+        assertTrue(taskManager.add(Priority.LOW).isEmpty());
+    }
+
+    @Test
+    public void priorityStrategyIsNotSupported(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> TaskManager.withStrategy(Strategy.PRIORITY, CAPACITY, StorageMode.LOCK_FREE));
+    }
+
+    @Test
+    public void countsTheTasksOnEveryPath(){
+        // given a task manager with tasks of every priority
+        taskManager.add(Priority.HIGH);
+        var low = taskManager.add(Priority.LOW).orElseThrow();
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when a task is killed, then the tasks of a priority and at last all of them
+        taskManager.kill(low);
+        var afterKill = taskManager.occupancy();
+        taskManager.killByPriority(Priority.HIGH);
+        var afterKillByPriority = taskManager.occupancy();
+        int mediumCount = taskManager.count(Priority.MEDIUM);
+        taskManager.killAll();
+
+        // then the counters follow every change
+        assertEquals(3, afterKill.size());
+        assertEquals(2, afterKill.remainingCapacity());
+        assertEquals(0, afterKill.count(Priority.LOW));
+        assertEquals(2, afterKill.count(Priority.HIGH));
+        assertEquals(1, afterKillByPriority.size());
+        assertEquals(0, afterKillByPriority.count(Priority.HIGH));
+        assertEquals(1, mediumCount);
+        assertEquals(0, taskManager.size());
+        assertEquals(CAPACITY, taskManager.remainingCapacity());
+        assertEquals(0, taskManager.count(Priority.MEDIUM));
+    }
+}
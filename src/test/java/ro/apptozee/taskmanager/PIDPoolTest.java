@@ -0,0 +1,157 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.vo.Priority;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class PIDPoolTest {
+
+    @Test
+    public void nextFitDoesNotReuseReleasedPIDsRightAway(){
+        // given a pool that has handed out a few PIDs
+        var pidPool = new PIDPool(10, PIDPool.AllocationPolicy.NEXT_FIT);
+        pidPool.getPID();
+        var released = pidPool.getPID();
+        pidPool.getPID();
+
+        // when releasing one of them
+        pidPool.releasePID(released);
+
+        // then the next PID continues after the last one
+        assertEquals(new PID(3), pidPool.getPID());
+    }
+
+    @Test
+    public void nextFitWrapsAroundAndReusesReleasedPIDs(){
+        // given a pool with all its PIDs in use and one released PID
+        var pidPool = new PIDPool(100, PIDPool.AllocationPolicy.NEXT_FIT);
+        for (int i = 0; i < 100; i++){
+            pidPool.getPID();
+        }
+        pidPool.releasePID(new PID(42));
+
+        // when requesting a new PID
+        // then the released PID is reused and afterwards the pool is full
+        assertEquals(new PID(42), pidPool.getPID());
+        assertThrows(PIDPool.PIDPoolFullException.class, pidPool::getPID);
+    }
+
+    @Test
+    public void lowestFreeKeepsTheSpaceDense(){
+        // given a large pool spanning several levels with a few PIDs released
+        var pidPool = new PIDPool(300_000, PIDPool.AllocationPolicy.LOWEST_FREE);
+        for (int i = 0; i < 270_000; i++){
+            pidPool.getPID();
+        }
+        pidPool.releasePID(new PID(262_143));
+        pidPool.releasePID(new PID(4_095));
+        pidPool.releasePID(new PID(70));
+
+        // when requesting new PIDs
+        // then the lowest free PIDs are handed out first
+        assertEquals(new PID(70), pidPool.getPID());
+        assertEquals(new PID(4_095), pidPool.getPID());
+        assertEquals(new PID(262_143), pidPool.getPID());
+        assertEquals(new PID(270_000), pidPool.getPID());
+    }
+
+    @Test
+    public void canNotReleaseAPIDOutsideThePool(){
+        var pidPool = new PIDPool(10, PIDPool.AllocationPolicy.NEXT_FIT);
+        assertThrows(IllegalArgumentException.class, () -> pidPool.releasePID(new PID(10)));
+    }
+
+    @Test
+    public void concurrentAllocationsNeverHandOutTheSamePID() throws InterruptedException {
+        // given a small pool shared by several threads that allocate and release
+        var pidPool = new PIDPool(1_000, PIDPool.AllocationPolicy.LOWEST_FREE);
+        Set<PID> inUse = ConcurrentHashMap.newKeySet();
+        var start = new CountDownLatch(1);
+        var threads = new ArrayList<Thread>();
+        var duplicates = ConcurrentHashMap.newKeySet();
+        for (int t = 0; t < 4; t++){
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                var mine = new ArrayList<PID>();
+                for (int i = 0; i < 50_000; i++){
+                    var pid = pidPool.getPID();
+                    if (!inUse.add(pid)){
+                        duplicates.add(pid);
+                    }
+                    mine.add(pid);
+                    if (mine.size() == 200){
+                        mine.forEach(inUse::remove);
+                        mine.forEach(pidPool::releasePID);
+                        mine.clear();
+                    }
+                }
+                mine.forEach(inUse::remove);
+                mine.forEach(pidPool::releasePID);
+            }));
+        }
+
+        // when they run concurrently
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (var thread : threads){
+            thread.join();
+        }
+
+        // then no PID was handed out twice and all of them are available again
+        assertThat(duplicates).isEmpty();
+        var all = new HashSet<PID>();
+        for (int i = 0; i < 1_000; i++){
+            all.add(pidPool.getPID());
+        }
+        assertThat(all).hasSize(1_000);
+    }
+
+    @Test
+    public void releasingAPIDMovesItToTheNextGeneration(){
+        // given a pool with two PIDs handed out
+        var pool = new PIDPool(128, PIDPool.AllocationPolicy.LOWEST_FREE);
+        var released = pool.getPID();
+        var kept = pool.getPID();
+
+        // when releasing the first one and taking it again
+        pool.releasePID(released);
+        var reused = pool.getPID();
+
+        // then only the recycled PID has a new generation
+        assertEquals(released, reused);
+        assertEquals(1, pool.generation(reused));
+        assertEquals(0, pool.generation(kept));
+    }
+
+    @Test
+    public void taskManagerReusesPIDsOfKilledTasks(){
+        // given a task manager whose pool has as many PIDs as its capacity
+        var taskManager = new BaseTaskManager(2, new PIDPool(2, PIDPool.AllocationPolicy.NEXT_FIT));
+        var first = taskManager.add(Priority.LOW);
+        taskManager.add(Priority.LOW);
+
+        // when killing a task
+        taskManager.kill(first.get());
+
+        // then its PID is handed out again and killing the stale task does not kill the new one
+        var reused = taskManager.add(Priority.HIGH);
+        assertEquals(new PID(0), reused.get().pid());
+        taskManager.kill(first.get());
+        var insertionOrder = new ArrayList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder).contains(reused.get());
+    }
+}
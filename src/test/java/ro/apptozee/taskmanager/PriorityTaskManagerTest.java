@@ -6,8 +6,10 @@ import ro.apptozee.taskmanager.vo.PID;
 import ro.apptozee.taskmanager.vo.Priority;
 import ro.apptozee.taskmanager.vo.Task;
 
+import java.time.Duration;
 import java.util.Arrays;
 import java.util.LinkedList;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.*;
@@ -103,4 +105,131 @@ class PriorityTaskManagerTest {
                 ));
     }
 
-}
\ No newline at end of file
+    @Test
+    public void evictsFromTheNextPriorityOnceTheLowestIsEmpty(){
+        // given a task manager that is at full capacity with a single low priority task
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.HIGH);
+
+        // when adding two high priority tasks
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.HIGH);
+
+        // then the low priority task is evicted first and the oldest medium priority task next
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(2), Priority.MEDIUM,taskManager),
+                        new Task(new PID(3), Priority.HIGH,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(5), Priority.HIGH,taskManager),
+                        new Task(new PID(6), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void evictsTheLowestNumericLevel(){
+        // given a task manager that is at full capacity with tasks of levels between the named ones
+        taskManager.add(Priority.of(200));
+        taskManager.add(Priority.of(15));
+        taskManager.add(Priority.of(2));
+        taskManager.add(Priority.of(15));
+        taskManager.add(Priority.HIGH);
+
+        // when adding a task of a level just above the lowest one
+        var added = taskManager.add(Priority.of(3));
+
+        // then the task of the lowest level is evicted, no matter how far the levels are from each other
+        assertTrue(added.isPresent());
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.of(200),taskManager),
+                        new Task(new PID(1), Priority.of(15),taskManager),
+                        new Task(new PID(3), Priority.of(15),taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(5), Priority.of(3),taskManager)
+                ));
+        assertThrows(IllegalArgumentException.class, () -> Priority.of(Priority.LEVELS));
+    }
+
+    @Test
+    public void addAwaitEvictsALowerPriorityInsteadOfWaiting() throws InterruptedException {
+        // given a task manager that is at full capacity
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.HIGH);
+
+        // when waiting to add a task with a priority higher than one of the tasks
+        var added = taskManager.addAwait(Priority.HIGH, Duration.ZERO);
+
+        // then it is added at once and the oldest task with the lowest priority evicted, like with add
+        assertEquals(new Task(new PID(5), Priority.HIGH, taskManager), added.orElseThrow());
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(1), Priority.MEDIUM,taskManager),
+                        new Task(new PID(3), Priority.LOW,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(5), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void addAwaitWaitsWhenNothingCanBeEvicted() throws InterruptedException {
+        // given a task manager at full capacity with tasks of the highest priority
+        for (int i = 0; i < CAPACITY; i++){
+            taskManager.add(Priority.HIGH);
+        }
+
+        // when a low and then a medium priority producer wait
+        var results = new ConcurrentHashMap<Priority, Task>();
+        var low = waitToAdd(Priority.LOW, results);
+        var medium = waitToAdd(Priority.MEDIUM, results);
+        assertTrue(taskManager.addAwait(Priority.HIGH, Duration.ofMillis(20)).isEmpty());
+
+        // and a slot is freed
+        taskManager.kill(new Task(new PID(0), Priority.HIGH, taskManager));
+        low.join();
+        medium.join();
+
+        // then the oldest waiter got the slot and the medium one evicted its task, which it outranks
+        assertEquals(Priority.LOW, results.get(Priority.LOW).priority());
+        assertEquals(Priority.MEDIUM, results.get(Priority.MEDIUM).priority());
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(1), Priority.HIGH,taskManager),
+                        new Task(new PID(2), Priority.HIGH,taskManager),
+                        new Task(new PID(3), Priority.HIGH,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        results.get(Priority.MEDIUM)
+                ));
+    }
+
+    private Thread waitToAdd(Priority priority, ConcurrentHashMap<Priority, Task> results) throws InterruptedException {
+        var waiter = new Thread(() -> {
+            try {
+                taskManager.addAwait(priority).ifPresent(task -> results.put(priority, task));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING){
+            Thread.sleep(1);
+        }
+        return waiter;
+    }
+
+}
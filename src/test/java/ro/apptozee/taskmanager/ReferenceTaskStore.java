@@ -0,0 +1,78 @@
+package ro.apptozee.taskmanager;
+
+import ro.apptozee.taskmanager.storage.TaskStore;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/*
+  Naive store used as the reference model of the tests: a single list in FIFO order, every other order is computed by sorting.
+ */
+class ReferenceTaskStore implements TaskStore {
+
+    private final List<Task> tasks = new ArrayList<>();
+
+    @Override
+    public int size() {
+        return tasks.size();
+    }
+
+    @Override
+    public void add(Task task) {
+        tasks.add(task);
+    }
+
+    @Override
+    public boolean remove(Task task) {
+        return tasks.remove(task);
+    }
+
+    @Override
+    public List<Task> removeAll() {
+        var removed = new ArrayList<>(tasks);
+        tasks.clear();
+        return removed;
+    }
+
+    @Override
+    public List<Task> removeAll(Priority priority) {
+        var removed = tasks.stream().filter(task -> task.priority() == priority).toList();
+        tasks.removeAll(removed);
+        return removed;
+    }
+
+    @Override
+    public Task pollOldest() {
+        return tasks.isEmpty() ? null : tasks.remove(0);
+    }
+
+    @Override
+    public Task pollOldestBelow(Priority priority) {
+        var victim = tasks.stream()
+                .filter(task -> task.priority().getNumericalPriority() < priority.getNumericalPriority())
+                .min(Comparator.comparing(Task::priority, Priority.BY_PRIORITY));
+        victim.ifPresent(tasks::remove);
+        return victim.orElse(null);
+    }
+
+    @Override
+    public TasksView view(SortCriteria sortCriteria, SortOrder sortOrder) {
+        var sorted = new ArrayList<>(tasks);
+        switch (sortCriteria){
+            case FIFO -> {
+                if (sortOrder == SortOrder.DESCENDING){
+                    Collections.reverse(sorted);
+                }
+            }
+            case PID -> sorted.sort(sortOrder == SortOrder.ASCENDING ? Task.BY_PID_COMP : Task.BY_PID_COMP.reversed());
+            // stable sort, so the FIFO order is kept inside a priority
+            case PRIORITY -> sorted.sort(Comparator.comparing(Task::priority,
+                    sortOrder == SortOrder.ASCENDING ? Priority.BY_PRIORITY : Priority.BY_PRIORITY.reversed()));
+            default -> throw new UnsupportedOperationException(sortCriteria+ " not implemented");
+        }
+        return sorted::forEach;
+    }
+}
@@ -0,0 +1,264 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardedTaskManagerTest {
+
+    private static final int CAPACITY = 8;
+
+    @Test
+    public void mergesTheShardsInEveryOrder(){
+        // given a sharded task manager with 3 shards and tasks spread over all of them
+        var taskManager = new ShardedTaskManager(Strategy.BLOCK, CAPACITY, 3);
+        var added = new ArrayList<Task>();
+        var priorities = List.of(Priority.LOW, Priority.HIGH, Priority.MEDIUM, Priority.LOW, Priority.HIGH,
+                Priority.MEDIUM, Priority.LOW);
+        for (var priority : priorities){
+            added.add(taskManager.add(priority).orElseThrow());
+        }
+        assertThat(added.stream().map(task -> task.pid().pid() % 3).distinct().count()).isEqualTo(3);
+
+        // when listing every order
+        // then the shards are merged as if there was a single one
+        assertEquals(added, listed(taskManager, SortCriteria.FIFO, SortOrder.ASCENDING));
+        assertEquals(reversed(added), listed(taskManager, SortCriteria.FIFO, SortOrder.DESCENDING));
+        var byPID = new ArrayList<>(added);
+        byPID.sort(Task.BY_PID_COMP);
+        assertEquals(byPID, listed(taskManager, SortCriteria.PID, SortOrder.ASCENDING));
+        assertEquals(reversed(byPID), listed(taskManager, SortCriteria.PID, SortOrder.DESCENDING));
+        // the sort is stable, so the tasks of a priority keep the FIFO order
+        var byPriority = new ArrayList<>(added);
+        byPriority.sort(Comparator.comparing(task -> task.priority().rank()));
+        assertEquals(byPriority, listed(taskManager, SortCriteria.PRIORITY, SortOrder.ASCENDING));
+        byPriority.sort(Comparator.comparing(task -> -task.priority().rank()));
+        assertEquals(byPriority, listed(taskManager, SortCriteria.PRIORITY, SortOrder.DESCENDING));
+    }
+
+    @Test
+    public void blockRejectsOnlyWhenEveryShardIsFull(){
+        // given a blocking sharded task manager with 3 shards
+        var taskManager = new ShardedTaskManager(Strategy.BLOCK, CAPACITY, 3);
+
+        // when adding over the capacity
+        var added = new ArrayList<Task>();
+        for (int i = 0; i < CAPACITY; i++){
+            added.add(taskManager.add(Priority.LOW).orElseThrow());
+        }
+        var rejected = taskManager.add(Priority.HIGH);
+
+        // then only the task over the capacity is rejected, and it is accepted once a task of any shard is killed
+        assertTrue(rejected.isEmpty());
+        taskManager.kill(added.get(CAPACITY - 1));
+        assertTrue(taskManager.add(Priority.HIGH).isPresent());
+        assertTrue(taskManager.add(Priority.HIGH).isEmpty());
+    }
+
+    @Test
+    public void priorityEvictsFromAnyShard(){
+        // given a full priority task manager where a single task has a low priority
+        var taskManager = new ShardedTaskManager(Strategy.PRIORITY, CAPACITY, 4);
+        var added = new ArrayList<Task>();
+        for (int i = 0; i < CAPACITY; i++){
+            added.add(taskManager.add(i == 5 ? Priority.LOW : Priority.HIGH).orElseThrow());
+        }
+
+        // when adding a medium priority task
+        var medium = taskManager.add(Priority.MEDIUM);
+
+        // then the low priority task was evicted, whatever its shard, and no other eviction is possible
+        assertTrue(medium.isPresent());
+        added.remove(5);
+        added.add(medium.get());
+        assertEquals(added, listed(taskManager, SortCriteria.FIFO, SortOrder.ASCENDING));
+        assertTrue(taskManager.add(Priority.LOW).isEmpty());
+    }
+
+    @Test
+    public void routesTasksToTheirShardByPID(){
+        // given a sharded task manager
+        var taskManager = new ShardedTaskManager(Strategy.FIFO, CAPACITY, 4);
+        var tasks = new ArrayList<Task>();
+        for (int i = 0; i < CAPACITY; i++){
+            tasks.add(taskManager.add(Priority.MEDIUM).orElseThrow());
+        }
+
+        // when killing the tasks through the sharded task manager and through the tasks themselves
+        for (int i = 0; i < CAPACITY; i++){
+            if (i % 2 == 0){
+                taskManager.kill(tasks.get(i));
+            } else {
+                tasks.get(i).kill();
+            }
+        }
+
+        // then every task was created for the sharded task manager and every task is gone
+        assertThat(tasks).allMatch(task -> task.taskManager() == taskManager);
+        assertThat(listed(taskManager, SortCriteria.PID, SortOrder.ASCENDING)).isEmpty();
+    }
+
+    @Test
+    public void canKillWhileListing(){
+        // given a sharded task manager with tasks on every shard
+        var taskManager = new ShardedTaskManager(Strategy.BLOCK, CAPACITY, 3);
+        for (int i = 0; i < 6; i++){
+            taskManager.add(Priority.of(i + 1));
+        }
+
+        // when killing every listed task, the consumer running outside of the shard locks
+        var killed = new ArrayList<Task>();
+        taskManager.list(task -> {
+            killed.add(task);
+            task.kill();
+        }, SortCriteria.PID, SortOrder.ASCENDING);
+
+        // then the listing saw all of them and none is left
+        assertThat(killed).hasSize(6);
+        assertThat(listed(taskManager, SortCriteria.PID, SortOrder.ASCENDING)).isEmpty();
+    }
+
+    @Test
+    public void visitStopsTheMergeOutsideOfTheLocks(){
+        // given a sharded task manager with tasks on every shard
+        var taskManager = new ShardedTaskManager(Strategy.BLOCK, CAPACITY, 3);
+        var added = new ArrayList<Task>();
+        for (int i = 0; i < 6; i++){
+            added.add(taskManager.add(Priority.LOW).orElseThrow());
+        }
+
+        // when the visitor kills the first two tasks and stops
+        var visited = new ArrayList<Task>();
+        taskManager.visit(task -> {
+            visited.add(task);
+            task.kill();
+            return visited.size() < 2;
+        }, SortCriteria.FIFO, SortOrder.ASCENDING);
+
+        // then only those were visited and the others are left in order
+        assertEquals(added.subList(0, 2), visited);
+        assertEquals(added.subList(2, 6), listed(taskManager, SortCriteria.FIFO, SortOrder.ASCENDING));
+    }
+
+    @Test
+    public void capacityHoldsUnderConcurrentAddAndKill() throws InterruptedException {
+        // given a blocking sharded task manager and several threads adding and killing their own tasks
+        var taskManager = new ShardedTaskManager(Strategy.BLOCK, CAPACITY, 4);
+        var threads = new ArrayList<Thread>();
+        var start = new CountDownLatch(1);
+        var held = new AtomicInteger();
+        var maxHeld = new AtomicInteger();
+        for (int t = 0; t < 4; t++){
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++){
+                    var added = taskManager.add(Priority.values()[i % 3]);
+                    added.ifPresent(task -> maxHeld.accumulateAndGet(held.incrementAndGet(), Math::max));
+                    taskManager.list(task -> {}, SortCriteria.PRIORITY);
+                    added.ifPresent(task -> {
+                        held.decrementAndGet();
+                        taskManager.kill(task);
+                    });
+                    if (i % 1000 == 0){
+                        taskManager.killByPriority(Priority.LOW);
+                    }
+                }
+            }));
+        }
+
+        // when they run concurrently
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (var thread : threads){
+            thread.join();
+        }
+
+        // then the capacity was never exceeded and every slot was given back
+        assertThat(maxHeld.get()).isLessThanOrEqualTo(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++){
+            assertFalse(taskManager.add(Priority.LOW).isEmpty());
+        }
+        assertTrue(taskManager.add(Priority.LOW).isEmpty());
+    }
+
+    @Test
+    public void expiresTasksInTheirShard() throws InterruptedException {
+        // given a full sharded task manager, one of its tasks with a short time to live
+        var taskManager = new ShardedTaskManager(Strategy.BLOCK, CAPACITY, 3);
+        var expiring = taskManager.add(Priority.LOW, Duration.ofMillis(20)).orElseThrow();
+        for (int i = 1; i < CAPACITY; i++){
+            taskManager.add(Priority.HIGH, Duration.ofHours(1));
+        }
+
+        // when waiting for its time to live to pass
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (taskManager.size() == CAPACITY && System.nanoTime() < deadline){
+            Thread.sleep(5);
+        }
+
+        // then it is gone and its slot can be taken again
+        assertFalse(listed(taskManager, SortCriteria.FIFO, SortOrder.ASCENDING).contains(expiring));
+        assertTrue(taskManager.add(Priority.HIGH).isPresent());
+        assertThrows(IllegalArgumentException.class, () -> taskManager.add(Priority.LOW, Duration.ZERO));
+    }
+
+    @Test
+    public void addAwaitWaitsOnlyWhenEveryShardIsFull() throws InterruptedException {
+        // given a full sharded task manager
+        var taskManager = new ShardedTaskManager(Strategy.BLOCK, CAPACITY, 3);
+        var first = taskManager.add(Priority.LOW).orElseThrow();
+        for (int i = 1; i < CAPACITY; i++){
+            taskManager.add(Priority.LOW);
+        }
+        // a free slot in any shard is taken at once
+        taskManager.kill(first);
+        assertTrue(taskManager.addAwait(Priority.HIGH, Duration.ZERO).isPresent());
+        assertTrue(taskManager.addAwait(Priority.HIGH, Duration.ofMillis(20)).isEmpty());
+
+        // when a producer waits and every task is killed
+        var added = new AtomicReference<Task>();
+        var waiter = new Thread(() -> {
+            try {
+                taskManager.addAwait(Priority.HIGH).ifPresent(added::set);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        while (waiter.getState() != Thread.State.WAITING){
+            Thread.sleep(1);
+        }
+        taskManager.killAll();
+        waiter.join();
+
+        // then it got a slot
+        assertEquals(List.of(added.get()), listed(taskManager, SortCriteria.FIFO, SortOrder.ASCENDING));
+    }
+
+    private static List<Task> listed(TaskManager taskManager, SortCriteria sortCriteria, SortOrder sortOrder){
+        var tasks = new ArrayList<Task>();
+        taskManager.list(tasks::add, sortCriteria, sortOrder);
+        return tasks;
+    }
+
+    private static List<Task> reversed(List<Task> tasks){
+        var reversed = new ArrayList<>(tasks);
+        Collections.reverse(reversed);
+        return reversed;
+    }
+}
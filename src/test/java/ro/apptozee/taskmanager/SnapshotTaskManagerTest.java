@@ -0,0 +1,266 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.LinkedList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SnapshotTaskManagerTest {
+
+    private static final int CAPACITY = 5;
+
+    private TaskManager taskManager;
+
+    @BeforeEach
+    void setUp() {
+        // given a task manager with capacity 5
+        taskManager = new SnapshotTaskManager(CAPACITY, new PIDPool());
+    }
+
+    @Test
+    public void canNotAddWhenNotCapacity(){
+        // given a task manager with capacity 5
+
+        // when adding 6 tasks
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+        var failedAdd = taskManager.add(Priority.HIGH);
+
+        // then only the first 5 tasks were accepted to capacity
+        assertTrue(failedAdd.isEmpty());
+
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(2), Priority.MEDIUM,taskManager),
+                        new Task(new PID(3), Priority.MEDIUM,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void canCreateCapacityByKillAndKillByPriority(){
+        // given a task manager at full capacity
+        var toRemoveOpt = taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when killing a task and all the tasks of a priority
+        taskManager.kill(toRemoveOpt.get());
+        taskManager.killByPriority(Priority.MEDIUM);
+
+        // then exactly 3 tasks can be added
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+        var failedAdd = taskManager.add(Priority.HIGH);
+        assertTrue(failedAdd.isEmpty());
+
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(5), Priority.LOW,taskManager),
+                        new Task(new PID(6), Priority.MEDIUM,taskManager),
+                        new Task(new PID(7), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void canCreateCapacityByKillAll(){
+        // given a task manager at full capacity
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when killing all the tasks
+        taskManager.killAll();
+
+        // then there should be no task left and there is capacity again
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder).isEmpty();
+
+        assertFalse(taskManager.add(Priority.LOW).isEmpty());
+    }
+
+    @Test
+    public void canListBySortCriteria(){
+        // given a task manager with tasks
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when listing by priority descending and by PID descending
+        var byPriority = new LinkedList<>();
+        taskManager.list(byPriority::add, SortCriteria.PRIORITY, SortOrder.DESCENDING);
+        var byPID = new LinkedList<>();
+        taskManager.list(byPID::add, SortCriteria.PID, SortOrder.DESCENDING);
+
+        // then the priorities are reversed but the tasks of a priority keep their insertion order
+        assertThat(byPriority)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(3), Priority.HIGH,taskManager),
+                        new Task(new PID(2), Priority.MEDIUM,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager)
+                ));
+        assertThat(byPID)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(3), Priority.HIGH,taskManager),
+                        new Task(new PID(2), Priority.MEDIUM,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(0), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void listSeesAConsistentSnapshotWhileWritersModify(){
+        // given a task manager with tasks
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+
+        // when the tasks are killed and new ones are added while listing
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(task -> {
+            if (insertionOrder.isEmpty()){
+                taskManager.killAll();
+                taskManager.add(Priority.LOW);
+            }
+            insertionOrder.add(task);
+        });
+
+        // then the listing is not affected by the writer
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(2), Priority.MEDIUM,taskManager)
+                ));
+
+        // and the next listing sees the new version
+        var afterWrite = new LinkedList<>();
+        taskManager.list(afterWrite::add);
+        assertThat(afterWrite)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(3), Priority.LOW,taskManager)
+                ));
+    }
+
+    @Test
+    public void fifoStrategyEvictsTheOldest(){
+        // given a snapshot task manager with the FIFO strategy at full capacity
+        taskManager = new FavorNewSnapshotTaskManager(2, new PIDPool());
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+
+        // when adding a new task
+        taskManager.add(Priority.MEDIUM);
+
+        // then the oldest task was evicted
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(2), Priority.MEDIUM,taskManager)
+                ));
+    }
+
+    @Test
+    public void priorityStrategyEvictsTheOldestLowerPriority(){
+        // given a snapshot task manager with the PRIORITY strategy at full capacity
+        taskManager = new PrioritySnapshotTaskManager(3, new PIDPool());
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.LOW);
+
+        // when adding a task of the lowest priority and then a task of a higher priority
+        var failedAdd = taskManager.add(Priority.LOW);
+        taskManager.add(Priority.HIGH);
+
+        // then only the higher priority task was accepted, evicting the oldest lower priority task
+        assertTrue(failedAdd.isEmpty());
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.MEDIUM,taskManager),
+                        new Task(new PID(2), Priority.LOW,taskManager),
+                        new Task(new PID(3), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void canSelectSnapshotModeForAllStrategies(){
+        for (var strategy: Strategy.values()){
+            assertThat(TaskManager.withStrategy(strategy, CAPACITY, StorageMode.SNAPSHOT))
+                    .isInstanceOf(SnapshotTaskManager.class);
+        }
+    }
+
+    @Test
+    public void timeToLiveIsNotSupported(){
+        assertThrows(UnsupportedOperationException.class, () -> taskManager.add(Priority.LOW, Duration.ofSeconds(1)));
+    }
+
+    @Test
+    public void addAwaitOnlyEvicts() throws InterruptedException {
+        // given a full task manager with the FIFO strategy
+        var fifo = new FavorNewSnapshotTaskManager(1, new PIDPool());
+        var oldest = fifo.add(Priority.LOW).orElseThrow();
+
+        // then it evicts instead of waiting, while the other strategies can not wait
+        assertNotEquals(oldest, fifo.addAwait(Priority.LOW).orElseThrow());
+        assertThrows(UnsupportedOperationException.class, () -> taskManager.addAwait(Priority.LOW));
+    }
+
+    @Test
+    public void countsTheTasksOnEveryPath(){
+        // given a task manager with tasks of every priority
+        taskManager.add(Priority.HIGH);
+        var low = taskManager.add(Priority.LOW).orElseThrow();
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when a task is killed, then the tasks of a priority and at last all of them
+        taskManager.kill(low);
+        var afterKill = taskManager.occupancy();
+        taskManager.killByPriority(Priority.HIGH);
+        var afterKillByPriority = taskManager.occupancy();
+        int mediumCount = taskManager.count(Priority.MEDIUM);
+        taskManager.killAll();
+
+        // then the counters follow every change
+        assertEquals(3, afterKill.size());
+        assertEquals(2, afterKill.remainingCapacity());
+        assertEquals(0, afterKill.count(Priority.LOW));
+        assertEquals(2, afterKill.count(Priority.HIGH));
+        assertEquals(1, afterKillByPriority.size());
+        assertEquals(0, afterKillByPriority.count(Priority.HIGH));
+        assertEquals(1, mediumCount);
+        assertEquals(0, taskManager.size());
+        assertEquals(CAPACITY, taskManager.remainingCapacity());
+        assertEquals(0, taskManager.count(Priority.MEDIUM));
+    }
+}
@@ -0,0 +1,296 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StripedTaskManagerTest {
+
+    private static final int CAPACITY = 5;
+
+    private TaskManager taskManager;
+
+    @BeforeEach
+    void setUp() {
+        // given a striped task manager with the priority strategy and capacity 5
+        taskManager = new PriorityStripedTaskManager(CAPACITY, new PIDPool());
+    }
+
+    @Test
+    public void listsTheFIFOOrderAcrossStripes(){
+        // given tasks of every priority
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        var toRemoveOpt = taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when killing one of them
+        taskManager.kill(toRemoveOpt.get());
+
+        // then the insertion order is kept across the priorities
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add, SortCriteria.FIFO, SortOrder.DESCENDING);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(3), Priority.MEDIUM,taskManager),
+                        new Task(new PID(1), Priority.LOW,taskManager),
+                        new Task(new PID(0), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void canAddWhenFullIfLowerPriorityTaskExists(){
+        // given a task manager that is at full capacity
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.HIGH);
+
+        // when adding a task with a higher priority and then one with the lowest priority
+        taskManager.add(Priority.HIGH);
+        var failedAdd = taskManager.add(Priority.LOW);
+
+        // then the oldest task with the lowest priority was evicted and the last task rejected
+        assertTrue(failedAdd.isEmpty());
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.HIGH,taskManager),
+                        new Task(new PID(1), Priority.MEDIUM,taskManager),
+                        new Task(new PID(3), Priority.LOW,taskManager),
+                        new Task(new PID(4), Priority.HIGH,taskManager),
+                        new Task(new PID(5), Priority.HIGH,taskManager)
+                ));
+    }
+
+    @Test
+    public void behavesLikeThePriorityTaskManager(){
+        // given the same random operations applied to a striped and a single lock task manager
+        var expected = new PriorityTaskManager(50, new PIDPool(), (c, owner) -> new ReferenceTaskStore());
+        var actual = new PriorityStripedTaskManager(50, new PIDPool());
+        var random = new Random(42);
+        var expectedTasks = new ArrayList<Task>();
+        var actualTasks = new ArrayList<Task>();
+
+        for (int i = 0; i < 5_000; i++){
+            int operation = random.nextInt(100);
+            if (operation < 60){
+                var priority = Priority.values()[random.nextInt(3)];
+                var expectedAdd = expected.add(priority);
+                var actualAdd = actual.add(priority);
+                // an eviction kills a task we are still holding on to
+                expectedTasks.removeIf(task -> !contains(expected, task));
+                actualTasks.removeIf(task -> !contains(actual, task));
+                expectedAdd.ifPresent(expectedTasks::add);
+                actualAdd.ifPresent(actualTasks::add);
+            } else if (operation < 97 && !expectedTasks.isEmpty()){
+                int index = random.nextInt(expectedTasks.size());
+                expected.kill(expectedTasks.remove(index));
+                actual.kill(actualTasks.remove(index));
+            } else if (operation < 99){
+                var priority = Priority.values()[random.nextInt(3)];
+                expected.killByPriority(priority);
+                actual.killByPriority(priority);
+                expectedTasks.removeIf(task -> task.priority() == priority);
+                actualTasks.removeIf(task -> task.priority() == priority);
+            } else {
+                expected.killAll();
+                actual.killAll();
+                expectedTasks.clear();
+                actualTasks.clear();
+            }
+
+            // then every view lists the same tasks in the same order
+            for (var sortCriteria : SortCriteria.values()){
+                for (var sortOrder : SortOrder.values()){
+                    assertEquals(listed(expected, sortCriteria, sortOrder), listed(actual, sortCriteria, sortOrder),
+                            sortCriteria + " " + sortOrder + " after operation " + i);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void capacityHoldsUnderConcurrentAddAndKill() throws InterruptedException {
+        // given a blocking striped task manager and several threads adding and killing their own tasks
+        taskManager = new StripedTaskManager(CAPACITY, new PIDPool());
+        var threads = new ArrayList<Thread>();
+        var start = new CountDownLatch(1);
+        // tasks currently owned by the threads, never more than the tasks in the manager
+        var held = new AtomicInteger();
+        var maxHeld = new AtomicInteger();
+        for (int t = 0; t < 4; t++){
+            threads.add(new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 10_000; i++){
+                    var added = taskManager.add(Priority.values()[i % 3]);
+                    added.ifPresent(task -> maxHeld.accumulateAndGet(held.incrementAndGet(), Math::max));
+                    taskManager.list(task -> {}, SortCriteria.PRIORITY);
+                    added.ifPresent(task -> {
+                        held.decrementAndGet();
+                        taskManager.kill(task);
+                    });
+                    if (i % 1000 == 0){
+                        taskManager.killByPriority(Priority.LOW);
+                    }
+                }
+            }));
+        }
+
+        // when they run concurrently
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (var thread : threads){
+            thread.join();
+        }
+
+        // then the capacity was never exceeded and every slot was given back
+        assertThat(maxHeld.get()).isLessThanOrEqualTo(CAPACITY);
+        for (int i = 0; i < CAPACITY; i++){
+            assertFalse(taskManager.add(Priority.LOW).isEmpty());
+        }
+        assertTrue(taskManager.add(Priority.LOW).isEmpty());
+    }
+
+    @Test
+    public void evictsAcrossSparseLevels(){
+        // given a full task manager with tasks on a few levels far apart
+        taskManager.add(Priority.of(200));
+        taskManager.add(Priority.of(5));
+        taskManager.add(Priority.of(100));
+        taskManager.add(Priority.of(5));
+        taskManager.add(Priority.of(250));
+
+        // when adding a task on a level without a stripe yet
+        var added = taskManager.add(Priority.of(150));
+
+        // then the oldest task of the lowest level in use was evicted
+        assertTrue(added.isPresent());
+        var listed = new LinkedList<Task>();
+        taskManager.list(listed::add);
+        assertThat(listed)
+                .isEqualTo(Arrays.asList(
+                        new Task(new PID(0), Priority.of(200),taskManager),
+                        new Task(new PID(2), Priority.of(100),taskManager),
+                        new Task(new PID(3), Priority.of(5),taskManager),
+                        new Task(new PID(4), Priority.of(250),taskManager),
+                        new Task(new PID(5), Priority.of(150),taskManager)
+                ));
+    }
+
+    @Test
+    public void runsTheKillCommandsOnTheKillExecutorOnceTheStripesAreUnlocked(){
+        // given a task manager of capacity 2 whose kill commands are held back until we run them
+        var batches = new ArrayList<Runnable>();
+        var killed = new ArrayList<Task>();
+        var taskManager = new PriorityStripedTaskManager(2, new PIDPool(), batches::add){
+            @Override
+            public void kill(Task task) {
+                killed.add(task);
+                super.kill(task);
+            }
+        };
+        var evicted = taskManager.add(Priority.LOW).orElseThrow();
+        var kept = taskManager.add(Priority.MEDIUM).orElseThrow();
+
+        // when a task is evicted, one is killed and then all of them
+        var added = taskManager.add(Priority.HIGH).orElseThrow();
+        taskManager.kill(kept);
+        killed.clear();
+        taskManager.killAll();
+
+        // then the tasks left the task manager at once and their kill commands only run with the batches, in order
+        assertEquals(0, taskManager.size());
+        assertTrue(killed.isEmpty());
+        assertEquals(3, batches.size());
+        batches.forEach(Runnable::run);
+        assertThat(killed).containsExactly(evicted, kept, added);
+    }
+
+    @Test
+    public void canKillWhileListing(){
+        // given tasks of every priority
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+
+        // when the consumer of the listing kills every task it is given
+        taskManager.list(Task::kill);
+
+        // then none is left
+        var insertionOrder = new LinkedList<>();
+        taskManager.list(insertionOrder::add);
+        assertThat(insertionOrder).isEmpty();
+    }
+
+    @Test
+    public void fifoStrategyIsNotSupported(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> TaskManager.withStrategy(Strategy.FIFO, CAPACITY, StorageMode.STRIPED));
+    }
+
+    @Test
+    public void countsTheTasksOnEveryPath(){
+        // given a task manager with tasks of every priority
+        taskManager.add(Priority.HIGH);
+        var low = taskManager.add(Priority.LOW).orElseThrow();
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+
+        // when a task is killed, then the tasks of a priority and at last all of them
+        taskManager.kill(low);
+        var afterKill = taskManager.occupancy();
+        taskManager.killByPriority(Priority.HIGH);
+        var afterKillByPriority = taskManager.occupancy();
+        int mediumCount = taskManager.count(Priority.MEDIUM);
+        taskManager.killAll();
+
+        // then the counters follow every change
+        assertEquals(3, afterKill.size());
+        assertEquals(2, afterKill.remainingCapacity());
+        assertEquals(0, afterKill.count(Priority.LOW));
+        assertEquals(2, afterKill.count(Priority.HIGH));
+        assertEquals(1, afterKillByPriority.size());
+        assertEquals(0, afterKillByPriority.count(Priority.HIGH));
+        assertEquals(1, mediumCount);
+        assertEquals(0, taskManager.size());
+        assertEquals(CAPACITY, taskManager.remainingCapacity());
+        assertEquals(0, taskManager.count(Priority.MEDIUM));
+    }
+
+    private static boolean contains(TaskManager taskManager, Task task){
+        var found = new AtomicInteger();
+        taskManager.list(listed -> {
+            if (listed.equals(task)){
+                found.incrementAndGet();
+            }
+        });
+        return found.get() > 0;
+    }
+
+    // the tasks reference their own task manager, so we only compare PID and priority
+    private static List<String> listed(TaskManager taskManager, SortCriteria sortCriteria, SortOrder sortOrder){
+        var tasks = new ArrayList<String>();
+        taskManager.list(task -> tasks.add(task.pid().pid() + ":" + task.priority()), sortCriteria, sortOrder);
+        return tasks;
+    }
+}
@@ -0,0 +1,162 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.events.TaskEvent;
+import ro.apptozee.taskmanager.events.TaskSubscriber;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class SubscriptionTest {
+
+    private static final int CAPACITY = 3;
+
+    @Test
+    public void deliversTheSnapshotThenEveryChange() throws InterruptedException {
+        // given a FIFO task manager with a task and a subscriber
+        var taskManager = new FavorNewTaskManager(CAPACITY, new PIDPool());
+        var first = taskManager.add(Priority.LOW).orElseThrow();
+        var subscriber = new RecordingSubscriber();
+        taskManager.subscribe(subscriber, 16);
+
+        // when tasks are added, evicted and killed
+        var second = taskManager.add(Priority.HIGH).orElseThrow();
+        var third = taskManager.add(Priority.MEDIUM).orElseThrow();
+        var fourth = taskManager.add(Priority.LOW).orElseThrow();
+        taskManager.kill(third);
+        taskManager.killAll();
+
+        // then the subscriber gets the snapshot and the events in order, the eviction being marked as such
+        assertEquals(List.of(first), subscriber.received.poll(1, TimeUnit.SECONDS));
+        assertThat(subscriber.events(7)).containsExactly(
+                new TaskEvent(TaskEvent.Type.ADDED, second),
+                new TaskEvent(TaskEvent.Type.ADDED, third),
+                new TaskEvent(TaskEvent.Type.EVICTED, first),
+                new TaskEvent(TaskEvent.Type.ADDED, fourth),
+                new TaskEvent(TaskEvent.Type.KILLED, third),
+                new TaskEvent(TaskEvent.Type.KILLED, second),
+                new TaskEvent(TaskEvent.Type.KILLED, fourth));
+    }
+
+    @Test
+    public void onlyTheLockingModesPublishTheirChanges(){
+        for (var storageMode : List.of(StorageMode.SNAPSHOT, StorageMode.LOCK_FREE, StorageMode.STRIPED, StorageMode.SHARDED)){
+            var taskManager = TaskManager.withStrategy(Strategy.BLOCK, CAPACITY, storageMode);
+            assertThrows(UnsupportedOperationException.class, () -> taskManager.subscribe(new RecordingSubscriber(), 16),
+                    storageMode.name());
+        }
+    }
+
+    @Test
+    public void reportsTheOverflowOfASlowSubscriber() throws InterruptedException {
+        // given a subscriber with a buffer of 2 events that is stuck in its first callback
+        var taskManager = new BaseTaskManager(10, new PIDPool());
+        var release = new CountDownLatch(1);
+        var subscriber = new RecordingSubscriber(){
+            @Override
+            public void onSnapshot(List<Task> tasks) {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        taskManager.subscribe(subscriber, 2);
+
+        // when 5 tasks are added and then the subscriber catches up before 1 more task is added
+        var tasks = new ArrayList<Task>();
+        for (int i = 0; i < 5; i++){
+            tasks.add(taskManager.add(Priority.MEDIUM).orElseThrow());
+        }
+        release.countDown();
+
+        // then the writers were never blocked, the events before the gap come first, then the size of the gap
+        assertThat(subscriber.events(2)).containsExactly(
+                new TaskEvent(TaskEvent.Type.ADDED, tasks.get(0)),
+                new TaskEvent(TaskEvent.Type.ADDED, tasks.get(1)));
+        assertEquals(3L, subscriber.received.poll(1, TimeUnit.SECONDS));
+        var last = taskManager.add(Priority.HIGH).orElseThrow();
+        assertThat(subscriber.events(1)).containsExactly(new TaskEvent(TaskEvent.Type.ADDED, last));
+    }
+
+    @Test
+    public void stopsDeliveringOnceClosed() throws InterruptedException {
+        // given a closed subscription
+        var taskManager = new PriorityTaskManager(CAPACITY, new PIDPool());
+        var subscriber = new RecordingSubscriber();
+        var subscription = taskManager.subscribe(subscriber, 16);
+        assertEquals(List.of(), subscriber.received.poll(1, TimeUnit.SECONDS));
+        subscription.close();
+
+        // when the task manager is modified
+        taskManager.add(Priority.LOW);
+
+        // then nothing is delivered
+        assertNull(subscriber.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void reportsTheFailureOfASubscriber() throws InterruptedException {
+        // given a subscriber that fails on its first events
+        var taskManager = new PriorityTaskManager(CAPACITY, new PIDPool());
+        var failure = new IllegalStateException("subscriber bug");
+        var subscriber = new RecordingSubscriber(){
+            @Override
+            public void onEvents(List<TaskEvent> events) {
+                throw failure;
+            }
+        };
+        taskManager.subscribe(subscriber, 16);
+        assertEquals(List.of(), subscriber.received.poll(1, TimeUnit.SECONDS));
+
+        // when the task manager is modified
+        taskManager.add(Priority.LOW);
+
+        // then the subscriber is told why it was unsubscribed and nothing follows
+        assertSame(failure, subscriber.received.poll(1, TimeUnit.SECONDS));
+        taskManager.add(Priority.HIGH);
+        assertNull(subscriber.received.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    // every callback is queued: the snapshot, the events one by one, the overflows and the failures
+    private static class RecordingSubscriber implements TaskSubscriber {
+        final BlockingQueue<Object> received = new LinkedBlockingQueue<>();
+
+        @Override
+        public void onSnapshot(List<Task> tasks) {
+            received.add(tasks);
+        }
+
+        @Override
+        public void onEvents(List<TaskEvent> events) {
+            received.addAll(events);
+        }
+
+        @Override
+        public void onOverflow(long lost) {
+            received.add(lost);
+        }
+
+        @Override
+        public void onError(RuntimeException failure) {
+            received.add(failure);
+        }
+
+        List<Object> events(int count) throws InterruptedException {
+            var events = new ArrayList<>();
+            for (int i = 0; i < count; i++){
+                events.add(received.poll(1, TimeUnit.SECONDS));
+            }
+            return events;
+        }
+    }
+}
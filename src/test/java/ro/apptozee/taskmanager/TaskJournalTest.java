@@ -0,0 +1,286 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import ro.apptozee.taskmanager.journal.CheckpointedTaskJournal;
+import ro.apptozee.taskmanager.journal.FsyncPolicy;
+import ro.apptozee.taskmanager.journal.MappedTaskJournal;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.CompactTaskStore;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskJournalTest {
+
+    private static final int CAPACITY = 5;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    public void recoversTheTasksAndThePIDPoolAfterARestart(){
+        // given a FIFO task manager journaling every modification, with an eviction, a kill and a kill by priority
+        var path = directory.resolve("tasks.journal");
+        var journal = new MappedTaskJournal(path, FsyncPolicy.GROUP_COMMIT);
+        var taskManager = new FavorNewTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, journal);
+        var tasks = new ArrayList<Task>();
+        for (var priority : List.of(Priority.LOW, Priority.HIGH, Priority.MEDIUM, Priority.LOW, Priority.HIGH, Priority.MEDIUM)){
+            tasks.add(taskManager.add(priority).orElseThrow());
+        }
+        taskManager.kill(tasks.get(2));
+        taskManager.killByPriority(Priority.LOW);
+        taskManager.add(Priority.HIGH);
+        var before = listed(taskManager);
+        journal.close();
+
+        // when the task manager is created again from the same journal
+        var reopened = new MappedTaskJournal(path, FsyncPolicy.GROUP_COMMIT);
+        var recovered = new FavorNewTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, reopened);
+
+        // then every order is the same and the PIDs continue where they stopped
+        assertEquals(before, listed(recovered));
+        assertEquals(new Task(new PID(7), Priority.LOW, recovered), recovered.add(Priority.LOW).orElseThrow());
+        reopened.close();
+    }
+
+    @Test
+    public void stopsAtATornRecord() throws IOException {
+        // given a journal of three adds where the last record was torn by a crash
+        var path = directory.resolve("tasks.journal");
+        var journal = new MappedTaskJournal(path, FsyncPolicy.NONE);
+        var taskManager = new BaseTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new ReferenceTaskStore(),
+                TaskManagerMetrics.DISABLED, journal);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+        journal.close();
+        try (var channel = FileChannel.open(directory.resolve("tasks.journal.0000000000"), StandardOpenOption.WRITE)){
+            // the checksum of the third record
+            channel.write(ByteBuffer.wrap(new byte[]{1, 2}), 2 * 16 + 14);
+        }
+
+        // when the task manager is recovered and modified again
+        var reopened = new MappedTaskJournal(path, FsyncPolicy.NONE);
+        var recovered = new BaseTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new ReferenceTaskStore(),
+                TaskManagerMetrics.DISABLED, reopened);
+        var firstAfterRecovery = fifo(recovered);
+        recovered.add(Priority.LOW);
+        reopened.close();
+        var again = new MappedTaskJournal(path, FsyncPolicy.NONE);
+        var recoveredAgain = new BaseTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new ReferenceTaskStore(),
+                TaskManagerMetrics.DISABLED, again);
+
+        // then only the records before the torn one were replayed and the new records replaced it
+        assertThat(firstAfterRecovery).containsExactly("0:LOW", "1:MEDIUM");
+        assertThat(fifo(recoveredAgain)).containsExactly("0:LOW", "1:MEDIUM", "2:LOW");
+        again.close();
+    }
+
+    @Test
+    public void growsOverSeveralSegments(){
+        // given a journal with segments of 4 records flushed in the background
+        var path = directory.resolve("tasks.journal");
+        var journal = new MappedTaskJournal(path, FsyncPolicy.PERIODIC, Duration.ofMillis(1), 4);
+        var taskManager = new PriorityTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new ReferenceTaskStore(),
+                TaskManagerMetrics.DISABLED, journal);
+
+        // when writing many more records than a segment holds
+        for (int i = 0; i < 50; i++){
+            var task = taskManager.add(Priority.values()[i % 3]);
+            if (i % 4 == 0){
+                task.ifPresent(taskManager::kill);
+            }
+            if (i % 10 == 0){
+                taskManager.killAll();
+            }
+        }
+        var before = listed(taskManager);
+        long records = journal.position();
+        journal.close();
+
+        // then all of them are replayed
+        var reopened = new MappedTaskJournal(path, FsyncPolicy.PERIODIC, Duration.ofMillis(1), 4);
+        var recovered = new PriorityTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new ReferenceTaskStore(),
+                TaskManagerMetrics.DISABLED, reopened);
+        assertThat(records).isGreaterThan(4 * 4);
+        assertEquals(records, reopened.position());
+        assertEquals(before, listed(recovered));
+        reopened.close();
+    }
+
+    @Test
+    public void restoresTheNewestCheckpointAndTheRecordsAfterIt() throws IOException {
+        // given a priority task manager checkpointed three times while it is modified
+        var path = directory.resolve("tasks.journal");
+        var checkpoints = directory.resolve("checkpoints");
+        var journal = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints);
+        var taskManager = new PriorityTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, journal);
+        for (int i = 0; i < 30; i++){
+            var task = taskManager.add(Priority.values()[i % 3]);
+            if (i % 7 == 0){
+                task.ifPresent(taskManager::kill);
+            }
+            if (i % 10 == 9){
+                taskManager.checkpoint();
+            }
+        }
+        taskManager.killByPriority(Priority.MEDIUM);
+        var before = listed(taskManager);
+        journal.close();
+
+        // when the task manager is created again
+        var reopened = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints);
+        var recovered = new PriorityTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, reopened);
+
+        // then the state is the same and only the two newest checkpoints were kept
+        assertEquals(before, listed(recovered));
+        try (var files = Files.list(checkpoints)){
+            assertThat(files.count()).isEqualTo(2);
+        }
+        reopened.close();
+    }
+
+    @Test
+    public void fallsBackToThePreviousCheckpointWhenTheNewestIsDamaged() throws IOException {
+        // given two checkpoints, the newest one being damaged
+        var path = directory.resolve("tasks.journal");
+        var checkpoints = directory.resolve("checkpoints");
+        var journal = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints);
+        var taskManager = new BaseTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new ReferenceTaskStore(),
+                TaskManagerMetrics.DISABLED, journal);
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.HIGH);
+        taskManager.checkpoint();
+        var killed = taskManager.add(Priority.MEDIUM).orElseThrow();
+        taskManager.kill(killed);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.checkpoint();
+        taskManager.add(Priority.HIGH);
+        var before = listed(taskManager);
+        journal.close();
+        try (var files = Files.list(checkpoints)){
+            var newest = files.max(Path::compareTo).orElseThrow();
+            try (var channel = FileChannel.open(newest, StandardOpenOption.WRITE)){
+                channel.write(ByteBuffer.wrap(new byte[]{42}), 20);
+            }
+        }
+
+        // when the task manager is created again
+        var reopened = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints);
+        var recovered = new BaseTaskManager(CAPACITY, new PIDPool(), (c, owner) -> new ReferenceTaskStore(),
+                TaskManagerMetrics.DISABLED, reopened);
+
+        // then the older checkpoint and the longer tail of the journal give the same state
+        assertEquals(before, listed(recovered));
+        reopened.close();
+    }
+
+    @Test
+    public void startsFromTheCheckpointWhenTheJournalEndsBeforeIt() throws IOException {
+        // given a checkpoint whose last journal records were lost, as after a crash without fsync
+        var path = directory.resolve("tasks.journal");
+        var checkpoints = directory.resolve("checkpoints");
+        var journal = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints);
+        var taskManager = new BaseTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, journal);
+        taskManager.add(Priority.LOW);
+        var killed = taskManager.add(Priority.HIGH).orElseThrow();
+        taskManager.add(Priority.MEDIUM);
+        taskManager.kill(killed);
+        taskManager.checkpoint();
+        var before = listed(taskManager);
+        long position = journal.position();
+        journal.close();
+        try (var channel = FileChannel.open(directory.resolve("tasks.journal.0000000000"), StandardOpenOption.WRITE)){
+            channel.write(ByteBuffer.allocate(2 * 16), (position - 2) * 16);
+        }
+
+        // when the task manager is created again and modified
+        var reopened = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints);
+        var recovered = new BaseTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, reopened);
+        var restored = listed(recovered);
+        recovered.add(Priority.HIGH);
+        var after = listed(recovered);
+        reopened.close();
+
+        // then it starts from the checkpoint and the records appended at the shorter end of the journal are replayed after it
+        assertEquals(before, restored);
+        var again = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE), checkpoints);
+        var restarted = new BaseTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, again);
+        assertEquals(after, listed(restarted));
+        again.close();
+    }
+
+    @Test
+    public void dropsTheSegmentsBeforeTheOldestCheckpoint() throws IOException {
+        // given a journal with segments of 4 records and a priority task manager checkpointed while it is modified
+        var path = directory.resolve("tasks.journal");
+        var checkpoints = directory.resolve("checkpoints");
+        var journal = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE, Duration.ofMillis(10), 4),
+                checkpoints);
+        var taskManager = new PriorityTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, journal);
+
+        // when writing many more records than a segment holds
+        for (int i = 0; i < 200; i++){
+            var task = taskManager.add(Priority.values()[i % 3]);
+            if (i % 5 == 0){
+                task.ifPresent(taskManager::kill);
+            }
+            if (i % 20 == 19){
+                taskManager.checkpoint();
+            }
+        }
+        taskManager.add(Priority.HIGH);
+        var before = listed(taskManager);
+        journal.close();
+
+        // then only the segments after the older of the two checkpoints are left and they are enough to recover
+        try (var files = Files.list(directory)){
+            assertThat(files.filter(file -> file.getFileName().toString().startsWith("tasks.journal.")).count())
+                    .isLessThanOrEqualTo(20);
+        }
+        var reopened = new CheckpointedTaskJournal(new MappedTaskJournal(path, FsyncPolicy.NONE, Duration.ofMillis(10), 4),
+                checkpoints);
+        var recovered = new PriorityTaskManager(CAPACITY, new PIDPool(), CompactTaskStore::new,
+                TaskManagerMetrics.DISABLED, reopened);
+        assertEquals(before, listed(recovered));
+        assertThat(Files.exists(directory.resolve("tasks.journal.0000000000"))).isFalse();
+        reopened.close();
+    }
+
+    // every order, the tasks reference their own task manager so we only compare PID and priority
+    private static List<String> listed(TaskManager taskManager){
+        var tasks = new ArrayList<String>();
+        for (var sortCriteria : SortCriteria.values()){
+            for (var sortOrder : SortOrder.values()){
+                taskManager.list(task -> tasks.add(task.pid().pid() + ":" + task.priority()), sortCriteria, sortOrder);
+            }
+        }
+        return tasks;
+    }
+
+    private static List<String> fifo(TaskManager taskManager){
+        var tasks = new ArrayList<String>();
+        taskManager.list(task -> tasks.add(task.pid().pid() + ":" + task.priority()));
+        return tasks;
+    }
+}
@@ -0,0 +1,188 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.metrics.LatencyHistogram;
+import ro.apptozee.taskmanager.metrics.Operation;
+import ro.apptozee.taskmanager.metrics.RejectionCause;
+import ro.apptozee.taskmanager.metrics.TaskManagerMetrics;
+import ro.apptozee.taskmanager.storage.LinkedTaskStore;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TaskManagerMetricsTest {
+
+    @Test
+    public void countsAdmissionsRejectionsEvictionsAndOccupancy(){
+        // given a priority task manager with metrics and capacity 3
+        var metrics = TaskManagerMetrics.create();
+        var taskManager = TaskManager.withStrategy(Strategy.PRIORITY, 3, StorageMode.LOCKING, metrics);
+
+        // when filling it, evicting a task and being rejected
+        taskManager.add(Priority.LOW);
+        var killed = taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.MEDIUM);
+        taskManager.add(Priority.HIGH);
+        taskManager.add(Priority.LOW);
+        taskManager.kill(killed.get());
+
+        // then every outcome is counted
+        var snapshot = metrics.snapshot();
+        assertEquals(4, snapshot.admissions());
+        assertEquals(1, snapshot.rejections().get(RejectionCause.NO_LOWER_PRIORITY));
+        assertEquals(0, snapshot.rejections().get(RejectionCause.CAPACITY));
+        assertEquals(1, snapshot.evictions().get(Strategy.PRIORITY));
+        assertThat(snapshot.occupancy())
+                .isEqualTo(Map.of(Priority.LOW, 0L, Priority.MEDIUM, 1L, Priority.HIGH, 1L));
+        // the reentrant kill of the evicted task is not counted
+        assertEquals(1, snapshot.operationLatencies().get(Operation.KILL).count());
+        assertEquals(5, snapshot.operationLatencies().get(Operation.ADD).count());
+        assertEquals(6, snapshot.writeLockWait().count());
+        assertEquals(6, snapshot.writeLockHold().count());
+    }
+
+    @Test
+    public void tellsTheRejectionCausesApart(){
+        // given a blocking task manager with metrics whose PID pool runs out after 2 PIDs
+        var metrics = TaskManagerMetrics.create();
+        PIDPool pidPool = mock(PIDPool.class);
+        when(pidPool.getPID()).thenReturn(new PID(0), new PID(1)).thenThrow(new PIDPool.PIDPoolFullException());
+        var taskManager = new BaseTaskManager(2, pidPool, (c, owner) -> new LinkedTaskStore(), metrics);
+        var full = new BaseTaskManager(1, new PIDPool(), (c, owner) -> new LinkedTaskStore(), metrics);
+
+        // when adding over the capacity of the PID pool and over the capacity of the task manager
+        var killed = taskManager.add(Priority.LOW);
+        taskManager.kill(killed.get());
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.LOW);
+        full.add(Priority.HIGH);
+        full.add(Priority.HIGH);
+
+        // then both causes are counted separately
+        var snapshot = metrics.snapshot();
+        assertEquals(1, snapshot.rejections().get(RejectionCause.PID_POOL_EXHAUSTED));
+        assertEquals(1, snapshot.rejections().get(RejectionCause.CAPACITY));
+    }
+
+    @Test
+    public void countsTheAddsThatAwait() throws InterruptedException {
+        // given a full blocking task manager with metrics and capacity 1
+        var metrics = TaskManagerMetrics.create();
+        var taskManager = new BaseTaskManager(1, new PIDPool(), (c, owner) -> new LinkedTaskStore(), metrics);
+        var first = taskManager.addAwait(Priority.LOW).orElseThrow();
+
+        // when an await times out, one gives up right away and one is served after a kill
+        taskManager.addAwait(Priority.LOW, Duration.ofMillis(10));
+        taskManager.addAwait(Priority.LOW, Duration.ZERO);
+        var waiting = new Thread(() -> {
+            try {
+                taskManager.addAwait(Priority.HIGH, Duration.ofSeconds(Long.MAX_VALUE));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiting.start();
+        // parked waiting for a slot (the timeout is too long for a timed wait)
+        while (waiting.getState() != Thread.State.WAITING){
+            Thread.onSpinWait();
+        }
+        taskManager.kill(first);
+        waiting.join();
+
+        // then the awaits are counted like the adds
+        var snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.admissions());
+        assertEquals(2, snapshot.rejections().get(RejectionCause.CAPACITY));
+        assertEquals(4, snapshot.operationLatencies().get(Operation.ADD).count());
+    }
+
+    @Test
+    public void measuresTheReadLockOnlyWhenAViewIsBuilt(){
+        // given a task manager with metrics and a task
+        var metrics = TaskManagerMetrics.create();
+        var taskManager = TaskManager.withStrategy(Strategy.BLOCK, 3, StorageMode.COMPACT, metrics);
+        taskManager.add(Priority.LOW);
+
+        // when listing the same view twice
+        taskManager.list(task -> {}, SortCriteria.PID);
+        taskManager.list(task -> {}, SortCriteria.PID);
+
+        // then both listings are measured but the second one did not take the read lock
+        var snapshot = metrics.snapshot();
+        assertEquals(2, snapshot.operationLatencies().get(Operation.LIST).count());
+        assertEquals(1, snapshot.readLockHold().get(SortCriteria.PID).count());
+        assertEquals(0, snapshot.readLockHold().get(SortCriteria.FIFO).count());
+    }
+
+    @Test
+    public void recordsNothingWhenDisabled(){
+        // given a task manager without metrics
+        var taskManager = TaskManager.withStrategy(Strategy.FIFO, 1, StorageMode.LOCKING);
+
+        // when using it
+        taskManager.add(Priority.LOW);
+        taskManager.add(Priority.LOW);
+        taskManager.list(task -> {});
+
+        // then nothing was recorded
+        var snapshot = TaskManagerMetrics.DISABLED.snapshot();
+        assertEquals(0, snapshot.admissions());
+        assertEquals(0, snapshot.operationLatencies().get(Operation.ADD).count());
+        assertEquals(0, snapshot.evictions().get(Strategy.FIFO));
+    }
+
+    @Test
+    public void histogramPercentilesAreBucketUpperBounds(){
+        // given a histogram with 99 fast values and a slow one
+        var histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++){
+            histogram.record(100);
+        }
+        histogram.record(1_000_000);
+
+        // when taking a snapshot
+        var snapshot = histogram.snapshot();
+
+        // then the percentiles are within a factor of 2 of the values
+        assertEquals(100, snapshot.count());
+        assertEquals(127, snapshot.percentileNanos(50));
+        assertEquals(127, snapshot.percentileNanos(99));
+        assertEquals(1_000_000, snapshot.percentileNanos(100));
+        assertEquals(1_000_000, snapshot.maxNanos());
+    }
+
+    @Test
+    public void isExposedAsAnMBean() throws Exception {
+        // given metrics registered in the platform MBean server
+        var metrics = TaskManagerMetrics.create();
+        var objectName = metrics.registerMBean("test");
+        try {
+            var taskManager = TaskManager.withStrategy(Strategy.BLOCK, 1, StorageMode.LOCKING, metrics);
+
+            // when adding tasks
+            taskManager.add(Priority.LOW);
+            taskManager.add(Priority.LOW);
+
+            // then the counters can be read through JMX
+            var server = ManagementFactory.getPlatformMBeanServer();
+            assertEquals(1L, server.getAttribute(objectName, "Admissions"));
+            assertNotNull(server.getAttribute(objectName, "Rejections"));
+            assertNotNull(server.getAttribute(objectName, "LatencyP99"));
+        } finally {
+            metrics.unregisterMBean(objectName);
+        }
+    }
+
+    @Test
+    public void metricsAreOnlySupportedByTheLockingModes(){
+        assertThrows(UnsupportedOperationException.class,
+                () -> TaskManager.withStrategy(Strategy.BLOCK, 1, StorageMode.SNAPSHOT, TaskManagerMetrics.create()));
+    }
+}
@@ -0,0 +1,268 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.storage.CompactTaskStore;
+import ro.apptozee.taskmanager.storage.LinkedTaskStore;
+import ro.apptozee.taskmanager.storage.RingTaskStore;
+import ro.apptozee.taskmanager.storage.TaskStore;
+import ro.apptozee.taskmanager.vo.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TaskStoreTest {
+
+    // a handful of levels spread over the whole range, so that most levels are empty
+    private static final Priority[] SPREAD_LEVELS = {Priority.of(0), Priority.of(63), Priority.of(64), Priority.of(130), Priority.of(255)};
+
+    @Test
+    public void linkedStoreBehavesLikeTheReference(){
+        behavesLikeTheReference((c, owner) -> new LinkedTaskStore(), Priority.values());
+    }
+
+    @Test
+    public void compactStoreBehavesLikeTheReference(){
+        behavesLikeTheReference(CompactTaskStore::new, Priority.values());
+    }
+
+    @Test
+    public void ringStoreBehavesLikeTheReference(){
+        behavesLikeTheReference(RingTaskStore::new, Priority.values());
+    }
+
+    @Test
+    public void storesBehaveLikeTheReferenceWithManyLevels(){
+        behavesLikeTheReference((c, owner) -> new LinkedTaskStore(), SPREAD_LEVELS);
+        behavesLikeTheReference(CompactTaskStore::new, SPREAD_LEVELS);
+        behavesLikeTheReference(RingTaskStore::new, SPREAD_LEVELS);
+    }
+
+    private static void behavesLikeTheReference(TaskStore.Factory storeFactory, Priority[] priorities){
+        // given the same random operations applied to both stores, for every strategy
+        for (var strategy : Strategy.values()){
+            var expected = withStore(strategy, (c, owner) -> new ReferenceTaskStore());
+            var actual = withStore(strategy, storeFactory);
+            var random = new Random(strategy.ordinal());
+            var expectedTasks = new ArrayList<Task>();
+            var actualTasks = new ArrayList<Task>();
+
+            for (int i = 0; i < 5_000; i++){
+                int operation = random.nextInt(100);
+                if (operation < 60){
+                    var priority = priorities[random.nextInt(priorities.length)];
+                    expected.add(priority).ifPresent(expectedTasks::add);
+                    actual.add(priority).ifPresent(actualTasks::add);
+                } else if (operation < 97 && !expectedTasks.isEmpty()){
+                    int index = random.nextInt(expectedTasks.size());
+                    expected.kill(expectedTasks.remove(index));
+                    actual.kill(actualTasks.remove(index));
+                } else if (operation < 99){
+                    var priority = priorities[random.nextInt(priorities.length)];
+                    expected.killByPriority(priority);
+                    actual.killByPriority(priority);
+                } else {
+                    expected.killAll();
+                    actual.killAll();
+                }
+
+                // then the first tasks are visited in the same order, walking the store before any view is cached
+                int visited = random.nextInt(10);
+                assertEquals(visited(expected, visited), visited(actual, visited), visited + " visited after operation " + i);
+                // and every view lists the same tasks in the same order
+                for (var sortCriteria : SortCriteria.values()){
+                    for (var sortOrder : SortOrder.values()){
+                        assertEquals(listed(expected, sortCriteria, sortOrder), listed(actual, sortCriteria, sortOrder),
+                                strategy + " " + sortCriteria + " " + sortOrder + " after operation " + i);
+                    }
+                }
+                // and so does a random query
+                var query = randomQuery(random, priorities);
+                assertEquals(queried(expected, query), queried(actual, query), query + " after operation " + i);
+            }
+        }
+    }
+
+    private static TaskManager withStore(Strategy strategy, TaskStore.Factory storeFactory){
+        return switch (strategy){
+            case BLOCK -> new BaseTaskManager(50, pidPool(), storeFactory);
+            case FIFO -> new FavorNewTaskManager(50, pidPool(), storeFactory);
+            case PRIORITY -> new PriorityTaskManager(50, pidPool(), storeFactory);
+        };
+    }
+
+    @Test
+    public void linkedStoreQueriesSparsePIDRanges(){
+        // given a store whose PIDs have a gap much larger than the lookups done before walking the chain
+        var store = new LinkedTaskStore();
+        var tasks = new ArrayList<Task>();
+        for (int pid : new int[]{1, 2, 3, 500, 501, 1000, 1001, 1002}){
+            var task = new Task(new PID(pid), Priority.values()[pid % 3], null);
+            store.add(task);
+            tasks.add(task);
+        }
+
+        // when querying ranges that start in the gap, in both orders and paged
+        var query = TaskQuery.of(SortCriteria.PID, SortOrder.ASCENDING).pids(new PID(4), new PID(1001));
+        var ascending = new ArrayList<Task>();
+        store.query(query).list(ascending::add);
+        var paged = new ArrayList<Task>();
+        store.query(query.pids(new PID(2), new PID(999)).offset(1).limit(2)
+                .priorities(Priority.LOW, Priority.HIGH)).list(paged::add);
+        var reversed = new ArrayList<Task>();
+        store.query(TaskQuery.of(SortCriteria.PID, SortOrder.DESCENDING).pids(new PID(4), new PID(999))).list(reversed::add);
+
+        // then only the tasks in range are listed, in order
+        assertEquals(tasks.subList(3, 7), ascending);
+        assertEquals(tasks.subList(2, 4), paged);
+        assertEquals(List.of(tasks.get(4), tasks.get(3)), reversed);
+    }
+
+    @Test
+    public void linkedStoreKeepsThePIDOrderWhateverTheOrderThePIDsComeIn(){
+        keepsThePIDOrder(new LinkedTaskStore());
+    }
+
+    @Test
+    public void compactStoreKeepsThePIDOrderWhateverTheOrderThePIDsComeIn(){
+        keepsThePIDOrder(new CompactTaskStore(500, null));
+    }
+
+    private static void keepsThePIDOrder(TaskStore store){
+        // given PIDs spread over the whole int range and around the boundaries of the 64 PID words, added in random order
+        var random = new Random(7);
+        var live = new ArrayList<Task>();
+        for (int i = 0; i < 2_000; i++){
+            // when adding and removing tasks at random
+            if (live.size() < 500 && (live.isEmpty() || random.nextInt(3) > 0)){
+                int pid = switch (random.nextInt(3)){
+                    case 0 -> random.nextInt(Integer.MAX_VALUE);
+                    case 1 -> 64 * random.nextInt(100) + random.nextInt(3) - 1;
+                    default -> random.nextInt(300);
+                };
+                if (pid < 0 || live.stream().anyMatch(task -> task.pid().pid() == pid)){
+                    continue;
+                }
+                var task = new Task(new PID(pid), Priority.values()[random.nextInt(3)], null);
+                store.add(task);
+                live.add(task);
+            } else {
+                store.remove(live.remove(random.nextInt(live.size())));
+            }
+
+            // then the PID view is sorted and a PID range query starts at the first PID in range
+            var expected = new ArrayList<>(live);
+            expected.sort(Task.BY_PID_COMP);
+            var ascending = new ArrayList<Task>();
+            store.view(SortCriteria.PID, SortOrder.ASCENDING).list(ascending::add);
+            assertEquals(expected, ascending, "after operation " + i);
+            int from = random.nextInt(Integer.MAX_VALUE);
+            var inRange = expected.stream().filter(task -> task.pid().pid() >= from).limit(1).toList();
+            var queried = new ArrayList<Task>();
+            store.query(TaskQuery.of(SortCriteria.PID, SortOrder.ASCENDING).pids(new PID(from), new PID(Integer.MAX_VALUE))
+                    .limit(1)).list(queried::add);
+            assertEquals(inRange, queried, "from " + from + " after operation " + i);
+            var lastInRange = expected.stream().filter(task -> task.pid().pid() <= from).reduce((first, second) -> second).stream().toList();
+            var queriedDescending = new ArrayList<Task>();
+            store.query(TaskQuery.of(SortCriteria.PID, SortOrder.DESCENDING).pids(new PID(0), new PID(from))
+                    .limit(1)).list(queriedDescending::add);
+            assertEquals(lastInRange, queriedDescending, "to " + from + " after operation " + i);
+        }
+    }
+
+    @Test
+    public void ringAndCompactViewsStopVisitingWhenTheVisitorDoes(){
+        for (var store : List.<TaskStore>of(new RingTaskStore(10, null), new CompactTaskStore(10, null))){
+            // given a store with tasks of every priority
+            for (int pid = 0; pid < 9; pid++){
+                store.add(new Task(new PID(pid), Priority.values()[pid % 3], null));
+            }
+
+            for (var sortCriteria : SortCriteria.values()){
+                for (var sortOrder : SortOrder.values()){
+                    // when the visitor stops at the third task
+                    var calls = new AtomicInteger();
+                    store.view(sortCriteria, sortOrder).visit(task -> calls.incrementAndGet() < 3);
+
+                    // then no task is visited after it
+                    assertEquals(3, calls.get(), store.getClass().getSimpleName() + " " + sortCriteria + " " + sortOrder);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void removeAllHandsOverTheTasksWhileTheStoreIsReused(){
+        for (var store : List.<TaskStore>of(new RingTaskStore(10, null), new CompactTaskStore(10, null), new LinkedTaskStore())){
+            // given a store with a task killed out of order
+            var tasks = new ArrayList<Task>();
+            for (int pid = 0; pid < 9; pid++){
+                var task = new Task(new PID(pid), Priority.values()[pid % 3], null);
+                store.add(task);
+                tasks.add(task);
+            }
+            store.remove(tasks.remove(4));
+
+            // when removing every task and filling the store again with the same PIDs
+            var removed = store.removeAll();
+            var added = new ArrayList<Task>();
+            for (int pid = 8; pid >= 0; pid--){
+                var task = new Task(new PID(pid), Priority.HIGH, null, 1);
+                store.add(task);
+                added.add(task);
+            }
+
+            // then the removed tasks are still the ones that were in the store, in FIFO order, and only the new ones are left
+            var name = store.getClass().getSimpleName();
+            var removedTasks = new ArrayList<Task>();
+            removed.forEach(removedTasks::add);
+            assertEquals(tasks, removedTasks, name);
+            var listed = new ArrayList<Task>();
+            store.view(SortCriteria.FIFO, SortOrder.ASCENDING).list(listed::add);
+            assertEquals(added, listed, name);
+            assertEquals(9, store.size(), name);
+        }
+    }
+
+    private static TaskQuery randomQuery(Random random, Priority[] priorities){
+        var query = TaskQuery.of(SortCriteria.values()[random.nextInt(3)], SortOrder.values()[random.nextInt(2)]);
+        if (random.nextBoolean()){
+            int lowest = random.nextInt(70) - 3;
+            query = query.pids(new PID(lowest), new PID(lowest + random.nextInt(70)));
+        }
+        if (random.nextBoolean()){
+            int lowest = random.nextInt(priorities.length);
+            query = query.priorities(priorities[lowest], priorities[lowest + random.nextInt(priorities.length - lowest)]);
+        }
+        return query.offset(random.nextInt(3) * random.nextInt(5)).limit(random.nextBoolean() ? 1 + random.nextInt(20) : Integer.MAX_VALUE);
+    }
+
+    // the first tasks by descending priority
+    private static List<String> visited(TaskManager taskManager, int count){
+        var tasks = new ArrayList<String>();
+        taskManager.visit(task -> tasks.add(task.pid().pid() + ":" + task.priority()) && tasks.size() < count,
+                SortCriteria.PRIORITY, SortOrder.DESCENDING);
+        return tasks;
+    }
+
+    private static List<String> queried(TaskManager taskManager, TaskQuery query){
+        var tasks = new ArrayList<String>();
+        taskManager.query(task -> tasks.add(task.pid().pid() + ":" + task.priority()), query);
+        return tasks;
+    }
+
+    // a pool slightly larger than the capacity, so that PIDs wrap around and are recycled all the time
+    private static PIDPool pidPool(){
+        return new PIDPool(64, PIDPool.AllocationPolicy.NEXT_FIT);
+    }
+
+    // the tasks reference their own task manager, so we only compare PID and priority
+    private static List<String> listed(TaskManager taskManager, SortCriteria sortCriteria, SortOrder sortOrder){
+        var tasks = new ArrayList<String>();
+        taskManager.list(task -> tasks.add(task.pid().pid() + ":" + task.priority()), sortCriteria, sortOrder);
+        return tasks;
+    }
+}
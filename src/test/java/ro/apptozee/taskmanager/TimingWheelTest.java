@@ -0,0 +1,80 @@
+package ro.apptozee.taskmanager;
+
+import org.junit.jupiter.api.Test;
+import ro.apptozee.taskmanager.vo.PID;
+import ro.apptozee.taskmanager.vo.Priority;
+import ro.apptozee.taskmanager.vo.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimingWheelTest {
+
+    @Test
+    public void expiresEveryTimerAtItsDeadline(){
+        // given a wheel and deadlines spread over every level, some beyond the last one
+        var random = new Random(7);
+        var wheel = new TimingWheel(0);
+        var deadlines = new HashMap<Task, Long>();
+        long now = 0;
+
+        for (int step = 0; step < 2_000; step++){
+            // when scheduling, cancelling and advancing by random amounts
+            for (int i = 0; i < 5; i++){
+                var task = new Task(new PID(random.nextInt(1_000)), Priority.LOW, null);
+                long deadline = now + switch (random.nextInt(4)){
+                    case 0 -> random.nextInt(64);
+                    case 1 -> random.nextInt(1 << 12);
+                    case 2 -> random.nextInt(1 << 20);
+                    default -> (1L << 24) + random.nextInt(1 << 20);
+                };
+                wheel.schedule(task, deadline);
+                deadlines.put(task, deadline);
+            }
+            if (random.nextInt(3) == 0 && !deadlines.isEmpty()){
+                var cancelled = new ArrayList<>(deadlines.keySet()).get(random.nextInt(deadlines.size()));
+                wheel.cancel(cancelled);
+                deadlines.remove(cancelled);
+            }
+            long until = now + (random.nextBoolean() ? random.nextInt(64) : random.nextInt(1 << 16));
+            long previous = now;
+            wheel.advance(until, task -> {
+                // then every timer expires once, after its deadline and not before the previous advance
+                var deadline = deadlines.remove(task);
+                assertNotNull(deadline);
+                assertTrue(deadline <= until && deadline >= previous, task + " expired at " + until + " for " + deadline);
+            });
+            now = until + 1;
+            final long current = now;
+            deadlines.values().forEach(deadline -> assertTrue(deadline >= current));
+            assertEquals(deadlines.size(), wheel.size());
+        }
+
+        // and the remaining ones expire when the wheel gets far enough
+        wheel.advance(Long.MAX_VALUE / 2, deadlines::remove);
+        assertTrue(deadlines.isEmpty());
+        assertTrue(wheel.isEmpty());
+    }
+
+    @Test
+    public void skipsToTheNextTickThatHasWork(){
+        // given a wheel with a single deadline on the second level
+        var wheel = new TimingWheel(0);
+        var task = new Task(new PID(1), Priority.LOW, null);
+        wheel.schedule(task, 1_000);
+
+        // then the next tick is the cascade of its slot, then the deadline itself
+        assertEquals(960, wheel.nextTick());
+        var expired = new ArrayList<Task>();
+        wheel.advance(999, expired::add);
+        assertTrue(expired.isEmpty());
+        assertEquals(1_000, wheel.nextTick());
+        wheel.advance(1_000, expired::add);
+        assertEquals(List.of(task), expired);
+        assertEquals(Long.MAX_VALUE, wheel.nextTick());
+    }
+}